@@ -0,0 +1,122 @@
+package com.atguigu.daijia.common.benchmark;
+
+import com.atguigu.daijia.common.util.LocationUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LocationUtil 距离计算基准测试
+ * 对比逐段调用 getDistance（含旧代码中从BigDecimal取值的方式）、批量接口 getTrailDistance / getDistances
+ * 以及等距圆柱近似 getTrailDistanceFast，输入规模对应实际行程：
+ * 每秒一个点的2小时行程约7200个点，附近司机搜索约1000个候选
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocationUtilBenchmark {
+
+    @Param({"600", "7200"})
+    private int trailSize;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private BigDecimal[] latitudeDecimals;
+    private BigDecimal[] longitudeDecimals;
+
+    private double[] candidateLatitudes;
+    private double[] candidateLongitudes;
+    private double[] candidateDistances;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        latitudes = new double[trailSize];
+        longitudes = new double[trailSize];
+        latitudeDecimals = new BigDecimal[trailSize];
+        longitudeDecimals = new BigDecimal[trailSize];
+        // 以成都市区为起点，模拟每秒一个点、每段10米左右的行程
+        double latitude = 30.57404;
+        double longitude = 104.073013;
+        for (int i = 0; i < trailSize; i++) {
+            latitude += random.nextGaussian() * 0.0001;
+            longitude += random.nextGaussian() * 0.0001;
+            latitudes[i] = latitude;
+            longitudes[i] = longitude;
+            latitudeDecimals[i] = BigDecimal.valueOf(latitude);
+            longitudeDecimals[i] = BigDecimal.valueOf(longitude);
+        }
+
+        int candidateSize = 1000;
+        candidateLatitudes = new double[candidateSize];
+        candidateLongitudes = new double[candidateSize];
+        candidateDistances = new double[candidateSize];
+        for (int i = 0; i < candidateSize; i++) {
+            candidateLatitudes[i] = 30.57404 + (random.nextDouble() - 0.5) * 0.1;
+            candidateLongitudes[i] = 104.073013 + (random.nextDouble() - 0.5) * 0.1;
+        }
+    }
+
+    /**
+     * 旧方式：逐段从BigDecimal取值并调用 getDistance
+     */
+    @Benchmark
+    public double trailPairwiseBigDecimal() {
+        double distance = 0;
+        for (int i = 0, size = trailSize - 1; i < size; i++) {
+            distance += LocationUtil.getDistance(latitudeDecimals[i].doubleValue(), longitudeDecimals[i].doubleValue(), latitudeDecimals[i + 1].doubleValue(), longitudeDecimals[i + 1].doubleValue());
+        }
+        return distance;
+    }
+
+    /**
+     * 逐段调用 getDistance（基本类型数组）
+     */
+    @Benchmark
+    public double trailPairwise() {
+        double distance = 0;
+        for (int i = 0, size = trailSize - 1; i < size; i++) {
+            distance += LocationUtil.getDistance(latitudes[i], longitudes[i], latitudes[i + 1], longitudes[i + 1]);
+        }
+        return distance;
+    }
+
+    @Benchmark
+    public double trailBatch() {
+        return LocationUtil.getTrailDistance(latitudes, longitudes, trailSize);
+    }
+
+    @Benchmark
+    public double trailBatchFast() {
+        return LocationUtil.getTrailDistanceFast(latitudes, longitudes, trailSize);
+    }
+
+    @Benchmark
+    public double[] candidatesPairwise() {
+        for (int i = 0; i < candidateLatitudes.length; i++) {
+            candidateDistances[i] = LocationUtil.getDistance(30.57404, 104.073013, candidateLatitudes[i], candidateLongitudes[i]);
+        }
+        return candidateDistances;
+    }
+
+    @Benchmark
+    public double[] candidatesBatch() {
+        LocationUtil.getDistances(30.57404, 104.073013, candidateLatitudes, candidateLongitudes, candidateLatitudes.length, candidateDistances);
+        return candidateDistances;
+    }
+}
@@ -42,6 +42,87 @@ public class LocationUtil {
     }
 
 
+    /**
+     * @描述 计算整条轨迹的距离（相邻两点的距离累加），单位为米
+     * 结果与逐段调用 getDistance 累加完全一致（同样每段保留四位小数），
+     * 但每个点的弧度和纬度余弦只计算一次，并且直接遍历基本类型数组
+     * @参数 [latitudes, longitudes, count] 按时间顺序排列的纬度、经度，以及有效点数
+     * @返回值 double
+     **/
+    public static double getTrailDistance(double[] latitudes, double[] longitudes, int count) {
+        if (count < 2) {
+            return 0;
+        }
+        double distance = 0;
+        double radLat1 = rad(latitudes[0]);
+        double radLng1 = rad(longitudes[0]);
+        double cosLat1 = Math.cos(radLat1);
+        for (int i = 1; i < count; i++) {
+            double radLat2 = rad(latitudes[i]);
+            double radLng2 = rad(longitudes[i]);
+            double cosLat2 = Math.cos(radLat2);
+            distance += segmentDistance(radLat1, radLng1, cosLat1, radLat2, radLng2, cosLat2);
+            radLat1 = radLat2;
+            radLng1 = radLng2;
+            cosLat1 = cosLat2;
+        }
+        return distance;
+    }
+
+    /**
+     * @描述 计算一个点到多个候选点的距离，单位为米，结果与逐个调用 getDistance 完全一致
+     * @参数 [lat, lng, latitudes, longitudes, count, distances] 中心点、候选点的纬度和经度、候选点数量、结果数组
+     * @返回值 void
+     **/
+    public static void getDistances(double lat, double lng, double[] latitudes, double[] longitudes, int count, double[] distances) {
+        double radLat1 = rad(lat);
+        double radLng1 = rad(lng);
+        double cosLat1 = Math.cos(radLat1);
+        for (int i = 0; i < count; i++) {
+            double radLat2 = rad(latitudes[i]);
+            distances[i] = segmentDistance(radLat1, radLng1, cosLat1, radLat2, rad(longitudes[i]), Math.cos(radLat2));
+        }
+    }
+
+    /**
+     * @描述 经纬度获取距离的快速近似（等距圆柱投影），单位为米，不做四舍五入
+     * 适用于几十公里以内的短距离，误差远小于GPS定位误差；不用于计费
+     * @参数 [lat1, lng1, lat2, lng2]
+     * @返回值 double
+     **/
+    public static double getDistanceFast(double lat1, double lng1, double lat2,
+                                         double lng2) {
+        double x = rad(lng2 - lng1) * Math.cos(rad((lat1 + lat2) / 2));
+        double y = rad(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS * 1000;
+    }
+
+    /**
+     * @描述 计算整条轨迹距离的快速近似（等距圆柱投影），单位为米，不用于计费
+     * @参数 [latitudes, longitudes, count]
+     * @返回值 double
+     **/
+    public static double getTrailDistanceFast(double[] latitudes, double[] longitudes, int count) {
+        double distance = 0;
+        for (int i = 1; i < count; i++) {
+            double x = rad(longitudes[i] - longitudes[i - 1]) * Math.cos(rad((latitudes[i] + latitudes[i - 1]) / 2));
+            double y = rad(latitudes[i] - latitudes[i - 1]);
+            distance += Math.sqrt(x * x + y * y);
+        }
+        return distance * EARTH_RADIUS * 1000;
+    }
+
+    // 与 getDistance 相同的计算和舍入，弧度与纬度余弦由调用方预先计算
+    private static double segmentDistance(double radLat1, double radLng1, double cosLat1,
+                                          double radLat2, double radLng2, double cosLat2) {
+        double sinA = Math.sin((radLat1 - radLat2) / 2);
+        double sinB = Math.sin((radLng1 - radLng2) / 2);
+        double s = 2 * Math.asin(Math.sqrt(sinA * sinA + cosLat1 * cosLat2 * sinB * sinB));
+        s = s * EARTH_RADIUS;
+        s = Math.round(s * 10000d) / 10000d;
+        return s * 1000;
+    }
+
     /**
      * 主函数入口
      * 计算并打印出两个地理坐标点之间的距离
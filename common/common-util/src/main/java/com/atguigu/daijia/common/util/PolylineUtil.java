@@ -0,0 +1,123 @@
+package com.atguigu.daijia.common.util;
+
+import com.alibaba.fastjson.JSONArray;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 路线坐标串编码
+ * <p>
+ * 坐标换算为整数微度（乘以1000000），每个值保存与前一个点同一分量的差值，
+ * 差值经zigzag转为非负数后按varint（每字节7位）写入，最后用URL安全的Base64（无填充）转为字符串。
+ * 相邻点差值通常只有几十到几百微度，每个值1~2个字节，比JSON数组小很多，也不需要逐个解析数字
+ */
+public class PolylineUtil {
+
+    private static final double SCALE = 1_000_000d;
+
+    /**
+     * @描述 编码坐标串
+     * @参数 [microDegrees, count] 整数微度坐标，按 纬度,经度,纬度,经度... 排列，以及有效点数
+     * @返回值 java.lang.String
+     **/
+    public static String encode(int[] microDegrees, int count) {
+        byte[] buffer = new byte[count * 2 * 5];
+        int position = 0;
+        int lastLatitude = 0;
+        int lastLongitude = 0;
+        for (int i = 0; i < count; i++) {
+            int latitude = microDegrees[i * 2];
+            int longitude = microDegrees[i * 2 + 1];
+            position = writeVarint(buffer, position, zigzag(latitude - lastLatitude));
+            position = writeVarint(buffer, position, zigzag(longitude - lastLongitude));
+            lastLatitude = latitude;
+            lastLongitude = longitude;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(buffer, position));
+    }
+
+    /**
+     * @描述 解码坐标串
+     * @参数 [encoded]
+     * @返回值 int[] 整数微度坐标，按 纬度,经度,纬度,经度... 排列
+     **/
+    public static int[] decode(String encoded) {
+        byte[] bytes = Base64.getUrlDecoder().decode(encoded);
+        // 每个值至少1个字节，按字节数分配后截断
+        int[] microDegrees = new int[bytes.length];
+        int count = 0;
+        int position = 0;
+        int last0 = 0;
+        int last1 = 0;
+        while (position < bytes.length) {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = bytes[position++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            int delta = (value >>> 1) ^ -(value & 1);
+            if ((count & 1) == 0) {
+                last0 += delta;
+                microDegrees[count++] = last0;
+            } else {
+                last1 += delta;
+                microDegrees[count++] = last1;
+            }
+        }
+        return Arrays.copyOf(microDegrees, count);
+    }
+
+    /**
+     * @描述 编码腾讯地图压缩格式的坐标串（前两个值为纬度、经度，之后为与前一个点的差值乘以1000000）
+     * @参数 [polyline]
+     * @返回值 java.lang.String
+     **/
+    public static String encodeTencent(JSONArray polyline) {
+        int size = polyline.size() / 2 * 2;
+        int[] microDegrees = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (i < 2) {
+                microDegrees[i] = (int) Math.round(polyline.getDoubleValue(i) * SCALE);
+            } else {
+                microDegrees[i] = microDegrees[i - 2] + (int) Math.round(polyline.getDoubleValue(i));
+            }
+        }
+        return encode(microDegrees, size / 2);
+    }
+
+    /**
+     * @描述 解码为腾讯地图压缩格式的坐标串，供需要绘制路线的客户端使用
+     * @参数 [encoded]
+     * @返回值 com.alibaba.fastjson.JSONArray
+     **/
+    public static JSONArray decodeTencent(String encoded) {
+        int[] microDegrees = decode(encoded);
+        JSONArray polyline = new JSONArray(microDegrees.length);
+        for (int i = 0; i < microDegrees.length; i++) {
+            if (i < 2) {
+                polyline.add(BigDecimal.valueOf(microDegrees[i], 6));
+            } else {
+                polyline.add(microDegrees[i] - microDegrees[i - 2]);
+            }
+        }
+        return polyline;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int writeVarint(byte[] buffer, int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+}
@@ -0,0 +1,91 @@
+package com.atguigu.daijia.common.util;
+
+import com.alibaba.fastjson.JSONArray;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 路线坐标串编码
+ */
+class PolylineUtilTest {
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        // 含负差值、零差值和跨越多个varint字节的差值
+        int[] microDegrees = {
+                39915119, 116403963,
+                39915020, 116404100,
+                39915020, 116404100,
+                39920000, 116390000,
+                -33868820, 151209290
+        };
+        String encoded = PolylineUtil.encode(microDegrees, 5);
+        assertArrayEquals(microDegrees, PolylineUtil.decode(encoded));
+    }
+
+    @Test
+    void encodeOnlyCountPoints() {
+        // 缓冲区末尾的无效数据不参与编码
+        int[] microDegrees = {39915119, 116403963, 39915020, 116404100, 0, 0};
+        assertArrayEquals(new int[]{39915119, 116403963, 39915020, 116404100},
+                PolylineUtil.decode(PolylineUtil.encode(microDegrees, 2)));
+    }
+
+    @Test
+    void emptyPolyline() {
+        String encoded = PolylineUtil.encode(new int[0], 0);
+        assertEquals("", encoded);
+        assertArrayEquals(new int[0], PolylineUtil.decode(encoded));
+    }
+
+    @Test
+    void encodedIsUrlSafe() {
+        int[] microDegrees = new int[200];
+        for (int i = 0; i < microDegrees.length; i++) {
+            microDegrees[i] = 39900000 + i * 9973 * (i % 3 == 0 ? -1 : 1);
+        }
+        String encoded = PolylineUtil.encode(microDegrees, 100);
+        for (char c : encoded.toCharArray()) {
+            assertTrue(Character.isLetterOrDigit(c) || c == '-' || c == '_');
+        }
+        assertArrayEquals(microDegrees, PolylineUtil.decode(encoded));
+    }
+
+    @Test
+    void tencentRoundTrip() {
+        // 腾讯地图格式：前两个值为度，之后为与前一个点的差值乘以1000000
+        JSONArray polyline = new JSONArray();
+        polyline.add(39.915119);
+        polyline.add(116.403963);
+        polyline.add(-99);
+        polyline.add(137);
+        polyline.add(0);
+        polyline.add(-2500);
+
+        JSONArray decoded = PolylineUtil.decodeTencent(PolylineUtil.encodeTencent(polyline));
+        assertEquals(6, decoded.size());
+        assertEquals(new BigDecimal("39.915119"), decoded.get(0));
+        assertEquals(new BigDecimal("116.403963"), decoded.get(1));
+        assertEquals(-99, decoded.get(2));
+        assertEquals(137, decoded.get(3));
+        assertEquals(0, decoded.get(4));
+        assertEquals(-2500, decoded.get(5));
+
+        assertArrayEquals(new int[]{39915119, 116403963, 39915020, 116404100, 39915020, 116401600},
+                PolylineUtil.decode(PolylineUtil.encodeTencent(polyline)));
+    }
+
+    @Test
+    void tencentIgnoresTrailingHalfPoint() {
+        JSONArray polyline = new JSONArray();
+        polyline.add(39.915119);
+        polyline.add(116.403963);
+        polyline.add(-99);
+        assertEquals(2, PolylineUtil.decodeTencent(PolylineUtil.encodeTencent(polyline)).size());
+    }
+}
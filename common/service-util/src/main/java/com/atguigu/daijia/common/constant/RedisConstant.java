@@ -10,6 +10,22 @@ public class RedisConstant {
 
     //司机GEO地址
     public static final String DRIVER_GEO_LOCATION = "driver:geo:location";
+    //司机GEO地址分片（按经纬度网格拆分，key后缀为网格编号）
+    public static final String DRIVER_GEO_LOCATION_SHARD = "driver:geo:location:";
+    //司机所在分片（hash：司机id -> 网格编号）
+    public static final String DRIVER_GEO_SHARD = "driver:geo:shard";
+    //所有出现过司机的分片网格编号
+    public static final String DRIVER_GEO_SHARD_SET = "driver:geo:shard:set";
+    //司机最后上报位置时间（zset：司机id，score为毫秒时间戳），用于清理失联司机
+    public static final String DRIVER_GEO_LAST_SEEN = "driver:geo:lastseen";
+    //司机位置变更频道，各节点据此增量更新本地网格索引
+    public static final String DRIVER_GEO_CHANGE_CHANNEL = "driver:geo:change:channel";
+    //失联司机清理锁，多个实例中只有一个执行清理
+    public static final String DRIVER_GEO_EVICT_LOCK = "driver:geo:evict:lock";
+    //司机接单设置版本号（hash：司机id -> 版本），接单设置变更时递增，用于本地缓存失效
+    public static final String DRIVER_SET_VERSION = "driver:set:version";
+    //司机接单状态位图（偏移量：司机id，1：接单中），开启/停止接单时同步
+    public static final String DRIVER_SERVICE_STATUS = "driver:service:status";
     //司机接单临时容器
     public static final String DRIVER_ORDER_TEMP_LIST = "driver:order:temp:list:";
     public static final long DRIVER_ORDER_TEMP_LIST_EXPIRES_TIME = 1;
@@ -17,6 +33,22 @@ public class RedisConstant {
     public static final String DRIVER_ORDER_REPEAT_LIST = "driver:order:repeat:list:";
     public static final long DRIVER_ORDER_REPEAT_LIST_EXPIRES_TIME = 16;
 
+    //时间轮调度中待派单的订单（zset：订单id -> 开始调度时间），服务重启后据此恢复
+    public static final String DISPATCH_SCHEDULER_ORDERS = "dispatch:scheduler:orders";
+    //订单派单调度归属（值为节点标识，带租期），每个订单只在持有者节点的时间轮中调度
+    public static final String DISPATCH_SCHEDULER_OWNER = "dispatch:scheduler:owner:";
+    //订单开始派单的时间，按经过的时间确定当前派单轮次
+    public static final String DISPATCH_ROUND_START = "dispatch:round:start:";
+    //批量匹配中等待接单的订单（hash：订单id -> 派单参数）
+    public static final String DISPATCH_MATCHING_ORDERS = "dispatch:matching:orders";
+    //待匹配订单最近一次被派单调度刷新的时间（zset：订单id -> 刷新时间），长时间未刷新的订单移出待匹配订单
+    public static final String DISPATCH_MATCHING_ORDERS_REFRESH = "dispatch:matching:orders:refresh";
+    //已收到订单、等待接单的司机（zset：司机id -> 等待截止时间），期间不再指派其他订单
+    //与批量匹配锁使用相同的hash tag，Redis Cluster下位于同一槽位，可以在一个Lua脚本中访问
+    public static final String DISPATCH_MATCHING_OFFERS = "dispatch:{matching}:offers";
+    //批量匹配锁，多个节点中每次只有一个执行匹配
+    public static final String DISPATCH_MATCHING_LOCK = "dispatch:{matching}:lock";
+
 //    //订单与任务关联
 //    public static final String ORDER_JOB = "order:job:";
 //    public static final long ORDER_JOB_EXPIRES_TIME = 15;
@@ -24,6 +56,19 @@ public class RedisConstant {
     //更新订单位置
     public static final String UPDATE_ORDER_LOCATION = "update:order:location:";
     public static final long UPDATE_ORDER_LOCATION_EXPIRES_TIME = 15;
+    //订单司机位置发布频道（频道后缀为订单id），乘客端订阅后推送
+    public static final String ORDER_LOCATION_CHANNEL = "order:location:channel:";
+
+    //驾车路线缓存（key后缀：时段:起点纬度网格:起点经度网格:终点纬度网格:终点经度网格）
+    public static final String DRIVING_LINE = "map:driving:line:";
+
+    //订单实际里程累加（hash：distance、latitude、longitude、count、time，written为已写入轨迹的点数）
+    public static final String ORDER_SERVICE_DISTANCE = "order:service:distance:";
+    //订单实际里程过期时间，单位：小时
+    public static final long ORDER_SERVICE_DISTANCE_EXPIRES_TIME = 24;
+
+    //订单轨迹归档锁，多个实例中只有一个执行归档
+    public static final String ORDER_TRAIL_ARCHIVE_LOCK = "order:trail:archive:lock";
 
     //订单接单标识
     // 定义一个公共静态常量，用于标记订单接受的缓存键名前缀
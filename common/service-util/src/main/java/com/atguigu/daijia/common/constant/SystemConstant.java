@@ -5,6 +5,12 @@ public class SystemConstant {
     //附近司机搜索半径
     public static final double  NEARBY_DRIVER_RADIUS = 5;
 
+    //附近司机最大搜索半径（派单逐轮扩大半径的上限），单位：公里
+    public static final double  NEARBY_DRIVER_MAX_RADIUS = 20;
+
+    //司机查询新订单时最长阻塞等待时间，单位：毫秒
+    public static final long NEW_ORDER_QUEUE_MAX_WAIT_MILLIS = 10000;
+
     //取消订单延迟时间，单位：秒
     public static final int CANCEL_ORDER_DELAY_TIME = 15*60;
 
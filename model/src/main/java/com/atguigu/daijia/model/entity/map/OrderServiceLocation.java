@@ -3,6 +3,8 @@ package com.atguigu.daijia.model.entity.map;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
@@ -11,6 +13,7 @@ import java.util.Date;
 @Data
 @Schema(description = "订单代驾服务位置")
 @Document
+@CompoundIndex(name = "idx_order_id_create_time", def = "{'orderId': 1, 'createTime': 1}")
 public class OrderServiceLocation {
 
 	@Schema(description = "id")
@@ -27,6 +30,7 @@ public class OrderServiceLocation {
 	private BigDecimal longitude;
 
 	@Schema(description = "创建时间")
+	@Indexed(name = "idx_create_time")
 	private Date createTime;
 
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.atguigu.daijia.model.entity.map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Data
+@Schema(description = "订单代驾服务位置归档（每个订单一个文档，整条轨迹压缩保存）")
+@Document
+public class OrderServiceLocationArchive {
+
+	@Schema(description = "id：订单id")
+	@Id
+	private Long id;
+
+	@Schema(description = "位置点数")
+	private Integer pointCount;
+
+	@Schema(description = "第一个位置点时间")
+	private Date startTime;
+
+	@Schema(description = "最后一个位置点时间")
+	private Date endTime;
+
+	@Schema(description = "压缩后的轨迹：gzip(点数 + 纬度、经度（微度）和时间（毫秒）相对上一个点的差值，zigzag变长整数编码)")
+	private byte[] data;
+
+	@Schema(description = "归档时间")
+	private Date createTime;
+
+}
@@ -0,0 +1,40 @@
+package com.atguigu.daijia.model.entity.map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.util.Date;
+import java.util.List;
+
+@Data
+@Schema(description = "订单代驾服务位置分桶（每个订单每分钟一个文档）")
+@Document
+@CompoundIndex(name = "idx_order_id_bt", def = "{'orderId': 1, 'bt': 1}")
+public class OrderServiceLocationBucket {
+
+	@Schema(description = "id：订单id_分钟时间戳")
+	@Id
+	private String id;
+
+	@Schema(description = "订单id")
+	private Long orderId;
+
+	@Schema(description = "分桶开始时间（整分钟）")
+	@Field("bt")
+	@Indexed(name = "idx_bt")
+	private Date bucketTime;
+
+	@Schema(description = "位置点数")
+	@Field("n")
+	private Integer count;
+
+	@Schema(description = "位置数据块，每次上报追加一块")
+	@Field("c")
+	private List<OrderServiceLocationChunk> chunks;
+
+}
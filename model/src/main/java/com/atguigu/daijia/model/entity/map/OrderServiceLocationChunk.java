@@ -0,0 +1,27 @@
+package com.atguigu.daijia.model.entity.map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+@Data
+@Schema(description = "订单代驾服务位置数据块（整数微度，差分编码）")
+public class OrderServiceLocationChunk {
+
+	@Schema(description = "上报时间相对分桶开始时间的毫秒数")
+	@Field("t")
+	private Integer timeOffset;
+
+	@Schema(description = "第一个点的纬度，单位：百万分之一度")
+	@Field("a")
+	private Integer latitude;
+
+	@Schema(description = "第一个点的经度，单位：百万分之一度")
+	@Field("o")
+	private Integer longitude;
+
+	@Schema(description = "后续各点相对前一个点的差值，依次为 纬度差、经度差")
+	@Field("d")
+	private int[] deltas;
+
+}
@@ -0,0 +1,29 @@
+package com.atguigu.daijia.model.entity.map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.List;
+
+@Data
+@Schema(description = "订单代驾服务简化轨迹（按地图缩放级别）")
+@Document
+public class OrderServiceTrail {
+
+	@Schema(description = "id：订单id")
+	@Id
+	private Long id;
+
+	@Schema(description = "原始位置点数")
+	private Integer pointCount;
+
+	@Schema(description = "各缩放级别的简化轨迹")
+	private List<OrderServiceTrailLevel> levels;
+
+	@Schema(description = "创建时间")
+	private Date createTime;
+
+}
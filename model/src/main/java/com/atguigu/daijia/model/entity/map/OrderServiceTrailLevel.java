@@ -0,0 +1,19 @@
+package com.atguigu.daijia.model.entity.map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "某个地图缩放级别的简化轨迹")
+public class OrderServiceTrailLevel {
+
+	@Schema(description = "地图缩放级别")
+	private Integer zoom;
+
+	@Schema(description = "简化容差，单位：米")
+	private Double toleranceMeters;
+
+	@Schema(description = "简化后的位置点，单位：百万分之一度，依次为 纬度、经度")
+	private int[] points;
+
+}
@@ -0,0 +1,20 @@
+package com.atguigu.daijia.model.form.map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+public class CalculateEtaMatrixForm {
+
+    @Schema(description = "上车点经度")
+    private BigDecimal longitude;
+
+    @Schema(description = "上车点纬度")
+    private BigDecimal latitude;
+
+    @Schema(description = "司机位置列表")
+    private List<EtaOriginForm> originList;
+}
@@ -0,0 +1,19 @@
+package com.atguigu.daijia.model.form.map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class EtaOriginForm {
+
+    @Schema(description = "司机id")
+    private Long driverId;
+
+    @Schema(description = "经度，为空时使用地图服务记录的司机最新位置")
+    private BigDecimal longitude;
+
+    @Schema(description = "纬度，为空时使用地图服务记录的司机最新位置")
+    private BigDecimal latitude;
+}
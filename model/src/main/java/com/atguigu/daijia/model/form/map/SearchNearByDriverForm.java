@@ -16,4 +16,10 @@ public class SearchNearByDriverForm {
 
     @Schema(description = "里程")
     private BigDecimal mileageDistance;
+
+    @Schema(description = "搜索半径（公里），为空时使用系统默认半径")
+    private BigDecimal radius;
+
+    @Schema(description = "最多返回的司机数（距离最近的），为空或小于等于0表示不限制")
+    private Integer limit;
 }
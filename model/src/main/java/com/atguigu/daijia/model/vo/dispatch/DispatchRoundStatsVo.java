@@ -0,0 +1,37 @@
+package com.atguigu.daijia.model.vo.dispatch;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class DispatchRoundStatsVo {
+
+    @Schema(description = "轮次，从1开始")
+    private Integer round;
+
+    @Schema(description = "搜索半径（公里）")
+    private BigDecimal radius;
+
+    @Schema(description = "最多推送的司机数")
+    private Integer limit;
+
+    @Schema(description = "本轮派单次数")
+    private Long dispatchCount;
+
+    @Schema(description = "本轮新推送的司机数")
+    private Long pushCount;
+
+    @Schema(description = "平均每次派单新推送的司机数")
+    private BigDecimal avgFanOut;
+
+    @Schema(description = "没有可推送司机的派单次数")
+    private Long emptyCount;
+
+    @Schema(description = "在本轮被接单的订单数")
+    private Long acceptCount;
+
+    @Schema(description = "在本轮被接单的订单，从开始派单到接单的平均时长（秒）")
+    private BigDecimal avgAcceptSeconds;
+}
@@ -0,0 +1,22 @@
+package com.atguigu.daijia.model.vo.map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class DriverEtaVo {
+
+    @Schema(description = "司机id")
+    private Long driverId;
+
+    @Schema(description = "预计到达上车点时间，单位：秒")
+    private BigDecimal duration;
+
+    @Schema(description = "预计行驶距离，单位：千米")
+    private BigDecimal distance;
+
+    @Schema(description = "是否按直线距离估算（离线路网未覆盖时）")
+    private Boolean estimated;
+}
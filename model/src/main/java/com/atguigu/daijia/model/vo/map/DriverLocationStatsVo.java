@@ -0,0 +1,23 @@
+package com.atguigu.daijia.model.vo.map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+public class DriverLocationStatsVo {
+
+    @Schema(description = "已写入的位置上报次数")
+    private Long acceptedCount;
+
+    @Schema(description = "因位移过小被忽略的位置上报次数")
+    private Long suppressedCount;
+
+    @Schema(description = "当前记录最后位置的司机数")
+    private Integer trackedDriverCount;
+
+    @Schema(description = "司机状态堆外存储中的司机数")
+    private Integer stateStoreSize;
+
+    @Schema(description = "司机状态堆外存储占用的直接内存（字节）")
+    private Long stateStoreMemoryBytes;
+}
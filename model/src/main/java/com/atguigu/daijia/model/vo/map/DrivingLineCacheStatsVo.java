@@ -0,0 +1,29 @@
+package com.atguigu.daijia.model.vo.map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+public class DrivingLineCacheStatsVo {
+
+    @Schema(description = "本地缓存命中次数")
+    private Long localHitCount;
+
+    @Schema(description = "Redis缓存命中次数")
+    private Long redisHitCount;
+
+    @Schema(description = "未命中（调用地图接口）次数")
+    private Long missCount;
+
+    @Schema(description = "本地缓存路线数")
+    private Integer localSize;
+
+    @Schema(description = "实际发出的地图接口请求次数")
+    private Long requestCount;
+
+    @Schema(description = "与进行中的相同请求合并的次数")
+    private Long coalescedCount;
+
+    @Schema(description = "因排队已满被拒绝的请求次数")
+    private Long rejectedCount;
+}
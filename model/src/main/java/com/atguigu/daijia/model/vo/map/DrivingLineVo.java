@@ -15,7 +15,10 @@ public class DrivingLineVo {
 	@Schema(description = "方案估算时间（结合路况），单位：分钟")
 	private BigDecimal duration;
 
-	@Schema(description = "方案路线坐标点串")
+	@Schema(description = "方案路线坐标点串（腾讯地图压缩格式），服务间传输时为空，由需要绘制路线的客户端从 encodedPolyline 解码")
 	private JSONArray polyline;
 
+	@Schema(description = "方案路线坐标点串编码（PolylineUtil.encode）")
+	private String encodedPolyline;
+
 }
\ No newline at end of file
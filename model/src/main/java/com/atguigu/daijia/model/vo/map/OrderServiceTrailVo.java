@@ -0,0 +1,22 @@
+package com.atguigu.daijia.model.vo.map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class OrderServiceTrailVo {
+
+    @Schema(description = "订单id")
+    private Long orderId;
+
+    @Schema(description = "地图缩放级别")
+    private Integer zoom;
+
+    @Schema(description = "原始位置点数")
+    private Integer pointCount;
+
+    @Schema(description = "简化后的位置点")
+    private List<OrderLocationVo> points;
+}
@@ -0,0 +1,29 @@
+package com.atguigu.daijia.model.vo.map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+public class OrderTrailWriteStatsVo {
+
+    @Schema(description = "等待写入的位置点数")
+    private Integer pendingCount;
+
+    @Schema(description = "有待写入位置点的订单数")
+    private Integer pendingOrderCount;
+
+    @Schema(description = "最早一批待写入位置点的等待时长（毫秒）")
+    private Long lagMillis;
+
+    @Schema(description = "已写入的位置点数")
+    private Long writtenCount;
+
+    @Schema(description = "bulk写入次数")
+    private Long flushCount;
+
+    @Schema(description = "写入失败次数")
+    private Long failedCount;
+
+    @Schema(description = "因队列已满或重试失败丢弃的位置点数")
+    private Long droppedCount;
+}
@@ -8,6 +8,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 
@@ -31,6 +32,16 @@ public interface NewOrderFeignClient {
     @GetMapping("/dispatch/newOrder/findNewOrderQueueData/{driverId}")
     Result<List<NewOrderDataVo>> findNewOrderQueueData(@PathVariable("driverId") Long driverId);
 
+    /**
+     * 查询司机新订单数据，队列为空时最长等待 waitMillis 毫秒（不超过10秒）
+     *
+     * @param driverId
+     * @param waitMillis
+     * @return
+     */
+    @GetMapping("/dispatch/newOrder/findNewOrderQueueData/{driverId}")
+    Result<List<NewOrderDataVo>> findNewOrderQueueData(@PathVariable("driverId") Long driverId, @RequestParam("waitMillis") Long waitMillis);
+
     /**
      * 清空新订单队列数据
      * @param driverId
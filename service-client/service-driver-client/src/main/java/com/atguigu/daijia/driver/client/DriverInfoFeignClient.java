@@ -13,6 +13,8 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
+import java.util.List;
+
 @FeignClient(value = "service-driver")
 public interface DriverInfoFeignClient {
     /**
@@ -57,6 +59,13 @@ public interface DriverInfoFeignClient {
      */
     @GetMapping("/driver/info/getDriverSet/{driverId}")
     Result<DriverSet> getDriverSet(@PathVariable("driverId") Long driverId);
+    /**
+     * 批量获取司机设置信息
+     * @param driverIdList
+     * @return
+     */
+    @PostMapping("/driver/info/getDriverSetList")
+    Result<List<DriverSet>> getDriverSetList(@RequestBody List<Long> driverIdList);
     /**
      * 判断司机当日是否进行过人脸识别
      * @param driverId
@@ -8,6 +8,7 @@ import com.atguigu.daijia.model.form.map.UpdateOrderLocationForm;
 import com.atguigu.daijia.model.vo.map.NearByDriverVo;
 import com.atguigu.daijia.model.vo.map.OrderLocationVo;
 import com.atguigu.daijia.model.vo.map.OrderServiceLastLocationVo;
+import com.atguigu.daijia.model.vo.map.OrderServiceTrailVo;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
 
@@ -25,6 +26,15 @@ public interface LocationFeignClient {
     @PostMapping("/map/location/updateDriverLocation")
     Result<Boolean> updateDriverLocation(@RequestBody UpdateDriverLocationForm updateDriverLocationForm);
 
+    /**
+     * 开启接单服务：上报司机经纬度位置（缓冲批量写入），司机未开启接单返回false
+     *
+     * @param updateDriverLocationForm
+     * @return
+     */
+    @PostMapping("/map/location/ingestDriverLocation")
+    Result<Boolean> ingestDriverLocation(@RequestBody UpdateDriverLocationForm updateDriverLocationForm);
+
     /**
      * 关闭接单服务：删除司机经纬度位置
      *
@@ -43,6 +53,15 @@ public interface LocationFeignClient {
     @PostMapping("/map/location/searchNearByDriver")
     Result<List<NearByDriverVo>> searchNearByDriver(@RequestBody SearchNearByDriverForm searchNearByDriverForm);
 
+    /**
+     * 批量搜索附近满足条件的司机，返回结果与搜索条件一一对应
+     *
+     * @param searchNearByDriverFormList
+     * @return
+     */
+    @PostMapping("/map/location/searchNearByDriverBatch")
+    Result<List<List<NearByDriverVo>>> searchNearByDriverBatch(@RequestBody List<SearchNearByDriverForm> searchNearByDriverFormList);
+
     /**
      * 司机赶往代驾起始点：更新订单地址到缓存
      *
@@ -83,4 +102,19 @@ public interface LocationFeignClient {
      */
     @GetMapping("/map/location/calculateOrderRealDistance/{orderId}")
     Result<BigDecimal> calculateOrderRealDistance(@PathVariable Long orderId);
-}
\ No newline at end of file
+    /**
+     * 结束代驾：保存订单各缩放级别的简化轨迹
+     * @param orderId
+     * @return
+     */
+    @PostMapping("/map/location/saveOrderServiceTrail/{orderId}")
+    Result<Boolean> saveOrderServiceTrail(@PathVariable("orderId") Long orderId);
+    /**
+     * 代驾服务：获取订单代驾轨迹（按地图缩放级别简化）
+     * @param orderId
+     * @param zoom
+     * @return
+     */
+    @GetMapping("/map/location/getOrderServiceTrail/{orderId}/{zoom}")
+    Result<OrderServiceTrailVo> getOrderServiceTrail(@PathVariable("orderId") Long orderId, @PathVariable("zoom") Integer zoom);
+}
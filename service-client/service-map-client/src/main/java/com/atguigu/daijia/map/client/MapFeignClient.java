@@ -2,11 +2,15 @@ package com.atguigu.daijia.map.client;
 
 import com.atguigu.daijia.common.result.Result;
 import com.atguigu.daijia.model.form.map.CalculateDrivingLineForm;
+import com.atguigu.daijia.model.form.map.CalculateEtaMatrixForm;
+import com.atguigu.daijia.model.vo.map.DriverEtaVo;
 import com.atguigu.daijia.model.vo.map.DrivingLineVo;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
+import java.util.List;
+
 @FeignClient(value = "service-map")
 public interface MapFeignClient {
 
@@ -17,4 +21,12 @@ public interface MapFeignClient {
      */
     @PostMapping("/map/calculateDrivingLine")
     Result<DrivingLineVo> calculateDrivingLine(@RequestBody CalculateDrivingLineForm calculateDrivingLineForm);
-}
\ No newline at end of file
+
+    /**
+     * 计算司机到上车点的预计到达时间
+     * @param calculateEtaMatrixForm
+     * @return
+     */
+    @PostMapping("/map/calculateEtaMatrix")
+    Result<List<DriverEtaVo>> calculateEtaMatrix(@RequestBody CalculateEtaMatrixForm calculateEtaMatrixForm);
+}
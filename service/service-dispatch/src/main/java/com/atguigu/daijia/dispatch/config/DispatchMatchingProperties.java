@@ -0,0 +1,72 @@
+package com.atguigu.daijia.dispatch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * 派单匹配方式相关配置
+ * 对应配置前缀：dispatch.matching
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dispatch.matching")
+public class DispatchMatchingProperties {
+
+    /**
+     * 匹配方式：broadcast：每个订单各自推送给附近的司机；batch：定时对所有等待接单的订单与空闲司机整体指派，每个司机只收到一个订单
+     */
+    private String mode = "broadcast";
+
+    /**
+     * 批量匹配的间隔，单位：毫秒
+     */
+    private Long tickMs = 500L;
+
+    /**
+     * 匹配锁的租期，单位：毫秒；远大于一次匹配的最长耗时，匹配结束即释放。
+     * 一次匹配在租期过半时放弃尚未求解完的分区，锁被其他节点持有后本次匹配的指派不再写入
+     */
+    private Long lockLeaseMs = 30000L;
+
+    /**
+     * 分区网格大小，单位：度；各网格的订单分别在不同线程上求解
+     */
+    private Double cellSize = 0.1;
+
+    /**
+     * 订单候选司机的搜索半径，单位：公里
+     */
+    private BigDecimal radius = new BigDecimal(5);
+
+    /**
+     * 每个订单最多的候选司机数（距离最近的）
+     */
+    private Integer candidateLimit = 10;
+
+    /**
+     * 司机收到订单后的等待时间，期间不再给该司机指派其他订单，单位：毫秒
+     */
+    private Long offerTimeoutMs = 15000L;
+
+    /**
+     * 待匹配订单超过该时间未被派单调度刷新（调度已停止）时移出待匹配订单，单位：毫秒；需大于派单调度间隔
+     */
+    private Long orderStaleMs = 180000L;
+
+    /**
+     * 分区内订单数与司机数都不超过该值时使用匈牙利算法，否则按接驾距离贪心指派
+     */
+    private Integer hungarianLimit = 150;
+
+    /**
+     * 求解线程数，小于等于0时为CPU核数
+     */
+    private Integer threads = 0;
+
+    public boolean isBatchMode() {
+        return "batch".equalsIgnoreCase(mode);
+    }
+}
@@ -0,0 +1,71 @@
+package com.atguigu.daijia.dispatch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 逐轮扩大范围派单相关配置
+ * 对应配置前缀：dispatch.round
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dispatch.round")
+public class DispatchRoundProperties {
+
+    /**
+     * 是否逐轮扩大范围派单，关闭时每轮都推送给默认半径内的所有司机
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 派单轮次，按开始派单后经过的时间依次进入下一轮，最后一轮一直持续到订单被接单或取消
+     */
+    private List<Round> rounds = defaultRounds();
+
+    /**
+     * 每轮按直线距离搜索的候选司机数为本轮 limit 的倍数，按到达上车点的预计时间排序后再取前 limit 个；1表示不按预计时间重新挑选
+     */
+    private Integer etaCandidateFactor = 3;
+
+    @Data
+    public static class Round {
+
+        /**
+         * 搜索半径，单位：公里
+         */
+        private BigDecimal radius;
+
+        /**
+         * 推送给半径内预计到达时间最短的司机数（包括之前轮次已推送的），小于等于0表示不限制
+         */
+        private Integer limit;
+
+        /**
+         * 本轮持续时间，单位：毫秒；最后一轮忽略
+         */
+        private Long durationMs;
+
+        public Round() {
+        }
+
+        public Round(double radius, int limit, long durationMs) {
+            this.radius = BigDecimal.valueOf(radius);
+            this.limit = limit;
+            this.durationMs = durationMs;
+        }
+    }
+
+    private static List<Round> defaultRounds() {
+        List<Round> rounds = new ArrayList<>();
+        rounds.add(new Round(1, 3, 15000));
+        rounds.add(new Round(2, 5, 15000));
+        rounds.add(new Round(3, 8, 30000));
+        rounds.add(new Round(5, 15, 0));
+        return rounds;
+    }
+}
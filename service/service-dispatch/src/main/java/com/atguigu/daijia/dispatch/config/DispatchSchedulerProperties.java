@@ -0,0 +1,64 @@
+package com.atguigu.daijia.dispatch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 新订单派单调度相关配置
+ * 对应配置前缀：dispatch.scheduler
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dispatch.scheduler")
+public class DispatchSchedulerProperties {
+
+    /**
+     * 调度方式：wheel：本服务内的时间轮；xxl-job：每个订单注册一个每分钟执行的xxl-job任务
+     */
+    private String mode = "wheel";
+
+    /**
+     * 时间轮每格时长，单位：毫秒
+     */
+    private Long tickMs = 100L;
+
+    /**
+     * 时间轮每层格数
+     */
+    private Integer wheelSize = 64;
+
+    /**
+     * 同一订单两轮派单的间隔，单位：毫秒
+     */
+    private Long intervalMs = 3000L;
+
+    /**
+     * 执行派单的线程数
+     */
+    private Integer workerThreads = 8;
+
+    /**
+     * 等待执行的派单任务上限，超过时推迟一格再提交
+     */
+    private Integer workerQueueSize = 10000;
+
+    /**
+     * 从Redis恢复待派单订单的间隔（其他节点新增或重启前未完成的订单），单位：毫秒
+     */
+    private Long recoverIntervalMs = 10000L;
+
+    /**
+     * 订单调度归属的租期，单位：毫秒；持有节点每轮派单时续期，节点宕机后超过租期由其他节点恢复时接管
+     */
+    private Long ownerLeaseMs = 30000L;
+
+    /**
+     * 订单最长调度时间，超过后即使仍在等待接单也停止调度，单位：分钟
+     */
+    private Long maxLifetimeMinutes = 30L;
+
+    public boolean isWheelMode() {
+        return "wheel".equalsIgnoreCase(mode);
+    }
+}
@@ -0,0 +1,23 @@
+package com.atguigu.daijia.dispatch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 司机新订单队列相关配置
+ * 对应配置前缀：dispatch.new-order-queue
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dispatch.new-order-queue")
+public class NewOrderQueueProperties {
+
+    /**
+     * 每个实例同时阻塞等待新订单的司机数上限。
+     * 每个等待中的请求在本服务和 web-driver 各占用一个Tomcat线程，并占用一个独占的Redis连接，最长 NEW_ORDER_QUEUE_MAX_WAIT_MILLIS；
+     * 超过上限的请求不等待，立即返回当前队列（与不传等待时间的轮询一致），司机端下次轮询再取。
+     * 需明显小于Tomcat最大线程数（默认200），为其他接口保留线程；修改后重启生效
+     */
+    private Integer maxWaiters = 100;
+}
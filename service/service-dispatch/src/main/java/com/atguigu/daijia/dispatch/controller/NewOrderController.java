@@ -2,6 +2,7 @@ package com.atguigu.daijia.dispatch.controller;
 
 import com.atguigu.daijia.common.result.Result;
 import com.atguigu.daijia.dispatch.service.NewOrderService;
+import com.atguigu.daijia.model.vo.dispatch.DispatchRoundStatsVo;
 import com.atguigu.daijia.model.vo.dispatch.NewOrderTaskVo;
 import com.atguigu.daijia.model.vo.order.NewOrderDataVo;
 import io.swagger.v3.oas.annotations.Operation;
@@ -28,12 +29,13 @@ public class NewOrderController {
         // 调用newOrderService的addAndStartTask方法，传入新订单任务信息，返回调度任务的ID
         return Result.ok(newOrderService.addAndStartTask(newOrderTaskVo));
     }
-    // 查询司机新订单数据的接口
+    // 查询司机新订单数据的接口，waitMillis：队列为空时最长等待时间（毫秒），不传则不等待
     @Operation(summary = "查询司机新订单数据")
     @GetMapping("/findNewOrderQueueData/{driverId}")
-    public Result<List<NewOrderDataVo>> findNewOrderQueueData(@PathVariable Long driverId) {
+    public Result<List<NewOrderDataVo>> findNewOrderQueueData(@PathVariable Long driverId,
+                                                              @RequestParam(value = "waitMillis", required = false) Long waitMillis) {
         // 根据司机ID查询新订单数据
-        return Result.ok(newOrderService.findNewOrderQueueData(driverId));
+        return Result.ok(newOrderService.findNewOrderQueueData(driverId, waitMillis));
     }
 
     /**
@@ -48,5 +50,11 @@ public class NewOrderController {
         return Result.ok(newOrderService.clearNewOrderQueueData(driverId));
     }
 
+    @Operation(summary = "查询各派单轮次的推送人数与接单时长统计")
+    @GetMapping("/getDispatchRoundStats")
+    public Result<List<DispatchRoundStatsVo>> getDispatchRoundStats() {
+        return Result.ok(newOrderService.getDispatchRoundStats());
+    }
+
 }
 
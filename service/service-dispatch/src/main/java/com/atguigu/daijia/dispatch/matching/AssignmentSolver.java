@@ -0,0 +1,169 @@
+package com.atguigu.daijia.dispatch.matching;
+
+import java.util.Arrays;
+
+/**
+ * 订单与司机的指派求解
+ * <p>
+ * 代价矩阵的行为订单、列为司机，值为接驾距离，不可指派的位置为 {@link #FORBIDDEN}。
+ * 规模不超过阈值时用匈牙利算法求总接驾距离最小的指派，否则按接驾距离从小到大贪心指派
+ */
+public final class AssignmentSolver {
+
+    /**
+     * 不可指派（司机不在订单的候选范围内）
+     */
+    public static final double FORBIDDEN = Double.POSITIVE_INFINITY;
+
+    // 匈牙利算法中代替不可指派的大数，保证只要存在可行指派就不会选中
+    private static final double BIG = 1e9;
+
+    private AssignmentSolver() {
+    }
+
+    /**
+     * @param cost           代价矩阵 cost[订单][司机]
+     * @param hungarianLimit 订单数与司机数都不超过该值时使用匈牙利算法
+     * @return 每个订单指派的司机下标，未指派为-1
+     */
+    public static int[] solve(double[][] cost, int driverCount, int hungarianLimit) {
+        int orderCount = cost.length;
+        if (orderCount == 0 || driverCount == 0) {
+            int[] result = new int[orderCount];
+            Arrays.fill(result, -1);
+            return result;
+        }
+        if (orderCount <= hungarianLimit && driverCount <= hungarianLimit) {
+            return hungarian(cost, driverCount);
+        }
+        return greedy(cost, driverCount);
+    }
+
+    /**
+     * 匈牙利算法（势能 + 最短增广路），O(n²m)，要求行数不超过列数，否则转置后求解
+     */
+    static int[] hungarian(double[][] cost, int driverCount) {
+        int orderCount = cost.length;
+        boolean transposed = orderCount > driverCount;
+        int n = transposed ? driverCount : orderCount;
+        int m = transposed ? orderCount : driverCount;
+        double[][] a = new double[n][m];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                double value = transposed ? cost[j][i] : cost[i][j];
+                a[i][j] = Double.isInfinite(value) ? BIG : value;
+            }
+        }
+
+        // 下标从1开始，p[j]为第j列匹配的行，way记录增广路径
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] p = new int[m + 1];
+        int[] way = new int[m + 1];
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.MAX_VALUE);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                int j1 = 0;
+                double delta = Double.MAX_VALUE;
+                for (int j = 1; j <= m; j++) {
+                    if (!used[j]) {
+                        double cur = a[i0 - 1][j - 1] - u[i0] - v[j];
+                        if (cur < minv[j]) {
+                            minv[j] = cur;
+                            way[j] = j0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            j1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] result = new int[orderCount];
+        Arrays.fill(result, -1);
+        for (int j = 1; j <= m; j++) {
+            if (p[j] == 0) {
+                continue;
+            }
+            int order = transposed ? j - 1 : p[j] - 1;
+            int driver = transposed ? p[j] - 1 : j - 1;
+            // 被迫选中的不可指派位置视为未指派
+            if (!Double.isInfinite(cost[order][driver])) {
+                result[order] = driver;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 贪心指派：所有可指派的位置按接驾距离升序，依次指派订单和司机都未被占用的
+     */
+    static int[] greedy(double[][] cost, int driverCount) {
+        int orderCount = cost.length;
+        int edgeCount = 0;
+        for (double[] row : cost) {
+            for (int j = 0; j < driverCount; j++) {
+                if (!Double.isInfinite(row[j])) {
+                    edgeCount++;
+                }
+            }
+        }
+        // 边按 订单下标 * driverCount + 司机下标 编码，按代价排序
+        long[] edges = new long[edgeCount];
+        double[] weights = new double[edgeCount];
+        Integer[] order = new Integer[edgeCount];
+        int k = 0;
+        for (int i = 0; i < orderCount; i++) {
+            for (int j = 0; j < driverCount; j++) {
+                if (!Double.isInfinite(cost[i][j])) {
+                    edges[k] = (long) i * driverCount + j;
+                    weights[k] = cost[i][j];
+                    order[k] = k;
+                    k++;
+                }
+            }
+        }
+        Arrays.sort(order, (x, y) -> Double.compare(weights[x], weights[y]));
+
+        int[] result = new int[orderCount];
+        Arrays.fill(result, -1);
+        boolean[] driverUsed = new boolean[driverCount];
+        int assigned = 0;
+        int limit = Math.min(orderCount, driverCount);
+        for (int index : order) {
+            int i = (int) (edges[index] / driverCount);
+            int j = (int) (edges[index] % driverCount);
+            if (result[i] < 0 && !driverUsed[j]) {
+                result[i] = j;
+                driverUsed[j] = true;
+                if (++assigned == limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,430 @@
+package com.atguigu.daijia.dispatch.matching;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.dispatch.config.DispatchMatchingProperties;
+import com.atguigu.daijia.dispatch.service.NewOrderService;
+import com.atguigu.daijia.map.client.LocationFeignClient;
+import com.atguigu.daijia.model.form.map.SearchNearByDriverForm;
+import com.atguigu.daijia.model.vo.dispatch.NewOrderTaskVo;
+import com.atguigu.daijia.model.vo.map.NearByDriverVo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量匹配派单
+ * <p>
+ * 逐个订单推送时同一个司机会收到多个重叠的订单，多个订单在抢单时互相竞争。批量匹配方式下，
+ * 每隔 tick-ms 收集所有等待接单的订单，按上车点所在网格分区，各分区在不同线程上：
+ * 一次批量查询各订单的候选司机（排除已收到订单正在等待接单的司机和已推送过该订单的司机），
+ * 以接驾距离为代价求解指派（规模小用匈牙利算法，规模大贪心），
+ * 网格边界上同一司机被多个分区指派时保留接驾距离最短的一个，最后给每个司机只推送指派给他的订单。
+ * 司机在 offer-timeout-ms 内未接单，订单在下一次匹配中指派给其他司机。
+ * 订单停止派单调度时移出待匹配订单，超过 order-stale-ms 未被调度刷新的订单在匹配时移出
+ */
+@Slf4j
+@Component
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class BatchMatcher {
+
+    @Autowired
+    private DispatchMatchingProperties dispatchMatchingProperties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    @Autowired
+    private LocationFeignClient locationFeignClient;
+
+    // 与 NewOrderServiceImpl 互相依赖，延迟注入
+    @Lazy
+    @Autowired
+    private NewOrderService newOrderService;
+
+    private static final DefaultRedisScript<List> OFFER_SCRIPT = new DefaultRedisScript<>();
+
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        OFFER_SCRIPT.setLocation(new ClassPathResource("lua/matching_offer.lua"));
+        OFFER_SCRIPT.setResultType(List.class);
+        UNLOCK_SCRIPT.setLocation(new ClassPathResource("lua/matching_unlock.lua"));
+        UNLOCK_SCRIPT.setResultType(Long.class);
+    }
+
+    private ScheduledExecutorService tickExecutor;
+
+    private ExecutorService solveExecutor;
+
+    /**
+     * 一次指派：订单、司机、接驾距离
+     */
+    private record Assignment(NewOrderTaskVo order, NearByDriverVo driver) {
+        double distance() {
+            return driver.getDistance().doubleValue();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!dispatchMatchingProperties.isBatchMode()) {
+            return;
+        }
+        int threads = dispatchMatchingProperties.getThreads() > 0
+                ? dispatchMatchingProperties.getThreads() : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        solveExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "dispatch-matching-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        tickExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dispatch-matching-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tickMs = dispatchMatchingProperties.getTickMs();
+        tickExecutor.scheduleWithFixedDelay(this::match, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (tickExecutor != null) {
+            tickExecutor.shutdownNow();
+            solveExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 加入待匹配订单（重复加入时覆盖），每轮派单调度调用一次，同时刷新订单的刷新时间
+     */
+    public void addOrder(NewOrderTaskVo newOrderTaskVo) {
+        String orderId = newOrderTaskVo.getOrderId().toString();
+        // 先刷新时间再写入订单，匹配时不会把刚加入的订单当作过期订单
+        stringRedisTemplate.opsForZSet().add(RedisConstant.DISPATCH_MATCHING_ORDERS_REFRESH, orderId, System.currentTimeMillis());
+        stringRedisTemplate.opsForHash().put(RedisConstant.DISPATCH_MATCHING_ORDERS, orderId, JSONObject.toJSONString(newOrderTaskVo));
+    }
+
+    /**
+     * 订单不再等待接单或停止调度，移出待匹配订单
+     */
+    public void removeOrder(Long orderId) {
+        stringRedisTemplate.opsForHash().delete(RedisConstant.DISPATCH_MATCHING_ORDERS, orderId.toString());
+        stringRedisTemplate.opsForZSet().remove(RedisConstant.DISPATCH_MATCHING_ORDERS_REFRESH, orderId.toString());
+    }
+
+    /**
+     * 移出长时间未被派单调度刷新的订单：调度因异常等原因停止后，订单不再留在待匹配订单中被反复指派
+     */
+    private void removeStaleOrders(Map<Object, Object> entries, long now) {
+        double cutoff = now - dispatchMatchingProperties.getOrderStaleMs();
+        Set<String> refreshed = stringRedisTemplate.opsForZSet().rangeByScore(RedisConstant.DISPATCH_MATCHING_ORDERS_REFRESH, cutoff, Double.MAX_VALUE);
+        List<Object> staleIds = new ArrayList<>();
+        for (Object orderId : entries.keySet()) {
+            if (refreshed == null || !refreshed.contains(orderId.toString())) {
+                staleIds.add(orderId);
+            }
+        }
+        stringRedisTemplate.opsForZSet().removeRangeByScore(RedisConstant.DISPATCH_MATCHING_ORDERS_REFRESH, 0, cutoff);
+        if (!staleIds.isEmpty()) {
+            stringRedisTemplate.opsForHash().delete(RedisConstant.DISPATCH_MATCHING_ORDERS, staleIds.toArray());
+            staleIds.forEach(entries::remove);
+            log.warn("移出长时间未被派单调度刷新的待匹配订单：{}", staleIds);
+        }
+    }
+
+    /**
+     * 执行一次批量匹配
+     * 整个匹配过程持有匹配锁（带持有者标识，租期远大于一次匹配的耗时），结束时只释放自己持有的锁；
+     * 指派结果写入前在Lua脚本中确认仍持有锁，并跳过期间已在等待接单的司机，同一司机不会同时收到两个订单
+     */
+    void match() {
+        long lockLeaseMs = dispatchMatchingProperties.getLockLeaseMs();
+        String lockToken = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(RedisConstant.DISPATCH_MATCHING_LOCK, lockToken, lockLeaseMs, TimeUnit.MILLISECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            long startTime = System.currentTimeMillis();
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(RedisConstant.DISPATCH_MATCHING_ORDERS);
+            removeStaleOrders(entries, startTime);
+            if (entries.isEmpty()) {
+                return;
+            }
+
+            // 正在等待接单的司机，本次不再指派
+            stringRedisTemplate.opsForZSet().removeRangeByScore(RedisConstant.DISPATCH_MATCHING_OFFERS, 0, startTime);
+            Set<String> offered = stringRedisTemplate.opsForZSet().range(RedisConstant.DISPATCH_MATCHING_OFFERS, 0, -1);
+            Set<Long> busyDrivers = new HashSet<>();
+            if (offered != null) {
+                offered.forEach(driverId -> busyDrivers.add(Long.valueOf(driverId)));
+            }
+
+            // 按上车点所在网格分区
+            double cellSize = dispatchMatchingProperties.getCellSize();
+            Map<Long, List<NewOrderTaskVo>> partitions = new HashMap<>();
+            for (Object value : entries.values()) {
+                NewOrderTaskVo newOrderTaskVo = JSONObject.parseObject(value.toString(), NewOrderTaskVo.class);
+                long row = (long) Math.floor(newOrderTaskVo.getStartPointLatitude().doubleValue() / cellSize);
+                long col = (long) Math.floor(newOrderTaskVo.getStartPointLongitude().doubleValue() / cellSize);
+                partitions.computeIfAbsent((row << 32) ^ (col & 0xffffffffL), key -> new ArrayList<>()).add(newOrderTaskVo);
+            }
+
+            // 各分区并行求解，租期过半仍未完成的分区本次放弃
+            long solveDeadline = startTime + lockLeaseMs / 2;
+            List<CompletableFuture<List<Assignment>>> futures = new ArrayList<>(partitions.size());
+            for (List<NewOrderTaskVo> orders : partitions.values()) {
+                futures.add(CompletableFuture.supplyAsync(() -> solvePartition(orders, busyDrivers), solveExecutor));
+            }
+            List<Assignment> assignments = new ArrayList<>();
+            for (CompletableFuture<List<Assignment>> future : futures) {
+                try {
+                    assignments.addAll(future.get(Math.max(solveDeadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS));
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    log.warn("分区批量匹配超时，本次放弃");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    log.error("分区批量匹配失败", e);
+                }
+            }
+
+            // 网格边界上同一司机可能被多个分区指派，保留接驾距离最短的
+            assignments.sort(Comparator.comparingDouble(Assignment::distance));
+            Set<Long> assignedDrivers = new HashSet<>();
+            List<Assignment> offers = new ArrayList<>(assignments.size());
+            for (Assignment assignment : assignments) {
+                if (assignedDrivers.add(assignment.driver().getDriverId())) {
+                    offers.add(assignment);
+                }
+            }
+            int offerCount = offer(offers, lockToken);
+            log.info("批量匹配：订单{}个，分区{}个，指派{}个，耗时{}毫秒", entries.size(), partitions.size(), offerCount, System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("批量匹配失败", e);
+        } finally {
+            try {
+                stringRedisTemplate.execute(UNLOCK_SCRIPT, List.of(RedisConstant.DISPATCH_MATCHING_LOCK), lockToken);
+            } catch (Exception e) {
+                // 释放失败时锁在租期后自动过期
+                log.warn("释放批量匹配锁失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 写入全部指派：记为等待接单并推送给司机
+     * 匹配锁和等待接单的司机使用相同的hash tag，先用一个只访问这两个key的Lua脚本确认仍持有锁并预留空闲司机；
+     * 订单已推送司机set和司机临时队列分属不同的订单和司机，在Redis Cluster中位于不同槽位，
+     * 再用一个pipeline记录已推送司机（SADD），最后一个pipeline推送给新记录的司机，并释放已推送过该订单的司机的预留，共三次Redis往返
+     *
+     * @return 推送成功的指派数，锁已被其他节点持有时为0
+     */
+    private int offer(List<Assignment> offers, String lockToken) {
+        if (offers.isEmpty()) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        byte[][] args = new byte[offers.size() + 3][];
+        args[0] = lockToken.getBytes(StandardCharsets.UTF_8);
+        args[1] = String.valueOf(now).getBytes(StandardCharsets.UTF_8);
+        args[2] = String.valueOf(now + dispatchMatchingProperties.getOfferTimeoutMs()).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < offers.size(); i++) {
+            args[i + 3] = offers.get(i).driver().getDriverId().toString().getBytes(StandardCharsets.UTF_8);
+        }
+        List<Long> reservedIndexes = (List<Long>) redisTemplate.execute(OFFER_SCRIPT, RedisSerializer.byteArray(), RedisSerializer.byteArray(),
+                List.of(RedisConstant.DISPATCH_MATCHING_LOCK, RedisConstant.DISPATCH_MATCHING_OFFERS), (Object[]) args);
+        if (reservedIndexes.size() == 1 && reservedIndexes.get(0) < 0) {
+            log.warn("批量匹配锁已过期并被其他节点持有，本次指派不写入");
+            return 0;
+        }
+        if (reservedIndexes.isEmpty()) {
+            return 0;
+        }
+        List<Assignment> reserved = new ArrayList<>(reservedIndexes.size());
+        for (Long index : reservedIndexes) {
+            reserved.add(offers.get(index.intValue() - 1));
+        }
+
+        // 记录已推送司机，已推送过该订单的司机跳过（set成员与redisTemplate序列化的Long一致）
+        RedisSerializer keySerializer = redisTemplate.getKeySerializer();
+        long repeatExpireSeconds = TimeUnit.MINUTES.toSeconds(RedisConstant.DRIVER_ORDER_REPEAT_LIST_EXPIRES_TIME);
+        List<Object> added = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Assignment assignment : reserved) {
+                byte[] repeatKey = keySerializer.serialize(RedisConstant.DRIVER_ORDER_REPEAT_LIST + assignment.order().getOrderId());
+                connection.setCommands().sAdd(repeatKey, driverMember(assignment));
+                connection.keyCommands().expire(repeatKey, repeatExpireSeconds);
+            }
+            return null;
+        });
+        List<Assignment> pushed = new ArrayList<>(reserved.size());
+        List<Assignment> skipped = new ArrayList<>();
+        for (int i = 0; i < reserved.size(); i++) {
+            Object result = added.get(i * 2);
+            if (result instanceof Long && (Long) result == 1) {
+                pushed.add(reserved.get(i));
+            } else {
+                skipped.add(reserved.get(i));
+            }
+        }
+
+        // 推送给司机；已推送过该订单的司机释放预留
+        byte[] offersKey = keySerializer.serialize(RedisConstant.DISPATCH_MATCHING_OFFERS);
+        long tempExpireSeconds = TimeUnit.MINUTES.toSeconds(RedisConstant.DRIVER_ORDER_TEMP_LIST_EXPIRES_TIME);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Assignment assignment : pushed) {
+                    byte[] tempKey = keySerializer.serialize(RedisConstant.DRIVER_ORDER_TEMP_LIST + assignment.driver().getDriverId());
+                    connection.listCommands().lPush(tempKey, JSON.toJSONBytes(newOrderService.buildNewOrderData(assignment.order(), assignment.driver())));
+                    connection.keyCommands().expire(tempKey, tempExpireSeconds);
+                }
+                for (Assignment assignment : skipped) {
+                    connection.zSetCommands().zRem(offersKey, driverMember(assignment));
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // 推送失败时撤销已推送记录和预留，下次匹配可以重新指派
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Assignment assignment : reserved) {
+                    connection.setCommands().sRem(keySerializer.serialize(RedisConstant.DRIVER_ORDER_REPEAT_LIST + assignment.order().getOrderId()), driverMember(assignment));
+                    connection.zSetCommands().zRem(offersKey, driverMember(assignment));
+                }
+                return null;
+            });
+            throw e;
+        }
+        for (Assignment assignment : pushed) {
+            log.info("批量匹配指派，订单：{}，司机：{}", assignment.order().getOrderId(), assignment.driver().getDriverId());
+        }
+        return pushed.size();
+    }
+
+    private static byte[] driverMember(Assignment assignment) {
+        return assignment.driver().getDriverId().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 求解一个分区：查询候选司机，构造接驾距离矩阵并指派
+     */
+    private List<Assignment> solvePartition(List<NewOrderTaskVo> orders, Set<Long> busyDrivers) {
+        List<SearchNearByDriverForm> formList = new ArrayList<>(orders.size());
+        for (NewOrderTaskVo newOrderTaskVo : orders) {
+            SearchNearByDriverForm searchNearByDriverForm = new SearchNearByDriverForm();
+            searchNearByDriverForm.setLongitude(newOrderTaskVo.getStartPointLongitude());
+            searchNearByDriverForm.setLatitude(newOrderTaskVo.getStartPointLatitude());
+            searchNearByDriverForm.setMileageDistance(newOrderTaskVo.getExpectDistance());
+            searchNearByDriverForm.setRadius(dispatchMatchingProperties.getRadius());
+            searchNearByDriverForm.setLimit(dispatchMatchingProperties.getCandidateLimit());
+            formList.add(searchNearByDriverForm);
+        }
+        List<List<NearByDriverVo>> candidateList = locationFeignClient.searchNearByDriverBatch(formList).getData();
+        List<Set<Long>> pushedList = findPushedDrivers(orders);
+
+        // 候选司机编号，构造 订单 x 司机 的接驾距离矩阵
+        Map<Long, Integer> driverIndex = new HashMap<>();
+        List<NearByDriverVo> drivers = new ArrayList<>();
+        double[][] cost = new double[orders.size()][];
+        for (int i = 0; i < orders.size(); i++) {
+            for (NearByDriverVo driver : candidateList.get(i)) {
+                if (!busyDrivers.contains(driver.getDriverId()) && !pushedList.get(i).contains(driver.getDriverId())
+                        && !driverIndex.containsKey(driver.getDriverId())) {
+                    driverIndex.put(driver.getDriverId(), drivers.size());
+                    drivers.add(driver);
+                }
+            }
+        }
+        for (int i = 0; i < orders.size(); i++) {
+            cost[i] = new double[drivers.size()];
+            Arrays.fill(cost[i], AssignmentSolver.FORBIDDEN);
+            for (NearByDriverVo driver : candidateList.get(i)) {
+                Integer j = driverIndex.get(driver.getDriverId());
+                if (j != null && !pushedList.get(i).contains(driver.getDriverId())) {
+                    cost[i][j] = driver.getDistance().doubleValue();
+                }
+            }
+        }
+
+        int[] result = AssignmentSolver.solve(cost, drivers.size(), dispatchMatchingProperties.getHungarianLimit());
+        List<Assignment> assignments = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            if (result[i] < 0) {
+                continue;
+            }
+            NearByDriverVo candidate = drivers.get(result[i]);
+            // 接驾距离取该订单的搜索结果
+            NearByDriverVo driver = new NearByDriverVo();
+            driver.setDriverId(candidate.getDriverId());
+            driver.setDistance(new BigDecimal(cost[i][result[i]]).setScale(2, RoundingMode.HALF_UP));
+            assignments.add(new Assignment(orders.get(i), driver));
+        }
+        return assignments;
+    }
+
+    /**
+     * 批量查询各订单已推送过的司机
+     */
+    private List<Set<Long>> findPushedDrivers(List<NewOrderTaskVo> orders) {
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (NewOrderTaskVo newOrderTaskVo : orders) {
+                    operations.opsForSet().members(RedisConstant.DRIVER_ORDER_REPEAT_LIST + newOrderTaskVo.getOrderId());
+                }
+                return null;
+            }
+        });
+        List<Set<Long>> pushedList = new ArrayList<>(orders.size());
+        for (Object result : results) {
+            Set<Long> pushed = new HashSet<>();
+            if (result instanceof Collection) {
+                for (Object driverId : (Collection) result) {
+                    pushed.add(((Number) driverId).longValue());
+                }
+            }
+            pushedList.add(pushed);
+        }
+        return pushedList;
+    }
+}
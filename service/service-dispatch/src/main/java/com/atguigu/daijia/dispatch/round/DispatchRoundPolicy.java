@@ -0,0 +1,156 @@
+package com.atguigu.daijia.dispatch.round;
+
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.dispatch.config.DispatchRoundProperties;
+import com.atguigu.daijia.model.vo.dispatch.DispatchRoundStatsVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 逐轮扩大范围派单
+ * <p>
+ * 从小半径、少量最近的司机开始推送，按开始派单后经过的时间进入下一轮，逐轮扩大半径和推送数量：
+ * 司机密集的区域在前几轮就被接单，不会一次推送给几百个司机；司机稀少的区域逐步扩大到更远的司机。
+ * 开始派单的时间记录在Redis中，多个节点、xxl-job与时间轮两种调度方式下轮次一致；
+ * 同时统计每轮的推送人数（扇出）以及在该轮被接单的订单从开始派单到接单的时长
+ */
+@Slf4j
+@Component
+public class DispatchRoundPolicy {
+
+    @Autowired
+    private DispatchRoundProperties dispatchRoundProperties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 轮次（从0开始） -> 统计
+    private final Map<Integer, RoundCounter> counters = new ConcurrentHashMap<>();
+
+    private static class RoundCounter {
+        final LongAdder dispatchCount = new LongAdder();
+        final LongAdder pushCount = new LongAdder();
+        final LongAdder emptyCount = new LongAdder();
+        final LongAdder acceptCount = new LongAdder();
+        final LongAdder acceptMillis = new LongAdder();
+    }
+
+    public boolean isEnabled() {
+        return dispatchRoundProperties.getEnabled() && !dispatchRoundProperties.getRounds().isEmpty();
+    }
+
+    /**
+     * 订单当前所在的轮次，第一次调用时记录开始派单时间
+     *
+     * @return 轮次，从0开始
+     */
+    public int currentRound(Long orderId) {
+        String key = RedisConstant.DISPATCH_ROUND_START + orderId;
+        long now = System.currentTimeMillis();
+        Boolean first = stringRedisTemplate.opsForValue().setIfAbsent(key, String.valueOf(now),
+                RedisConstant.DRIVER_ORDER_REPEAT_LIST_EXPIRES_TIME, TimeUnit.MINUTES);
+        if (Boolean.TRUE.equals(first)) {
+            return 0;
+        }
+        String startTime = stringRedisTemplate.opsForValue().get(key);
+        return startTime == null ? 0 : roundAt(now - Long.parseLong(startTime));
+    }
+
+    public int getEtaCandidateFactor() {
+        return dispatchRoundProperties.getEtaCandidateFactor();
+    }
+
+    public DispatchRoundProperties.Round getRound(int round) {
+        List<DispatchRoundProperties.Round> rounds = dispatchRoundProperties.getRounds();
+        return rounds.get(Math.min(round, rounds.size() - 1));
+    }
+
+    /**
+     * 记录一次派单
+     *
+     * @param pushCount 本次新推送的司机数
+     */
+    public void recordDispatch(int round, int pushCount) {
+        RoundCounter counter = counter(round);
+        counter.dispatchCount.increment();
+        counter.pushCount.add(pushCount);
+        if (pushCount == 0) {
+            counter.emptyCount.increment();
+        }
+    }
+
+    /**
+     * 订单结束派单：已接单的按接单时间统计到所在轮次，并删除开始派单时间（每个订单只统计一次）
+     *
+     * @param acceptTime 接单时间，未接单（取消）时为null
+     */
+    public void finish(Long orderId, Long acceptTime) {
+        String startTime = stringRedisTemplate.opsForValue().getAndDelete(RedisConstant.DISPATCH_ROUND_START + orderId);
+        if (startTime == null || acceptTime == null) {
+            return;
+        }
+        long elapsed = Math.max(acceptTime - Long.parseLong(startTime), 0);
+        int round = roundAt(elapsed);
+        RoundCounter counter = counter(round);
+        counter.acceptCount.increment();
+        counter.acceptMillis.add(elapsed);
+        log.info("订单在第{}轮派单被接单，订单：{}，耗时：{}毫秒", round + 1, orderId, elapsed);
+    }
+
+    /**
+     * 各轮次的派单统计
+     */
+    public List<DispatchRoundStatsVo> getStats() {
+        List<DispatchRoundProperties.Round> rounds = dispatchRoundProperties.getRounds();
+        List<DispatchRoundStatsVo> list = new ArrayList<>(rounds.size());
+        for (int i = 0; i < rounds.size(); i++) {
+            RoundCounter counter = counter(i);
+            DispatchRoundStatsVo statsVo = new DispatchRoundStatsVo();
+            statsVo.setRound(i + 1);
+            statsVo.setRadius(rounds.get(i).getRadius());
+            statsVo.setLimit(rounds.get(i).getLimit());
+            statsVo.setDispatchCount(counter.dispatchCount.sum());
+            statsVo.setPushCount(counter.pushCount.sum());
+            statsVo.setAvgFanOut(average(statsVo.getPushCount(), statsVo.getDispatchCount()));
+            statsVo.setEmptyCount(counter.emptyCount.sum());
+            statsVo.setAcceptCount(counter.acceptCount.sum());
+            statsVo.setAvgAcceptSeconds(average(counter.acceptMillis.sum() / 1000.0, statsVo.getAcceptCount()));
+            list.add(statsVo);
+        }
+        return list;
+    }
+
+    /**
+     * 开始派单后经过 elapsed 毫秒时所在的轮次
+     */
+    private int roundAt(long elapsed) {
+        List<DispatchRoundProperties.Round> rounds = dispatchRoundProperties.getRounds();
+        long end = 0;
+        for (int i = 0; i < rounds.size() - 1; i++) {
+            end += rounds.get(i).getDurationMs();
+            if (elapsed < end) {
+                return i;
+            }
+        }
+        return rounds.size() - 1;
+    }
+
+    private RoundCounter counter(int round) {
+        return counters.computeIfAbsent(round, key -> new RoundCounter());
+    }
+
+    private static BigDecimal average(double sum, long count) {
+        return count == 0 ? BigDecimal.ZERO : BigDecimal.valueOf(sum / count).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,306 @@
+package com.atguigu.daijia.dispatch.scheduler;
+
+import com.alibaba.fastjson.JSONObject;
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.dispatch.config.DispatchMatchingProperties;
+import com.atguigu.daijia.dispatch.config.DispatchSchedulerProperties;
+import com.atguigu.daijia.dispatch.mapper.OrderJobMapper;
+import com.atguigu.daijia.dispatch.matching.BatchMatcher;
+import com.atguigu.daijia.dispatch.service.NewOrderService;
+import com.atguigu.daijia.model.entity.dispatch.OrderJob;
+import com.atguigu.daijia.model.vo.dispatch.NewOrderTaskVo;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 新订单派单调度（时间轮）
+ * <p>
+ * 取代每个订单一个每分钟执行的xxl-job任务：新订单加入本服务内的分层时间轮，立即执行第一轮派单，
+ * 之后每隔 interval-ms 再执行一轮，订单不再处于等待接单状态（或超过最长调度时间）时自动停止。
+ * 待派单订单记录在Redis的zset中，调度参数从 order_job 读取。每个订单带租期地归属一个节点，只在该节点的时间轮中调度，
+ * 每轮派单时续期；节点宕机后归属过期，其他节点定期恢复时只接管无人持有的订单，停机时主动释放本节点持有的订单
+ */
+@Slf4j
+@Component
+public class DispatchScheduler {
+
+    @Autowired
+    private DispatchSchedulerProperties dispatchSchedulerProperties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderJobMapper orderJobMapper;
+
+    @Autowired
+    private DispatchMatchingProperties dispatchMatchingProperties;
+
+    @Autowired
+    private BatchMatcher batchMatcher;
+
+    // 与 NewOrderServiceImpl 互相依赖，延迟注入
+    @Lazy
+    @Autowired
+    private NewOrderService newOrderService;
+
+    private static final DefaultRedisScript<Long> OWNER_ACQUIRE_SCRIPT = new DefaultRedisScript<>();
+
+    private static final DefaultRedisScript<Long> OWNER_RELEASE_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        OWNER_ACQUIRE_SCRIPT.setLocation(new ClassPathResource("lua/scheduler_owner_acquire.lua"));
+        OWNER_ACQUIRE_SCRIPT.setResultType(Long.class);
+        OWNER_RELEASE_SCRIPT.setLocation(new ClassPathResource("lua/scheduler_owner_release.lua"));
+        OWNER_RELEASE_SCRIPT.setResultType(Long.class);
+    }
+
+    // 本节点标识，作为订单调度归属的值
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 订单id -> 本节点时间轮中的调度任务
+    private final Map<Long, DispatchTask> tasks = new ConcurrentHashMap<>();
+
+    private HierarchicalTimingWheel timingWheel;
+
+    private ThreadPoolExecutor workerExecutor;
+
+    private ScheduledExecutorService recoverExecutor;
+
+    private Thread tickThread;
+
+    private volatile boolean running;
+
+    private class DispatchTask implements Runnable {
+        final NewOrderTaskVo newOrderTaskVo;
+        // 开始调度时间
+        final long startTime;
+
+        DispatchTask(NewOrderTaskVo newOrderTaskVo, long startTime) {
+            this.newOrderTaskVo = newOrderTaskVo;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void run() {
+            execute(this);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!dispatchSchedulerProperties.isWheelMode()) {
+            return;
+        }
+        int threads = dispatchSchedulerProperties.getWorkerThreads();
+        AtomicInteger threadNumber = new AtomicInteger();
+        workerExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(dispatchSchedulerProperties.getWorkerQueueSize()),
+                runnable -> new Thread(runnable, "dispatch-worker-" + threadNumber.incrementAndGet()));
+        timingWheel = new HierarchicalTimingWheel(dispatchSchedulerProperties.getTickMs(), dispatchSchedulerProperties.getWheelSize(), this::submit);
+
+        running = true;
+        tickThread = new Thread(() -> {
+            while (running) {
+                try {
+                    timingWheel.advance(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    log.error("推进派单时间轮失败", e);
+                }
+            }
+        }, "dispatch-wheel-tick");
+        tickThread.setDaemon(true);
+        tickThread.start();
+
+        recoverExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dispatch-wheel-recover");
+            thread.setDaemon(true);
+            return thread;
+        });
+        recoverExecutor.scheduleWithFixedDelay(this::recover, 0, dispatchSchedulerProperties.getRecoverIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        tickThread.interrupt();
+        recoverExecutor.shutdownNow();
+        workerExecutor.shutdown();
+        workerExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        // 释放本节点持有的订单，其他节点下次恢复时即可接管，不必等待租期过期
+        for (Long orderId : tasks.keySet()) {
+            try {
+                stringRedisTemplate.execute(OWNER_RELEASE_SCRIPT, List.of(RedisConstant.DISPATCH_SCHEDULER_OWNER + orderId), nodeId);
+            } catch (Exception e) {
+                log.warn("释放订单调度归属失败，订单：{}，{}", orderId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 开始调度订单，本节点持有该订单时立即执行第一轮派单；订单已在调度中时忽略
+     */
+    public void schedule(NewOrderTaskVo newOrderTaskVo) {
+        long now = System.currentTimeMillis();
+        // 已存在时保留原来的开始调度时间
+        stringRedisTemplate.opsForZSet().addIfAbsent(RedisConstant.DISPATCH_SCHEDULER_ORDERS, newOrderTaskVo.getOrderId().toString(), now);
+        if (acquire(newOrderTaskVo.getOrderId())) {
+            add(newOrderTaskVo, now, now);
+        }
+    }
+
+    /**
+     * 本节点时间轮中调度的订单数
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+    private void add(NewOrderTaskVo newOrderTaskVo, long startTime, long runTime) {
+        DispatchTask task = new DispatchTask(newOrderTaskVo, startTime);
+        if (tasks.putIfAbsent(newOrderTaskVo.getOrderId(), task) == null) {
+            timingWheel.add(runTime, task);
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            workerExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // 执行线程忙，推迟一格再提交
+            timingWheel.add(System.currentTimeMillis() + dispatchSchedulerProperties.getTickMs(), task);
+        }
+    }
+
+    private void execute(DispatchTask task) {
+        Long orderId = task.newOrderTaskVo.getOrderId();
+        long intervalMs = dispatchSchedulerProperties.getIntervalMs();
+        boolean keep = true;
+        boolean owned = true;
+        try {
+            if (System.currentTimeMillis() - task.startTime > TimeUnit.MINUTES.toMillis(dispatchSchedulerProperties.getMaxLifetimeMinutes())) {
+                log.info("订单超过最长调度时间，停止派单调度，订单：{}", orderId);
+                keep = false;
+            } else if (!acquire(orderId)) {
+                // 租期内未能续期（如长时间停顿），订单已由其他节点接管
+                log.info("订单已由其他节点调度，本节点停止调度，订单：{}", orderId);
+                owned = false;
+            } else {
+                keep = newOrderService.dispatchNewOrder(task.newOrderTaskVo);
+                if (!keep) {
+                    log.info("订单已不在等待接单状态，停止派单调度，订单：{}", orderId);
+                }
+            }
+        } catch (Exception e) {
+            log.error("派单失败，订单：{}", orderId, e);
+        }
+        if (keep && owned && running) {
+            timingWheel.add(System.currentTimeMillis() + intervalMs, task);
+        } else {
+            tasks.remove(orderId, task);
+            if (!keep) {
+                this.stopOrder(orderId);
+            }
+        }
+    }
+
+    /**
+     * 订单停止派单调度：移出待派单订单，批量匹配方式下同时移出待匹配订单
+     */
+    private void stopOrder(Long orderId) {
+        stringRedisTemplate.opsForZSet().remove(RedisConstant.DISPATCH_SCHEDULER_ORDERS, orderId.toString());
+        stringRedisTemplate.delete(RedisConstant.DISPATCH_SCHEDULER_OWNER + orderId);
+        if (dispatchMatchingProperties.isBatchMode()) {
+            batchMatcher.removeOrder(orderId);
+        }
+    }
+
+    /**
+     * 持有或续期订单的调度归属
+     *
+     * @return 本节点持有返回true，已归属其他节点返回false
+     */
+    private boolean acquire(Long orderId) {
+        Long owned = stringRedisTemplate.execute(OWNER_ACQUIRE_SCRIPT, List.of(RedisConstant.DISPATCH_SCHEDULER_OWNER + orderId),
+                nodeId, String.valueOf(dispatchSchedulerProperties.getOwnerLeaseMs()));
+        return owned != null && owned == 1L;
+    }
+
+    /**
+     * 接管Redis中待派单且无人持有的订单（持有节点宕机或重启前未完成的订单），加入本节点的时间轮
+     * 先一次MGET查询所有不在本节点的订单的归属，只对无人持有的订单尝试持有
+     */
+    private void recover() {
+        try {
+            Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().rangeWithScores(RedisConstant.DISPATCH_SCHEDULER_ORDERS, 0, -1);
+            if (tuples == null) {
+                return;
+            }
+            List<ZSetOperations.TypedTuple<String>> candidates = new ArrayList<>();
+            List<String> ownerKeys = new ArrayList<>();
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                if (!tasks.containsKey(Long.valueOf(tuple.getValue()))) {
+                    candidates.add(tuple);
+                    ownerKeys.add(RedisConstant.DISPATCH_SCHEDULER_OWNER + tuple.getValue());
+                }
+            }
+            if (candidates.isEmpty()) {
+                return;
+            }
+            List<String> owners = stringRedisTemplate.opsForValue().multiGet(ownerKeys);
+            long now = System.currentTimeMillis();
+            int count = 0;
+            for (int i = 0; i < candidates.size(); i++) {
+                ZSetOperations.TypedTuple<String> tuple = candidates.get(i);
+                Long orderId = Long.valueOf(tuple.getValue());
+                if ((owners != null && owners.get(i) != null) || !acquire(orderId)) {
+                    continue;
+                }
+                OrderJob orderJob = orderJobMapper.selectOne(new LambdaQueryWrapper<OrderJob>().eq(OrderJob::getOrderId, orderId));
+                if (orderJob == null) {
+                    // 添加任务的事务已回滚
+                    this.stopOrder(orderId);
+                    continue;
+                }
+                NewOrderTaskVo newOrderTaskVo = JSONObject.parseObject(orderJob.getParameter(), NewOrderTaskVo.class);
+                // 错开各订单的执行时间，避免恢复后同一时刻集中执行
+                add(newOrderTaskVo, tuple.getScore().longValue(), now + (orderId % dispatchSchedulerProperties.getIntervalMs()));
+                count++;
+            }
+            if (count > 0) {
+                log.info("接管待派单订单：{}个", count);
+            }
+        } catch (Exception e) {
+            log.error("恢复待派单订单失败", e);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.atguigu.daijia.dispatch.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 分层时间轮
+ * <p>
+ * 第一层每格 tickMs、共 wheelSize 格，超出本层范围的任务放入上一层（每格为下一层一整圈），逐层按需创建；
+ * 有任务的格子按到期时间放入 DelayQueue，推进线程只在有格子到期时醒来，推进时钟后把格子中的任务重新加入：
+ * 已到期的交给执行器，未到期的落入更低一层的格子。添加任务 O(1)，空转不占用CPU
+ */
+public class HierarchicalTimingWheel {
+
+    private final DelayQueue<Bucket> delayQueue = new DelayQueue<>();
+
+    // 添加任务持有读锁，推进时钟持有写锁
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Executor executor;
+
+    private final Level root;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param tickMs    第一层每格时长，单位：毫秒
+     * @param wheelSize 每层格数
+     * @param executor  执行到期任务
+     */
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, Executor executor) {
+        this.executor = executor;
+        this.root = new Level(tickMs, wheelSize, System.currentTimeMillis());
+    }
+
+    /**
+     * 添加任务，已到期的立即交给执行器，其余在到期后一格之内执行
+     *
+     * @param expirationMs 到期时间，毫秒时间戳
+     */
+    public void add(long expirationMs, Runnable task) {
+        lock.readLock().lock();
+        try {
+            // 到期时间向上取整到第一层的格子，保证不会早于到期时间执行
+            long tickMs = root.tickMs;
+            addEntry(new Entry(Math.floorDiv(expirationMs + tickMs - 1, tickMs) * tickMs, task));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 等待最近一个格子到期并推进时钟
+     *
+     * @param timeoutMs 最长等待时间，单位：毫秒
+     * @return 是否有格子到期
+     */
+    public boolean advance(long timeoutMs) throws InterruptedException {
+        Bucket bucket = delayQueue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (bucket == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            while (bucket != null) {
+                root.advanceClock(bucket.getExpiration());
+                for (Entry entry : bucket.flush()) {
+                    size.decrementAndGet();
+                    addEntry(entry);
+                }
+                bucket = delayQueue.poll();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    /**
+     * 时间轮中尚未到期的任务数
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private void addEntry(Entry entry) {
+        if (root.add(entry)) {
+            size.incrementAndGet();
+        } else {
+            executor.execute(entry.task);
+        }
+    }
+
+    private static class Entry {
+        final long expirationMs;
+        final Runnable task;
+
+        Entry(long expirationMs, Runnable task) {
+            this.expirationMs = expirationMs;
+            this.task = task;
+        }
+    }
+
+    /**
+     * 时间轮的一层
+     */
+    private class Level {
+
+        private final long tickMs;
+        private final int wheelSize;
+        // 本层一圈的时长
+        private final long interval;
+        private final Bucket[] buckets;
+        // 本层当前时间，tickMs的整数倍
+        private volatile long currentTime;
+        private volatile Level overflow;
+
+        Level(long tickMs, int wheelSize, long startMs) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.interval = tickMs * wheelSize;
+            this.currentTime = startMs - startMs % tickMs;
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket();
+            }
+        }
+
+        /**
+         * @return 已到期（不足一格）返回false
+         */
+        boolean add(Entry entry) {
+            long expiration = entry.expirationMs;
+            if (expiration < currentTime + tickMs) {
+                return false;
+            }
+            if (expiration < currentTime + interval) {
+                long virtualId = expiration / tickMs;
+                Bucket bucket = buckets[(int) (virtualId % wheelSize)];
+                bucket.add(entry);
+                // 格子到期时间变化说明是新的一圈，重新放入延迟队列
+                if (bucket.setExpiration(virtualId * tickMs)) {
+                    delayQueue.offer(bucket);
+                }
+                return true;
+            }
+            return overflow().add(entry);
+        }
+
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - timeMs % tickMs;
+                Level next = overflow;
+                if (next != null) {
+                    next.advanceClock(currentTime);
+                }
+            }
+        }
+
+        private Level overflow() {
+            Level next = overflow;
+            if (next == null) {
+                synchronized (this) {
+                    next = overflow;
+                    if (next == null) {
+                        next = new Level(interval, wheelSize, currentTime);
+                        overflow = next;
+                    }
+                }
+            }
+            return next;
+        }
+    }
+
+    /**
+     * 格子：同一到期时间的任务
+     */
+    private static class Bucket implements Delayed {
+
+        private final AtomicLong expiration = new AtomicLong(-1);
+
+        private List<Entry> entries = new ArrayList<>();
+
+        synchronized void add(Entry entry) {
+            entries.add(entry);
+        }
+
+        synchronized List<Entry> flush() {
+            List<Entry> flushed = entries;
+            entries = new ArrayList<>();
+            expiration.set(-1);
+            return flushed;
+        }
+
+        boolean setExpiration(long expirationMs) {
+            return expiration.getAndSet(expirationMs) != expirationMs;
+        }
+
+        long getExpiration() {
+            return expiration.get();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(getExpiration() - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getExpiration(), ((Bucket) other).getExpiration());
+        }
+    }
+}
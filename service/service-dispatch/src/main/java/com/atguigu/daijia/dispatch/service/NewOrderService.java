@@ -1,6 +1,8 @@
 package com.atguigu.daijia.dispatch.service;
 
+import com.atguigu.daijia.model.vo.dispatch.DispatchRoundStatsVo;
 import com.atguigu.daijia.model.vo.dispatch.NewOrderTaskVo;
+import com.atguigu.daijia.model.vo.map.NearByDriverVo;
 import com.atguigu.daijia.model.vo.order.NewOrderDataVo;
 
 import java.util.List;
@@ -10,7 +12,18 @@ public interface NewOrderService {
     Long addAndStartTask(NewOrderTaskVo newOrderTaskVo);
 
      Boolean executeTask(Long jobId);
+
+    Boolean dispatchNewOrder(NewOrderTaskVo newOrderTaskVo);
+
+    List<NearByDriverVo> pushNewOrder(NewOrderTaskVo newOrderTaskVo, List<NearByDriverVo> driverList);
+
+    NewOrderDataVo buildNewOrderData(NewOrderTaskVo newOrderTaskVo, NearByDriverVo driver);
+
     List<NewOrderDataVo> findNewOrderQueueData(Long driverId);
 
+    List<NewOrderDataVo> findNewOrderQueueData(Long driverId, Long waitMillis);
+
     Boolean clearNewOrderQueueData(Long driverId);
+
+    List<DispatchRoundStatsVo> getDispatchRoundStats();
 }
@@ -3,42 +3,108 @@ package com.atguigu.daijia.dispatch.service.impl;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.common.constant.SystemConstant;
+import com.atguigu.daijia.dispatch.config.DispatchMatchingProperties;
+import com.atguigu.daijia.dispatch.config.DispatchRoundProperties;
+import com.atguigu.daijia.dispatch.config.DispatchSchedulerProperties;
+import com.atguigu.daijia.dispatch.config.NewOrderQueueProperties;
 import com.atguigu.daijia.dispatch.mapper.OrderJobMapper;
+import com.atguigu.daijia.dispatch.matching.BatchMatcher;
+import com.atguigu.daijia.dispatch.round.DispatchRoundPolicy;
+import com.atguigu.daijia.dispatch.scheduler.DispatchScheduler;
 import com.atguigu.daijia.dispatch.service.NewOrderService;
 import com.atguigu.daijia.dispatch.xxl.client.XxlJobClient;
 import com.atguigu.daijia.map.client.LocationFeignClient;
+import com.atguigu.daijia.map.client.MapFeignClient;
 import com.atguigu.daijia.model.entity.dispatch.OrderJob;
+import com.atguigu.daijia.model.entity.order.OrderInfo;
 import com.atguigu.daijia.model.enums.OrderStatus;
+import com.atguigu.daijia.model.form.map.CalculateEtaMatrixForm;
+import com.atguigu.daijia.model.form.map.EtaOriginForm;
 import com.atguigu.daijia.model.form.map.SearchNearByDriverForm;
+import com.atguigu.daijia.model.vo.dispatch.DispatchRoundStatsVo;
 import com.atguigu.daijia.model.vo.dispatch.NewOrderTaskVo;
+import com.atguigu.daijia.model.vo.map.DriverEtaVo;
 import com.atguigu.daijia.model.vo.map.NearByDriverVo;
 import com.atguigu.daijia.model.vo.order.NewOrderDataVo;
 import com.atguigu.daijia.order.client.OrderInfoFeignClient;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 @SuppressWarnings({"unchecked", "rawtypes"})
 public class NewOrderServiceImpl implements NewOrderService {
+
+    private static final DefaultRedisScript<List> PUSH_SCRIPT = new DefaultRedisScript<>();
+
+    private static final DefaultRedisScript<List> DRAIN_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        PUSH_SCRIPT.setLocation(new ClassPathResource("lua/new_order_push.lua"));
+        PUSH_SCRIPT.setResultType(List.class);
+        DRAIN_SCRIPT.setLocation(new ClassPathResource("lua/new_order_drain.lua"));
+        DRAIN_SCRIPT.setResultType(List.class);
+    }
+
     @Autowired
     private XxlJobClient xxlJobClient;
 
     @Autowired
     private OrderJobMapper orderJobMapper;
 
+    @Autowired
+    private DispatchSchedulerProperties dispatchSchedulerProperties;
+
+    @Autowired
+    private DispatchScheduler dispatchScheduler;
+
+    @Autowired
+    private DispatchRoundPolicy dispatchRoundPolicy;
+
+    @Autowired
+    private DispatchMatchingProperties dispatchMatchingProperties;
+
+    @Autowired
+    private BatchMatcher batchMatcher;
+
+    @Autowired
+    private NewOrderQueueProperties newOrderQueueProperties;
+
+    // 阻塞等待新订单的请求数上限，见 dispatch.new-order-queue.max-waiters
+    private Semaphore waiterPermits;
+
+    @PostConstruct
+    public void init() {
+        waiterPermits = new Semaphore(Math.max(newOrderQueueProperties.getMaxWaiters(), 0));
+    }
+
     /**
      * 添加并启动新订单任务
      * 本方法的主要目标是为新订单创建并启动一个任务如果订单对应的任务不存在，则创建新任务并关联订单
      * 使用了事务注解，确保在遇到异常时能够回滚，保证数据的一致性
+     * dispatch.scheduler.mode=wheel（默认）时事务提交后由本服务内的时间轮调度，立即执行第一次派单，任务ID记为0；
+     * dispatch.scheduler.mode=xxl-job 时仍为每个订单注册一个每分钟执行的xxl-job任务
      *
      * @param newOrderTaskVo 订单任务信息的封装，包含订单ID等
      * @return 返回任务ID，用于跟踪任务状态
@@ -46,19 +112,33 @@ public class NewOrderServiceImpl implements NewOrderService {
     @Transactional(rollbackFor = Exception.class)
     @Override
     public Long addAndStartTask(NewOrderTaskVo newOrderTaskVo) {
+        boolean wheelMode = dispatchSchedulerProperties.isWheelMode();
         // 检查是否已存在对应订单ID的任务
         OrderJob orderJob = orderJobMapper.selectOne(new LambdaQueryWrapper<OrderJob>().eq(OrderJob::getOrderId, newOrderTaskVo.getOrderId()));
         if(null == orderJob) {
             // 如果不存在，则添加并启动新任务
-            Long jobId = xxlJobClient.addAndStart("newOrderTaskHandler", "", "0 0/1 * * * ?", "新订单任务,订单id："+newOrderTaskVo.getOrderId());
+            Long jobId = wheelMode ? 0L : xxlJobClient.addAndStart("newOrderTaskHandler", "", "0 0/1 * * * ?", "新订单任务,订单id："+newOrderTaskVo.getOrderId());
 
-            // 记录订单与任务的关联信息
+            // 记录订单与任务的关联信息，时间轮模式下重启后按订单id读取调度参数
             orderJob = new OrderJob();
             orderJob.setOrderId(newOrderTaskVo.getOrderId());
             orderJob.setJobId(jobId);
             orderJob.setParameter(JSONObject.toJSONString(newOrderTaskVo));
             orderJobMapper.insert(orderJob);
         }
+        if (wheelMode) {
+            // 事务提交后再加入时间轮，事务回滚时不会留下调度；重复调用时不会重复调度
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        dispatchScheduler.schedule(newOrderTaskVo);
+                    }
+                });
+            } else {
+                dispatchScheduler.schedule(newOrderTaskVo);
+            }
+        }
         // 返回任务ID
         return orderJob.getJobId();
     }
@@ -66,6 +146,9 @@ public class NewOrderServiceImpl implements NewOrderService {
     @Autowired
     private LocationFeignClient locationFeignClient;
 
+    @Autowired
+    private MapFeignClient mapFeignClient;
+
     @Autowired
     private OrderInfoFeignClient orderInfoFeignClient;
 
@@ -87,11 +170,36 @@ public class NewOrderServiceImpl implements NewOrderService {
         }
         NewOrderTaskVo newOrderTaskVo = JSONObject.parseObject(orderJob.getParameter(), NewOrderTaskVo.class);
 
-        // 查询订单状态，如果该订单还在接单状态，继续执行；如果不在接单状态，则停止定时调度
-        Integer orderStatus = orderInfoFeignClient.getOrderStatus(newOrderTaskVo.getOrderId()).getData();
-        if (orderStatus.intValue() != OrderStatus.WAITING_ACCEPT.getStatus().intValue()) {
+        // 如果该订单还在接单状态，派单后继续调度；如果不在接单状态，则停止定时调度
+        if (!this.dispatchNewOrder(newOrderTaskVo)) {
             xxlJobClient.stopJob(jobId);
             log.info("停止任务调度: {}", JSON.toJSONString(newOrderTaskVo));
+        }
+        return true;
+    }
+
+    /**
+     * 执行一轮派单：查询订单状态，搜索附近的司机，并向尚未推送过的司机分发订单信息
+     * xxl-job任务和时间轮调度共用；开启逐轮扩大范围时，按订单所在轮次的半径搜索候选司机，只推送给预计到达时间最短的前 limit 个司机；
+     * 批量匹配方式下只维护待匹配订单，不直接推送
+     *
+     * @param newOrderTaskVo 订单任务信息
+     * @return 订单仍在等待接单返回true（继续调度），否则返回false（停止调度）
+     */
+    @Override
+    public Boolean dispatchNewOrder(NewOrderTaskVo newOrderTaskVo) {
+        // 查询订单状态，如果该订单还在接单状态，继续执行
+        Integer orderStatus = orderInfoFeignClient.getOrderStatus(newOrderTaskVo.getOrderId()).getData();
+        if (orderStatus.intValue() != OrderStatus.WAITING_ACCEPT.getStatus().intValue()) {
+            this.finishDispatchRound(newOrderTaskVo.getOrderId(), orderStatus);
+            if (dispatchMatchingProperties.isBatchMode()) {
+                batchMatcher.removeOrder(newOrderTaskVo.getOrderId());
+            }
+            return false;
+        }
+        // 批量匹配方式：只把订单放入待匹配订单，由批量匹配统一指派司机
+        if (dispatchMatchingProperties.isBatchMode()) {
+            batchMatcher.addOrder(newOrderTaskVo);
             return true;
         }
 
@@ -100,40 +208,173 @@ public class NewOrderServiceImpl implements NewOrderService {
         searchNearByDriverForm.setLongitude(newOrderTaskVo.getStartPointLongitude());
         searchNearByDriverForm.setLatitude(newOrderTaskVo.getStartPointLatitude());
         searchNearByDriverForm.setMileageDistance(newOrderTaskVo.getExpectDistance());
+        int round = -1;
+        int limit = 0;
+        if (dispatchRoundPolicy.isEnabled()) {
+            round = dispatchRoundPolicy.currentRound(newOrderTaskVo.getOrderId());
+            DispatchRoundProperties.Round roundConfig = dispatchRoundPolicy.getRound(round);
+            searchNearByDriverForm.setRadius(roundConfig.getRadius());
+            if (roundConfig.getLimit() != null && roundConfig.getLimit() > 0) {
+                limit = roundConfig.getLimit();
+                // 按直线距离多取一些候选司机，按ETA排序后再取本轮的前 limit 个
+                searchNearByDriverForm.setLimit(limit * Math.max(dispatchRoundPolicy.getEtaCandidateFactor(), 1));
+            }
+        }
         List<NearByDriverVo> nearByDriverVoList = locationFeignClient.searchNearByDriver(searchNearByDriverForm).getData();
+        if (limit > 0 && nearByDriverVoList.size() > limit) {
+            // 按到达上车点的预计时间排序，只推送给按道路最快到达的前 limit 个司机
+            nearByDriverVoList = sortByEta(newOrderTaskVo, nearByDriverVoList).subList(0, limit);
+        }
         // 给司机派发订单信息
-        nearByDriverVoList.forEach(driver -> {
-            // 记录司机id，防止重复推送订单信息
-            String repeatKey = RedisConstant.DRIVER_ORDER_REPEAT_LIST + newOrderTaskVo.getOrderId();
-            boolean isMember = redisTemplate.opsForSet().isMember(repeatKey, driver.getDriverId());
-            if (!isMember) {
-                // 记录该订单已放入司机临时容器
-                redisTemplate.opsForSet().add(repeatKey, driver.getDriverId());
-                // 过期时间：15分钟，新订单15分钟没人接单自动取消
-                redisTemplate.expire(repeatKey, RedisConstant.DRIVER_ORDER_REPEAT_LIST_EXPIRES_TIME, TimeUnit.MINUTES);
-
-                NewOrderDataVo newOrderDataVo = new NewOrderDataVo();
-                newOrderDataVo.setOrderId(newOrderTaskVo.getOrderId());
-                newOrderDataVo.setStartLocation(newOrderTaskVo.getStartLocation());
-                newOrderDataVo.setEndLocation(newOrderTaskVo.getEndLocation());
-                newOrderDataVo.setExpectAmount(newOrderTaskVo.getExpectAmount());
-                newOrderDataVo.setExpectDistance(newOrderTaskVo.getExpectDistance());
-                newOrderDataVo.setExpectTime(newOrderTaskVo.getExpectTime());
-                newOrderDataVo.setFavourFee(newOrderTaskVo.getFavourFee());
-                newOrderDataVo.setDistance(driver.getDistance());
-                newOrderDataVo.setCreateTime(newOrderTaskVo.getCreateTime());
-
-                // 将消息保存到司机的临时队列里面，司机接单了会定时轮询到他的临时队列获取订单消息
-                String key = RedisConstant.DRIVER_ORDER_TEMP_LIST + driver.getDriverId();
-                redisTemplate.opsForList().leftPush(key, JSONObject.toJSONString(newOrderDataVo));
-                // 过期时间：1分钟，1分钟未消费，自动过期
-                // 注：司机端开启接单，前端每5秒（远小于1分钟）拉取1次“司机临时队列”里面的新订单消息
-                redisTemplate.expire(key, RedisConstant.DRIVER_ORDER_TEMP_LIST_EXPIRES_TIME, TimeUnit.MINUTES);
-                log.info("该新订单信息已放入司机临时队列: {}", JSON.toJSONString(newOrderDataVo));
+        List<NearByDriverVo> pushedList = this.pushNewOrder(newOrderTaskVo, nearByDriverVoList);
+        if (round >= 0) {
+            dispatchRoundPolicy.recordDispatch(round, pushedList.size());
+        }
+        return true;
+    }
+
+    /**
+     * 把新订单推送给一批司机：放入各司机的临时队列，已推送过的司机不重复推送
+     * 订单已推送司机set与各司机临时队列在Redis Cluster中位于不同槽位，不能放在同一个脚本中：
+     * 先用一个只访问已推送司机set的Lua脚本去重（SADD），再把新推送司机的 LPUSH、EXPIRE 放在一个pipeline中发送，共两次Redis往返；
+     * 写入临时队列失败时把这些司机从已推送司机set中移除，下一轮派单可以重新推送
+     *
+     * @param newOrderTaskVo 订单任务信息
+     * @param driverList     司机及其到上车点的距离
+     * @return 本次新推送的司机
+     */
+    @Override
+    public List<NearByDriverVo> pushNewOrder(NewOrderTaskVo newOrderTaskVo, List<NearByDriverVo> driverList) {
+        if (driverList.isEmpty()) {
+            return driverList;
+        }
+        // 记录司机id，防止重复推送订单信息
+        String repeatKey = RedisConstant.DRIVER_ORDER_REPEAT_LIST + newOrderTaskVo.getOrderId();
+        byte[][] args = new byte[driverList.size() + 1][];
+        // 已推送司机过期时间：新订单15分钟没人接单自动取消
+        args[0] = String.valueOf(TimeUnit.MINUTES.toSeconds(RedisConstant.DRIVER_ORDER_REPEAT_LIST_EXPIRES_TIME)).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < driverList.size(); i++) {
+            // set成员与redisTemplate序列化的Long一致
+            args[i + 1] = driverList.get(i).getDriverId().toString().getBytes(StandardCharsets.UTF_8);
+        }
+        List<Long> pushedIndexes = (List<Long>) redisTemplate.execute(PUSH_SCRIPT, RedisSerializer.byteArray(), RedisSerializer.byteArray(), List.of(repeatKey), (Object[]) args);
+
+        List<NearByDriverVo> pushedList = new ArrayList<>(pushedIndexes.size());
+        for (Long index : pushedIndexes) {
+            pushedList.add(driverList.get(index.intValue() - 1));
+        }
+        if (pushedList.isEmpty()) {
+            return pushedList;
+        }
+        try {
+            this.pushToTempList(newOrderTaskVo, pushedList);
+        } catch (RuntimeException e) {
+            redisTemplate.opsForSet().remove(repeatKey, pushedList.stream().map(NearByDriverVo::getDriverId).toArray());
+            throw e;
+        }
+        log.info("该新订单信息已放入司机临时队列，订单：{}，司机：{}", newOrderTaskVo.getOrderId(),
+                pushedList.stream().map(NearByDriverVo::getDriverId).toList());
+        return pushedList;
+    }
+
+    // 将消息保存到司机的临时队列里面，司机接单了会定时轮询到他的临时队列获取订单消息；每条命令只访问一个key
+    private void pushToTempList(NewOrderTaskVo newOrderTaskVo, List<NearByDriverVo> driverList) {
+        // 司机临时队列过期时间：1分钟未消费，自动过期
+        // 注：司机端开启接单，前端每5秒（远小于1分钟）拉取1次“司机临时队列”里面的新订单消息
+        long expireSeconds = TimeUnit.MINUTES.toSeconds(RedisConstant.DRIVER_ORDER_TEMP_LIST_EXPIRES_TIME);
+        RedisSerializer keySerializer = redisTemplate.getKeySerializer();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (NearByDriverVo driver : driverList) {
+                byte[] rawKey = keySerializer.serialize(RedisConstant.DRIVER_ORDER_TEMP_LIST + driver.getDriverId());
+                // 订单消息为JSON字节，取出时直接解析
+                connection.listCommands().lPush(rawKey, JSON.toJSONBytes(this.buildNewOrderData(newOrderTaskVo, driver)));
+                connection.keyCommands().expire(rawKey, expireSeconds);
             }
+            return null;
         });
-        return true;
     }
+
+    /**
+     * 构造推送给司机的新订单消息
+     *
+     * @param newOrderTaskVo 订单任务信息
+     * @param driver         司机及其到上车点的距离
+     */
+    @Override
+    public NewOrderDataVo buildNewOrderData(NewOrderTaskVo newOrderTaskVo, NearByDriverVo driver) {
+        NewOrderDataVo newOrderDataVo = new NewOrderDataVo();
+        newOrderDataVo.setOrderId(newOrderTaskVo.getOrderId());
+        newOrderDataVo.setStartLocation(newOrderTaskVo.getStartLocation());
+        newOrderDataVo.setEndLocation(newOrderTaskVo.getEndLocation());
+        newOrderDataVo.setExpectAmount(newOrderTaskVo.getExpectAmount());
+        newOrderDataVo.setExpectDistance(newOrderTaskVo.getExpectDistance());
+        newOrderDataVo.setExpectTime(newOrderTaskVo.getExpectTime());
+        newOrderDataVo.setFavourFee(newOrderTaskVo.getFavourFee());
+        newOrderDataVo.setDistance(driver.getDistance());
+        newOrderDataVo.setCreateTime(newOrderTaskVo.getCreateTime());
+        return newOrderDataVo;
+    }
+
+    /**
+     * 订单结束派单，已接单的订单按接单时间统计所在轮次，统计失败不影响派单
+     */
+    private void finishDispatchRound(Long orderId, Integer orderStatus) {
+        try {
+            Long acceptTime = null;
+            if (orderStatus > OrderStatus.WAITING_ACCEPT.getStatus()) {
+                OrderInfo orderInfo = orderInfoFeignClient.getOrderInfo(orderId).getData();
+                if (orderInfo != null && orderInfo.getAcceptTime() != null) {
+                    acceptTime = orderInfo.getAcceptTime().getTime();
+                }
+            }
+            dispatchRoundPolicy.finish(orderId, acceptTime);
+        } catch (Exception e) {
+            log.warn("统计订单接单轮次失败，订单：{}，{}", orderId, e.getMessage());
+        }
+    }
+
+    /**
+     * 按司机到上车点的预计到达时间排序
+     * 一次调用地图服务计算所有候选司机的ETA，调用失败时保持按直线距离的顺序
+     *
+     * @param newOrderTaskVo     订单任务信息，包含上车点
+     * @param nearByDriverVoList 附近司机，按直线距离升序
+     * @return 按预计到达时间升序的司机列表，没有ETA的司机排在最后
+     */
+    private List<NearByDriverVo> sortByEta(NewOrderTaskVo newOrderTaskVo, List<NearByDriverVo> nearByDriverVoList) {
+        if (nearByDriverVoList.size() < 2) {
+            return nearByDriverVoList;
+        }
+        CalculateEtaMatrixForm calculateEtaMatrixForm = new CalculateEtaMatrixForm();
+        calculateEtaMatrixForm.setLatitude(newOrderTaskVo.getStartPointLatitude());
+        calculateEtaMatrixForm.setLongitude(newOrderTaskVo.getStartPointLongitude());
+        List<EtaOriginForm> originList = new ArrayList<>(nearByDriverVoList.size());
+        for (NearByDriverVo nearByDriverVo : nearByDriverVoList) {
+            EtaOriginForm etaOriginForm = new EtaOriginForm();
+            etaOriginForm.setDriverId(nearByDriverVo.getDriverId());
+            originList.add(etaOriginForm);
+        }
+        calculateEtaMatrixForm.setOriginList(originList);
+
+        List<DriverEtaVo> driverEtaVoList;
+        try {
+            driverEtaVoList = mapFeignClient.calculateEtaMatrix(calculateEtaMatrixForm).getData();
+        } catch (Exception e) {
+            log.warn("计算司机ETA失败，按直线距离派单：{}", e.getMessage());
+            return nearByDriverVoList;
+        }
+        if (driverEtaVoList == null) {
+            return nearByDriverVoList;
+        }
+        Map<Long, Integer> rankMap = new HashMap<>();
+        for (int i = 0; i < driverEtaVoList.size(); i++) {
+            rankMap.put(driverEtaVoList.get(i).getDriverId(), i);
+        }
+        List<NearByDriverVo> sortedList = new ArrayList<>(nearByDriverVoList);
+        sortedList.sort(Comparator.comparing(driver -> rankMap.getOrDefault(driver.getDriverId(), Integer.MAX_VALUE)));
+        return sortedList;
+    }
+
     /**
      * 根据司机ID查询新的订单队列数据
      * 该方法通过在Redis中查询与司机相关的订单临时列表来获取数据，然后将其解析为NewOrderDataVo对象列表
@@ -143,28 +384,63 @@ public class NewOrderServiceImpl implements NewOrderService {
      */
     @Override
     public List<NewOrderDataVo> findNewOrderQueueData(Long driverId) {
-        // 初始化一个空的列表，用于存储解析后的订单数据
-        List<NewOrderDataVo> list = new ArrayList<>();
+        return this.findNewOrderQueueData(driverId, 0L);
+    }
+
+    /**
+     * 根据司机ID取出新的订单队列数据，队列为空时可以阻塞等待新订单
+     * 一个Lua脚本（LRANGE+DEL）原子地取出并清空整个队列，只有一次Redis往返，取出与删除之间到达的消息不会遗漏；
+     * 消息直接从Redis返回的字节解析，不经过中间字符串。
+     * 等待期间占用请求线程和一个独占Redis连接，同时等待的请求数受 dispatch.new-order-queue.max-waiters 限制，达到上限时不等待直接返回
+     *
+     * @param driverId   司机ID
+     * @param waitMillis 队列为空时最长等待时间（毫秒），按秒向上取整，不超过 SystemConstant.NEW_ORDER_QUEUE_MAX_WAIT_MILLIS；为空或小于等于0时不等待
+     * @return 队列中的全部新订单数据，最新的在前
+     */
+    @Override
+    public List<NewOrderDataVo> findNewOrderQueueData(Long driverId, Long waitMillis) {
         // 构建Redis中司机订单数据的键名
         String key = RedisConstant.DRIVER_ORDER_TEMP_LIST + driverId;
-        // 获取Redis中该键对应的列表的长度
-        long size = redisTemplate.opsForList().size(key);
-        // 如果列表不为空，则进行循环处理
-        if(size > 0) {
-            // 循环处理列表中的每个元素
-            for(int i=0; i<size; i++) {
-                // 从列表的左侧弹出一个字符串元素
-                String content = (String)redisTemplate.opsForList().leftPop(key);
-                // 将字符串内容解析为NewOrderDataVo对象
-                NewOrderDataVo newOrderDataVo = JSONObject.parseObject(content, NewOrderDataVo.class);
-                // 将解析后的对象添加到列表中
-                list.add(newOrderDataVo);
+        List<byte[]> contentList = this.drainNewOrderQueue(key);
+        if (contentList.isEmpty() && waitMillis != null && waitMillis > 0 && waiterPermits.tryAcquire()) {
+            try {
+                // 阻塞等待第一条新订单（BLPOP使用独占连接），到达后再取出随后的消息
+                int timeoutSeconds = (int) Math.ceil(Math.min(waitMillis, SystemConstant.NEW_ORDER_QUEUE_MAX_WAIT_MILLIS) / 1000.0);
+                byte[] rawKey = redisTemplate.getKeySerializer().serialize(key);
+                List<byte[]> popped = (List<byte[]>) redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                        connection.listCommands().bLPop(timeoutSeconds, rawKey));
+                if (popped != null && popped.size() == 2) {
+                    contentList = new ArrayList<>();
+                    contentList.add(popped.get(1));
+                    contentList.addAll(this.drainNewOrderQueue(key));
+                }
+            } finally {
+                waiterPermits.release();
             }
         }
-        // 返回解析后的订单数据列表
+
+        List<NewOrderDataVo> list = new ArrayList<>(contentList.size());
+        for (byte[] content : contentList) {
+            list.add(this.parseNewOrderData(content));
+        }
         return list;
     }
 
+    private List<byte[]> drainNewOrderQueue(String key) {
+        List<byte[]> contentList = (List<byte[]>) redisTemplate.execute(DRAIN_SCRIPT, RedisSerializer.byteArray(), RedisSerializer.byteArray(), List.of(key));
+        return contentList == null ? new ArrayList<>() : contentList;
+    }
+
+    /**
+     * 解析新订单消息：消息为订单数据的JSON字节；兼容升级前由redisTemplate序列化为JSON字符串的消息（临时队列1分钟过期）
+     */
+    private NewOrderDataVo parseNewOrderData(byte[] content) {
+        if (content.length > 0 && content[0] == '"') {
+            return JSONObject.parseObject((String) redisTemplate.getValueSerializer().deserialize(content), NewOrderDataVo.class);
+        }
+        return JSON.parseObject(content, NewOrderDataVo.class);
+    }
+
     /**
      * 清除司机的新订单队列数据
      *
@@ -183,4 +459,11 @@ public class NewOrderServiceImpl implements NewOrderService {
         return true;
     }
 
+    /**
+     * 各派单轮次的推送人数与接单时长统计
+     */
+    @Override
+    public List<DispatchRoundStatsVo> getDispatchRoundStats() {
+        return dispatchRoundPolicy.getStats();
+    }
 }
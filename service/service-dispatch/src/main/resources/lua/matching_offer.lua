@@ -0,0 +1,18 @@
+-- 批量匹配的指派结果写入前预留司机：仍持有匹配锁时，把空闲的司机记为等待接单
+-- KEYS[1]：匹配锁，KEYS[2]：等待接单的司机（zset，分数为等待截止时间），两个key使用相同的hash tag，位于同一槽位
+-- ARGV[1]：本次匹配持有锁的标识，ARGV[2]：当前时间（毫秒），ARGV[3]：等待截止时间（毫秒），ARGV[4..]：各指派的司机id
+-- 返回预留成功的指派序号（从1开始）；锁已被其他节点持有时不做任何写入，返回 {-1}
+if redis.call('GET', KEYS[1]) ~= ARGV[1] then
+    return {-1}
+end
+local now = tonumber(ARGV[2])
+local reserved = {}
+for i = 4, #ARGV do
+    -- 司机正在等待其他订单时跳过
+    local offerUntil = redis.call('ZSCORE', KEYS[2], ARGV[i])
+    if not offerUntil or tonumber(offerUntil) <= now then
+        redis.call('ZADD', KEYS[2], ARGV[3], ARGV[i])
+        reserved[#reserved + 1] = i - 3
+    end
+end
+return reserved
@@ -0,0 +1,6 @@
+-- 释放批量匹配锁，只删除本次匹配持有的锁
+-- KEYS[1]：匹配锁，ARGV[1]：本次匹配持有锁的标识
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,9 @@
+-- 一次取出并清空司机临时队列中的全部新订单消息
+-- KEYS[1]：司机临时队列
+-- 返回队列中的全部消息（最新的在前），取出与删除之间不会有新消息遗漏
+
+local items = redis.call('LRANGE', KEYS[1], 0, -1)
+if #items > 0 then
+    redis.call('DEL', KEYS[1])
+end
+return items
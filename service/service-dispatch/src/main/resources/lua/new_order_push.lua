@@ -0,0 +1,16 @@
+-- 记录订单已推送的司机，已推送过的司机跳过
+-- KEYS[1]：订单已推送司机set
+-- ARGV[1]：已推送司机set过期时间（秒），ARGV[2..]：司机id
+-- 返回本次新记录的司机序号（从1开始，与 ARGV[2..] 对应）
+-- 只访问一个key，Redis Cluster下不会跨槽位；司机临时队列由调用方按司机分别写入
+
+local pushed = {}
+for i = 2, #ARGV do
+    if redis.call('SADD', KEYS[1], ARGV[i]) == 1 then
+        pushed[#pushed + 1] = i - 1
+    end
+end
+if #pushed > 0 then
+    redis.call('EXPIRE', KEYS[1], ARGV[1])
+end
+return pushed
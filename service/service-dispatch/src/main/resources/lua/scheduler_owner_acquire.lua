@@ -0,0 +1,13 @@
+-- 持有订单的派单调度归属：无人持有时持有，本节点已持有时续期
+-- KEYS[1]：订单调度归属，ARGV[1]：本节点标识，ARGV[2]：租期（毫秒）
+-- 返回1：本节点持有；0：已归属其他节点
+local owner = redis.call('GET', KEYS[1])
+if owner == ARGV[1] then
+    redis.call('PEXPIRE', KEYS[1], ARGV[2])
+    return 1
+end
+if not owner then
+    redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+    return 1
+end
+return 0
@@ -0,0 +1,6 @@
+-- 释放订单的派单调度归属，只删除本节点持有的
+-- KEYS[1]：订单调度归属，ARGV[1]：本节点标识
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,95 @@
+package com.atguigu.daijia.dispatch.matching;
+
+import org.junit.jupiter.api.Test;
+
+import static com.atguigu.daijia.dispatch.matching.AssignmentSolver.FORBIDDEN;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * 订单与司机的指派求解
+ * <p>
+ * 代价矩阵行为订单、列为司机，结果为每个订单指派的司机下标，未指派为-1
+ */
+class AssignmentSolverTest {
+
+    // 贪心先选代价1，剩下的只能选100；最优为 2 + 2
+    private static final double[][] GREEDY_TRAP = {
+            {1, 2},
+            {2, 100}
+    };
+
+    @Test
+    void hungarianFindsMinimumTotalCost() {
+        assertArrayEquals(new int[]{1, 0}, AssignmentSolver.hungarian(GREEDY_TRAP, 2));
+    }
+
+    @Test
+    void greedyTakesCheapestEdgeFirst() {
+        assertArrayEquals(new int[]{0, 1}, AssignmentSolver.greedy(GREEDY_TRAP, 2));
+    }
+
+    @Test
+    void solveUsesGreedyAboveLimit() {
+        assertArrayEquals(new int[]{1, 0}, AssignmentSolver.solve(GREEDY_TRAP, 2, 2));
+        assertArrayEquals(new int[]{0, 1}, AssignmentSolver.solve(GREEDY_TRAP, 2, 1));
+    }
+
+    @Test
+    void moreOrdersThanDrivers() {
+        // 转置后求解：两个司机指派给总代价最小的两个订单
+        double[][] cost = {
+                {1, 5},
+                {2, 1},
+                {3, 3}
+        };
+        assertArrayEquals(new int[]{0, 1, -1}, AssignmentSolver.hungarian(cost, 2));
+        assertArrayEquals(new int[]{0, 1, -1}, AssignmentSolver.greedy(cost, 2));
+    }
+
+    @Test
+    void moreDriversThanOrders() {
+        double[][] cost = {
+                {4, 1, 3},
+        };
+        assertArrayEquals(new int[]{1}, AssignmentSolver.hungarian(cost, 3));
+        assertArrayEquals(new int[]{1}, AssignmentSolver.greedy(cost, 3));
+    }
+
+    @Test
+    void forbiddenRowIsNotAssigned() {
+        double[][] cost = {
+                {FORBIDDEN, FORBIDDEN},
+                {1, 2}
+        };
+        assertArrayEquals(new int[]{-1, 0}, AssignmentSolver.hungarian(cost, 2));
+        assertArrayEquals(new int[]{-1, 0}, AssignmentSolver.greedy(cost, 2));
+    }
+
+    @Test
+    void forbiddenCellIsAvoided() {
+        // 订单0只能指派司机1，订单1选司机0
+        double[][] cost = {
+                {FORBIDDEN, 5},
+                {1, 1}
+        };
+        assertArrayEquals(new int[]{1, 0}, AssignmentSolver.hungarian(cost, 2));
+        assertArrayEquals(new int[]{1, 0}, AssignmentSolver.greedy(cost, 2));
+    }
+
+    @Test
+    void allForbidden() {
+        double[][] cost = {
+                {FORBIDDEN, FORBIDDEN},
+                {FORBIDDEN, FORBIDDEN},
+                {FORBIDDEN, FORBIDDEN}
+        };
+        assertArrayEquals(new int[]{-1, -1, -1}, AssignmentSolver.hungarian(cost, 2));
+        assertArrayEquals(new int[]{-1, -1, -1}, AssignmentSolver.greedy(cost, 2));
+    }
+
+    @Test
+    void emptyInput() {
+        assertArrayEquals(new int[0], AssignmentSolver.solve(new double[0][], 3, 10));
+        assertArrayEquals(new int[]{-1, -1}, AssignmentSolver.solve(new double[][]{{}, {}}, 0, 10));
+    }
+}
@@ -0,0 +1,123 @@
+package com.atguigu.daijia.dispatch.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分层时间轮
+ * <p>
+ * 到期任务直接在推进线程中执行（执行器为 Runnable::run），每格10毫秒、每层4格：
+ * 第一层覆盖40毫秒，第二层160毫秒，第三层640毫秒
+ */
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK_MS = 10;
+
+    private static final int WHEEL_SIZE = 4;
+
+    // 推进时间轮直到任务执行完或超时
+    private static void advanceUntil(HierarchicalTimingWheel wheel, AtomicInteger runs, int expectedRuns, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (runs.get() < expectedRuns && System.currentTimeMillis() < deadline) {
+            wheel.advance(20);
+        }
+    }
+
+    @Test
+    void expiredTaskRunsImmediately() {
+        AtomicInteger runs = new AtomicInteger();
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK_MS, WHEEL_SIZE, Runnable::run);
+        wheel.add(System.currentTimeMillis() - 1000, runs::incrementAndGet);
+        assertEquals(1, runs.get());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void taskRunsNotBeforeExpiration() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        long[] runTime = new long[1];
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK_MS, WHEEL_SIZE, Runnable::run);
+        long expiration = System.currentTimeMillis() + 25;
+        wheel.add(expiration, () -> {
+            runTime[0] = System.currentTimeMillis();
+            runs.incrementAndGet();
+        });
+        assertEquals(1, wheel.size());
+        advanceUntil(wheel, runs, 1, 2000);
+        assertEquals(1, runs.get());
+        assertTrue(runTime[0] >= expiration);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void overflowTaskIsReinsertedIntoLowerLevels() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        long[] runTime = new long[1];
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK_MS, WHEEL_SIZE, Runnable::run);
+        // 超出前两层范围，放入第三层；到期时间落在第三层格子中间，格子到期时还剩80毫秒
+        long level3Tick = TICK_MS * WHEEL_SIZE * WHEEL_SIZE;
+        long expiration = Math.floorDiv(System.currentTimeMillis(), level3Tick) * level3Tick + 2 * level3Tick + 80;
+        wheel.add(expiration, () -> {
+            runTime[0] = System.currentTimeMillis();
+            runs.incrementAndGet();
+        });
+        // 上层格子先到期，任务重新落入下层格子，仍在时间轮中
+        int advances = 0;
+        long deadline = System.currentTimeMillis() + 3000;
+        while (runs.get() == 0 && System.currentTimeMillis() < deadline) {
+            if (wheel.advance(50) && runs.get() == 0) {
+                advances++;
+                assertEquals(1, wheel.size());
+            }
+        }
+        assertEquals(1, runs.get());
+        assertTrue(advances >= 1);
+        assertTrue(runTime[0] >= expiration);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void tasksRunInExpirationOrder() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        List<Integer> order = new ArrayList<>();
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK_MS, WHEEL_SIZE, Runnable::run);
+        long now = System.currentTimeMillis();
+        long[] delays = {120, 30, 200, 60};
+        for (int i = 0; i < delays.length; i++) {
+            int id = i;
+            wheel.add(now + delays[i], () -> {
+                order.add(id);
+                runs.incrementAndGet();
+            });
+        }
+        assertEquals(4, wheel.size());
+        advanceUntil(wheel, runs, 4, 3000);
+        assertEquals(List.of(1, 3, 0, 2), order);
+    }
+
+    @Test
+    void rescheduledTaskStopsWhenNotReadded() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK_MS, WHEEL_SIZE, Runnable::run);
+        // 与派单调度相同：任务执行后自行重新加入，停止调度时不再加入
+        Runnable[] task = new Runnable[1];
+        task[0] = () -> {
+            if (runs.incrementAndGet() < 3) {
+                wheel.add(System.currentTimeMillis() + 20, task[0]);
+            }
+        };
+        wheel.add(System.currentTimeMillis() + 20, task[0]);
+        advanceUntil(wheel, runs, 3, 3000);
+        assertEquals(3, runs.get());
+        assertEquals(0, wheel.size());
+        // 不再有到期的格子
+        assertTrue(!wheel.advance(100));
+        assertEquals(3, runs.get());
+    }
+}
@@ -15,6 +15,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @Slf4j
 @Tag(name = "司机API接口管理")
 @RestController
@@ -73,6 +75,11 @@ public class DriverInfoController {
     public Result<DriverSet> getDriverSet(@PathVariable Long driverId) {
         return Result.ok(driverInfoService.getDriverSet(driverId));
     }
+    @Operation(summary = "批量获取司机设置信息")
+    @PostMapping("/getDriverSetList")
+    public Result<List<DriverSet>> getDriverSetList(@RequestBody List<Long> driverIdList) {
+        return Result.ok(driverInfoService.getDriverSetList(driverIdList));
+    }
     /**
      * 判断司机当日是否进行过人脸识别
      *
@@ -9,6 +9,8 @@ import com.atguigu.daijia.model.vo.driver.DriverInfoVo;
 import com.atguigu.daijia.model.vo.driver.DriverLoginVo;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 public interface DriverInfoService extends IService<DriverInfo> {
 
     Long login(String code);
@@ -23,6 +25,8 @@ public interface DriverInfoService extends IService<DriverInfo> {
 
     DriverSet getDriverSet(Long driverId);
 
+    List<DriverSet> getDriverSetList(List<Long> driverIdList);
+
     Boolean isFaceRecognition(Long driverId);
 
     Boolean verifyDriverFace(DriverFaceModelForm driverFaceModelForm);
@@ -2,6 +2,7 @@ package com.atguigu.daijia.driver.service.impl;
 
 import cn.binarywang.wx.miniapp.api.WxMaService;
 import cn.binarywang.wx.miniapp.bean.WxMaJscode2SessionResult;
+import com.atguigu.daijia.common.constant.RedisConstant;
 import com.atguigu.daijia.common.constant.SystemConstant;
 import com.atguigu.daijia.common.execption.GuiguException;
 import com.atguigu.daijia.driver.config.TencentCloudProperties;
@@ -28,12 +29,18 @@ import org.joda.time.DateTime;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import com.atguigu.daijia.common.result.ResultCodeEnum;
+import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 @Slf4j
 @Service
@@ -277,6 +284,23 @@ public class DriverInfoServiceImpl extends ServiceImpl<DriverInfoMapper, DriverI
         return driverSetMapper.selectOne(queryWrapper);
     }
 
+    /**
+     * 根据司机ID列表批量获取司机设置信息
+     * 供地图服务搜索附近司机时一次性获取全部候选司机的接单设置，避免逐个远程调用
+     *
+     * @param driverIdList 司机ID列表
+     * @return 司机设置信息列表，不存在的司机不返回
+     */
+    @Override
+    public List<DriverSet> getDriverSetList(List<Long> driverIdList) {
+        if (CollectionUtils.isEmpty(driverIdList)) {
+            return new ArrayList<>();
+        }
+        LambdaQueryWrapper<DriverSet> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.in(DriverSet::getDriverId, driverIdList);
+        return driverSetMapper.selectList(queryWrapper);
+    }
+
     @Autowired
     private DriverFaceRecognitionMapper driverFaceRecognitionMapper;
 
@@ -421,9 +445,41 @@ public class DriverInfoServiceImpl extends ServiceImpl<DriverInfoMapper, DriverI
         // 执行更新操作
         driverSetMapper.update(driverSet, queryWrapper);
 
+        // 接单设置已变更，递增版本号使各节点的本地缓存失效，并同步接单状态位图
+        this.syncDriverSetToRedis(driverId, status);
+
         // 返回操作成功标识
         return true;
     }
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    /**
+     * 同步司机接单设置变更到Redis
+     * 1.递增司机接单设置版本号，地图服务按版本号判断本地缓存的司机设置是否过期
+     * 2.更新接单状态位图（偏移量为司机ID），地图服务接收位置上报时直接按位判断是否在接单中
+     * 在事务提交后再写入，避免其他节点在提交前读到旧数据却记录为新版本
+     *
+     * @param driverId 司机ID
+     * @param status 服务状态
+     */
+    private void syncDriverSetToRedis(Long driverId, Integer status) {
+        Runnable task = () -> {
+            redisTemplate.opsForHash().increment(RedisConstant.DRIVER_SET_VERSION, driverId.toString(), 1);
+            redisTemplate.opsForValue().setBit(RedisConstant.DRIVER_SERVICE_STATUS, driverId, status.intValue() == 1);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
     /**
      * 根据驾驶员ID获取驾驶员信息
      * 此方法首先通过ID查询驾驶员信息，然后将查询到的信息转换为DriverInfoVo对象，
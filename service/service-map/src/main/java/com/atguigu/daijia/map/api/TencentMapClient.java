@@ -0,0 +1,195 @@
+package com.atguigu.daijia.map.api;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.atguigu.daijia.common.execption.GuiguException;
+import com.atguigu.daijia.common.result.ResultCodeEnum;
+import com.atguigu.daijia.map.config.MapApiProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 腾讯地图WebService接口客户端
+ * <p>
+ * 使用JDK HttpClient异步发送请求，连接由HttpClient内部连接池复用（keep-alive），等待响应期间不占用调用线程。
+ * 相同URL的并发请求只发起一次调用，共享同一个结果（如大量乘客同时预估机场到市区的路线）；
+ * 每个接口限制最大并发数，超出的请求排队等待，排队已满时直接失败，避免耗尽地图接口配额
+ */
+@Slf4j
+@Component
+public class TencentMapClient {
+
+    private static final String BASE_URL = "https://apis.map.qq.com/ws/";
+
+    @Value("${tencent.map.key}")
+    private String key;    // 腾讯地图服务
+
+    private final MapApiProperties mapApiProperties;
+
+    private final HttpClient httpClient;
+
+    // 进行中的请求：URL -> 结果
+    private final Map<String, CompletableFuture<JSONObject>> inFlight = new ConcurrentHashMap<>();
+
+    // 接口名 -> 并发限制
+    private final Map<String, EndpointLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final LongAdder requestCount = new LongAdder();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    @Autowired
+    public TencentMapClient(MapApiProperties mapApiProperties) {
+        this.mapApiProperties = mapApiProperties;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(mapApiProperties.getConnectTimeoutMs()))
+                .build();
+    }
+
+    /**
+     * 异步调用地图接口，接口返回的status不为0时以 MAP_FAIL 异常结束
+     *
+     * @param endpoint 接口路径，如 direction/v1/driving，并发限制按最后一段（driving）区分
+     * @param params   请求参数，不包含key
+     * @return 接口返回的JSON
+     */
+    public CompletableFuture<JSONObject> get(String endpoint, Map<String, String> params) {
+        String url = buildUrl(endpoint, params);
+        CompletableFuture<JSONObject> future = new CompletableFuture<>();
+        CompletableFuture<JSONObject> existing = inFlight.putIfAbsent(url, future);
+        if (existing != null) {
+            coalescedCount.increment();
+            return existing;
+        }
+        future.whenComplete((result, e) -> inFlight.remove(url, future));
+
+        String endpointName = endpoint.substring(endpoint.lastIndexOf('/') + 1);
+        EndpointLimiter limiter = limiters.computeIfAbsent(endpointName, name ->
+                new EndpointLimiter(mapApiProperties.getMaxConcurrency().getOrDefault(name, mapApiProperties.getDefaultMaxConcurrency())));
+        if (!limiter.submit(() -> send(url, future, limiter))) {
+            rejectedCount.increment();
+            log.warn("地图接口排队请求已满，接口：{}", endpointName);
+            future.completeExceptionally(new GuiguException(ResultCodeEnum.MAP_FAIL));
+        }
+        return future;
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private void send(String url, CompletableFuture<JSONObject> future, EndpointLimiter limiter) {
+        requestCount.increment();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(mapApiProperties.getRequestTimeoutMs()))
+                .GET()
+                .build();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, e) -> {
+                    limiter.release();
+                    if (e != null) {
+                        log.error("地图接口调用失败：{}", e.getMessage());
+                        future.completeExceptionally(new GuiguException(ResultCodeEnum.MAP_FAIL));
+                        return;
+                    }
+                    try {
+                        JSONObject result = JSON.parseObject(response.body());
+                        if (result == null || result.getIntValue("status") != 0) {
+                            log.error("地图接口返回失败：{}", response.body());
+                            future.completeExceptionally(new GuiguException(ResultCodeEnum.MAP_FAIL));
+                            return;
+                        }
+                        future.complete(result);
+                    } catch (Exception ex) {
+                        log.error("地图接口返回解析失败：{}", ex.getMessage());
+                        future.completeExceptionally(new GuiguException(ResultCodeEnum.MAP_FAIL));
+                    }
+                });
+    }
+
+    private String buildUrl(String endpoint, Map<String, String> params) {
+        StringBuilder url = new StringBuilder(BASE_URL).append(endpoint).append("/?");
+        // 参数顺序固定，保证相同请求得到相同URL
+        new TreeMap<>(params).forEach((name, value) ->
+                url.append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8)).append('&'));
+        return url.append("key=").append(key).toString();
+    }
+
+    /**
+     * 单个接口的并发限制，达到上限时请求进入队列，有请求完成后再依次发出，不阻塞调用线程
+     */
+    private class EndpointLimiter {
+
+        private final Semaphore permits;
+
+        private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger waitingCount = new AtomicInteger();
+
+        EndpointLimiter(int maxConcurrency) {
+            this.permits = new Semaphore(maxConcurrency);
+        }
+
+        boolean submit(Runnable task) {
+            if (permits.tryAcquire()) {
+                task.run();
+                return true;
+            }
+            if (waitingCount.incrementAndGet() > mapApiProperties.getMaxWaiting()) {
+                waitingCount.decrementAndGet();
+                return false;
+            }
+            waiting.add(task);
+            // 入队期间可能已有请求完成，重新检查避免任务滞留
+            drain();
+            return true;
+        }
+
+        void release() {
+            permits.release();
+            drain();
+        }
+
+        private void drain() {
+            while (!waiting.isEmpty() && permits.tryAcquire()) {
+                Runnable task = waiting.poll();
+                if (task == null) {
+                    permits.release();
+                    return;
+                }
+                waitingCount.decrementAndGet();
+                task.run();
+            }
+        }
+    }
+}
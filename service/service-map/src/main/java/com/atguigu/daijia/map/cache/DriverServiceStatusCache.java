@@ -0,0 +1,102 @@
+package com.atguigu.daijia.map.cache;
+
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.model.entity.driver.DriverSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 司机接单状态本地位图
+ * <p>
+ * 司机服务在开启/停止接单时维护Redis位图 driver:service:status（偏移量为司机id），
+ * 本地定期整体拉取一次位图，位置上报时直接按位判断，不必每次远程获取司机设置；
+ * 本地未命中时回退到GETBIT，位图中还没有记录的司机（如位图上线前已开启接单）再按司机设置判断并回填
+ */
+@Slf4j
+@Component
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class DriverServiceStatusCache {
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    @Autowired
+    private DriverSetCache driverSetCache;
+
+    // 最近一次从Redis拉取的位图快照，只整体替换，不原地修改
+    private volatile BitSet serviceStatus = new BitSet();
+
+    // 本节点已知停止接单的司机 -> 停止时间，快照刷新前用于屏蔽旧快照中的状态位
+    private final Map<Long, Long> stoppedDrivers = new ConcurrentHashMap<>();
+
+    /**
+     * 司机是否处于接单状态
+     */
+    public boolean isInService(Long driverId) {
+        if (stoppedDrivers.containsKey(driverId)) {
+            return false;
+        }
+        if (driverId <= Integer.MAX_VALUE && serviceStatus.get(driverId.intValue())) {
+            return true;
+        }
+        // 本地未命中：位图可能尚未刷新，直接查询Redis
+        Boolean bit = redisTemplate.opsForValue().getBit(RedisConstant.DRIVER_SERVICE_STATUS, driverId);
+        if (Boolean.TRUE.equals(bit)) {
+            return true;
+        }
+        // 位图中没有记录，按司机设置判断，开启接单的回填位图
+        DriverSet driverSet = driverSetCache.getDriverSets(Collections.singletonList(driverId)).get(driverId);
+        if (driverSet != null && driverSet.getServiceStatus() != null && driverSet.getServiceStatus().intValue() == 1) {
+            redisTemplate.opsForValue().setBit(RedisConstant.DRIVER_SERVICE_STATUS, driverId, true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 标记司机已停止接单（删除司机位置时调用），在下次快照刷新前本节点不再接收其位置
+     */
+    public void markStopped(Long driverId) {
+        stoppedDrivers.put(driverId, System.currentTimeMillis());
+    }
+
+    /**
+     * 整体拉取Redis位图
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${map.driver-location.service-status-refresh-ms:1000}")
+    public void refresh() {
+        try {
+            long refreshTime = System.currentTimeMillis();
+            byte[] bytes = (byte[]) redisTemplate.execute((RedisCallback<byte[]>) (RedisConnection connection) ->
+                    connection.stringCommands().get(RedisConstant.DRIVER_SERVICE_STATUS.getBytes(StandardCharsets.UTF_8)));
+            serviceStatus = toBitSet(bytes);
+            // 刷新开始之前停止接单的司机已经体现在新快照中
+            stoppedDrivers.values().removeIf(stopTime -> stopTime < refreshTime);
+        } catch (Exception e) {
+            log.error("刷新司机接单状态位图失败", e);
+        }
+    }
+
+    // Redis位图每个字节的最高位对应最小偏移量，BitSet每个字节的最低位对应最小下标，需要逐字节翻转
+    private static BitSet toBitSet(byte[] bytes) {
+        if (bytes == null) {
+            return new BitSet();
+        }
+        byte[] reversed = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            reversed[i] = (byte) (Integer.reverse(bytes[i]) >>> 24);
+        }
+        return BitSet.valueOf(reversed);
+    }
+}
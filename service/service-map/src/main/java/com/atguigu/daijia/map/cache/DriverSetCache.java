@@ -0,0 +1,120 @@
+package com.atguigu.daijia.map.cache;
+
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.driver.client.DriverInfoFeignClient;
+import com.atguigu.daijia.map.geo.DriverStateStore;
+import com.atguigu.daijia.map.geo.NearbyDrivers;
+import com.atguigu.daijia.model.entity.driver.DriverSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 司机接单设置本地缓存（带版本号）
+ * <p>
+ * 司机服务在接单设置变更（如 updateServiceStatus）后递增 Redis 中该司机的版本号；
+ * 查询时先用一次 HMGET 取出所有候选司机的最新版本，只对缺失或版本落后的司机批量调用 getDriverSetList，
+ * 其余直接使用本地缓存，使附近司机的接单里程过滤完全在内存中完成。
+ * 接单设置与版本号保存在 DriverStateStore 的堆外记录中，不再为每个司机保留 DriverSet 对象
+ */
+@Slf4j
+@Component
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class DriverSetCache {
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    @Autowired
+    private DriverInfoFeignClient driverInfoFeignClient;
+
+    @Autowired
+    private DriverStateStore driverStateStore;
+
+    /**
+     * 刷新附近司机中缺失或版本落后的接单设置，之后可用 DriverStateStore.filterByDriverSet 直接过滤
+     */
+    public void refresh(NearbyDrivers nearbyDrivers) {
+        if (nearbyDrivers.size() == 0) {
+            return;
+        }
+        List<Long> driverIdList = new ArrayList<>(nearbyDrivers.size());
+        for (int i = 0; i < nearbyDrivers.size(); i++) {
+            driverIdList.add(nearbyDrivers.driverId(i));
+        }
+        refreshStale(driverIdList);
+    }
+
+    /**
+     * 批量获取司机接单设置
+     * 返回的 DriverSet 只包含司机ID、接单状态、自动接单和两个里程设置
+     *
+     * @param driverIdList 司机ID列表
+     * @return 司机ID -> 接单设置，不存在的司机不包含在结果中
+     */
+    public Map<Long, DriverSet> getDriverSets(List<Long> driverIdList) {
+        Map<Long, DriverSet> result = new HashMap<>();
+        if (CollectionUtils.isEmpty(driverIdList)) {
+            return result;
+        }
+        refreshStale(driverIdList);
+        double[] distances = new double[2];
+        for (Long driverId : driverIdList) {
+            int flags = driverStateStore.getDriverSet(driverId, distances);
+            if (flags < 0) {
+                continue;
+            }
+            DriverSet driverSet = new DriverSet();
+            driverSet.setDriverId(driverId);
+            driverSet.setServiceStatus(flags & 1);
+            driverSet.setIsAutoAccept((flags >> 1) & 1);
+            driverSet.setAcceptDistance(BigDecimal.valueOf(distances[0]));
+            driverSet.setOrderDistance(BigDecimal.valueOf(distances[1]));
+            result.put(driverId, driverSet);
+        }
+        return result;
+    }
+
+    private void refreshStale(List<Long> driverIdList) {
+        // 1.一次性读取所有候选司机的最新版本号
+        List<Object> hashKeys = new ArrayList<>(driverIdList.size());
+        for (Long driverId : driverIdList) {
+            hashKeys.add(driverId.toString());
+        }
+        List<Object> versions = redisTemplate.opsForHash().multiGet(RedisConstant.DRIVER_SET_VERSION, hashKeys);
+
+        // 2.版本一致的直接使用本地缓存，其余收集起来批量查询
+        Map<Long, Long> staleVersions = new HashMap<>();
+        for (int i = 0; i < driverIdList.size(); i++) {
+            Long driverId = driverIdList.get(i);
+            Object value = versions == null ? null : versions.get(i);
+            long version = value == null ? 0 : Long.parseLong(value.toString());
+            if (driverStateStore.getDriverSetVersion(driverId) != version) {
+                staleVersions.put(driverId, version);
+            }
+        }
+
+        // 3.批量获取过期的司机设置，并以查询前读到的版本号写入缓存（查询期间再有变更，下次会再次刷新）
+        if (!staleVersions.isEmpty()) {
+            List<DriverSet> driverSetList = driverInfoFeignClient.getDriverSetList(new ArrayList<>(staleVersions.keySet())).getData();
+            if (driverSetList != null) {
+                for (DriverSet driverSet : driverSetList) {
+                    driverStateStore.putDriverSet(driverSet.getDriverId(), staleVersions.get(driverSet.getDriverId()),
+                            driverSet.getServiceStatus() != null && driverSet.getServiceStatus().intValue() == 1,
+                            driverSet.getIsAutoAccept() != null && driverSet.getIsAutoAccept().intValue() == 1,
+                            driverSet.getAcceptDistance() == null ? 0 : driverSet.getAcceptDistance().doubleValue(),
+                            driverSet.getOrderDistance() == null ? 0 : driverSet.getOrderDistance().doubleValue());
+                }
+            }
+            log.debug("刷新司机接单设置缓存：{}个", staleVersions.size());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.atguigu.daijia.map.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.map.config.RouteProperties;
+import com.atguigu.daijia.model.form.map.CalculateDrivingLineForm;
+import com.atguigu.daijia.model.vo.map.DrivingLineCacheStatsVo;
+import com.atguigu.daijia.model.vo.map.DrivingLineVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 驾车路线缓存
+ * <p>
+ * 乘客预估订单和提交订单通常是同一条路线，司机端也会重复请求路线。起终点坐标吸附到网格后，
+ * 连同当前时段作为缓存key：先查本地LRU缓存，再查Redis（各节点共享），都未命中时才调用腾讯地图接口，
+ * 结果同时写入两级缓存；同一路线正在加载时，后续请求共享同一次加载。Redis中按JSON字符串保存，与 DrivingLineVo 中的 fastjson 类型一致
+ */
+@Slf4j
+@Component
+public class DrivingLineCache {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final RouteProperties routeProperties;
+
+    // 本地LRU缓存，按访问顺序排列，访问需加锁
+    private final LinkedHashMap<String, CachedDrivingLine> localCache;
+
+    private final LongAdder localHitCount = new LongAdder();
+
+    private final LongAdder redisHitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    // 正在加载的路线：缓存key -> 加载结果
+    private final Map<String, CompletableFuture<DrivingLineVo>> loading = new ConcurrentHashMap<>();
+
+    private static class CachedDrivingLine {
+        final DrivingLineVo drivingLineVo;
+        final long expireTime;
+
+        CachedDrivingLine(DrivingLineVo drivingLineVo, long expireTime) {
+            this.drivingLineVo = drivingLineVo;
+            this.expireTime = expireTime;
+        }
+    }
+
+    @Autowired
+    public DrivingLineCache(RouteProperties routeProperties) {
+        this.routeProperties = routeProperties;
+        int maxSize = routeProperties.getLocalMaxSize();
+        this.localCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedDrivingLine> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * 获取驾车路线，两级缓存都未命中时调用 loader 异步加载，加载完成后写入缓存
+     */
+    public CompletableFuture<DrivingLineVo> get(CalculateDrivingLineForm calculateDrivingLineForm, Supplier<CompletableFuture<DrivingLineVo>> loader) {
+        if (!routeProperties.getCacheEnabled()) {
+            return loader.get();
+        }
+        String key = cacheKey(calculateDrivingLineForm);
+        long now = System.currentTimeMillis();
+
+        synchronized (localCache) {
+            CachedDrivingLine cached = localCache.get(key);
+            if (cached != null) {
+                if (cached.expireTime > now) {
+                    localHitCount.increment();
+                    return CompletableFuture.completedFuture(cached.drivingLineVo);
+                }
+                localCache.remove(key);
+            }
+        }
+
+        String json = null;
+        try {
+            json = stringRedisTemplate.opsForValue().get(key);
+        } catch (Exception e) {
+            log.warn("读取驾车路线缓存失败，key：{}", key, e);
+        }
+        if (json != null) {
+            DrivingLineVo drivingLineVo = JSON.parseObject(json, DrivingLineVo.class);
+            putLocal(key, drivingLineVo, now);
+            redisHitCount.increment();
+            return CompletableFuture.completedFuture(drivingLineVo);
+        }
+
+        // 同一网格路线正在加载时共享加载结果，不重复调用地图接口
+        CompletableFuture<DrivingLineVo> future = new CompletableFuture<>();
+        CompletableFuture<DrivingLineVo> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedCount.increment();
+            return existing;
+        }
+        missCount.increment();
+        future.whenComplete((drivingLineVo, e) -> loading.remove(key, future));
+        CompletableFuture<DrivingLineVo> loadFuture;
+        try {
+            loadFuture = loader.get();
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        loadFuture.whenComplete((drivingLineVo, e) -> {
+            if (e != null) {
+                future.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                return;
+            }
+            putLocal(key, drivingLineVo, System.currentTimeMillis());
+            try {
+                stringRedisTemplate.opsForValue().set(key, JSON.toJSONString(drivingLineVo), routeProperties.getRedisTtlSeconds(), TimeUnit.SECONDS);
+            } catch (Exception ex) {
+                log.warn("写入驾车路线缓存失败，key：{}", key, ex);
+            }
+            future.complete(drivingLineVo);
+        });
+        return future;
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public DrivingLineCacheStatsVo getStats() {
+        DrivingLineCacheStatsVo drivingLineCacheStatsVo = new DrivingLineCacheStatsVo();
+        drivingLineCacheStatsVo.setLocalHitCount(localHitCount.sum());
+        drivingLineCacheStatsVo.setRedisHitCount(redisHitCount.sum());
+        drivingLineCacheStatsVo.setMissCount(missCount.sum());
+        drivingLineCacheStatsVo.setCoalescedCount(coalescedCount.sum());
+        synchronized (localCache) {
+            drivingLineCacheStatsVo.setLocalSize(localCache.size());
+        }
+        return drivingLineCacheStatsVo;
+    }
+
+    private void putLocal(String key, DrivingLineVo drivingLineVo, long now) {
+        long expireTime = now + routeProperties.getLocalTtlSeconds() * 1000;
+        synchronized (localCache) {
+            localCache.put(key, new CachedDrivingLine(drivingLineVo, expireTime));
+        }
+    }
+
+    /**
+     * 缓存key：时段 + 吸附后的起点、终点网格编号
+     */
+    private String cacheKey(CalculateDrivingLineForm calculateDrivingLineForm) {
+        double snapDegree = routeProperties.getSnapDegree();
+        int timeBand = LocalTime.now().toSecondOfDay() / 60 / routeProperties.getTimeBandMinutes();
+        return RedisConstant.DRIVING_LINE + timeBand
+                + ":" + snap(calculateDrivingLineForm.getStartPointLatitude().doubleValue(), snapDegree)
+                + ":" + snap(calculateDrivingLineForm.getStartPointLongitude().doubleValue(), snapDegree)
+                + ":" + snap(calculateDrivingLineForm.getEndPointLatitude().doubleValue(), snapDegree)
+                + ":" + snap(calculateDrivingLineForm.getEndPointLongitude().doubleValue(), snapDegree);
+    }
+
+    private static long snap(double degree, double snapDegree) {
+        return (long) Math.floor(degree / snapDegree);
+    }
+}
@@ -0,0 +1,127 @@
+package com.atguigu.daijia.map.cache;
+
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.model.form.map.OrderServiceLocationForm;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单实际里程累加
+ * <p>
+ * 代驾过程中每批位置上报时，用Lua脚本在Redis hash中原子地累加该订单的里程、最后一个点和点数，
+ * 结束代驾时直接读取累加结果（O(1)），不必再从MongoDB读出整条轨迹重新计算；
+ * 同一个hash中的最后一个点也用于乘客端轮询司机最新位置，代驾进行中不需要查询MongoDB；
+ * 上报点数与各实例异步写入轨迹后累加的已写入点数用于判断整条轨迹是否已写完。
+ * 数据使用字符串序列化读写，便于Lua脚本直接按数字处理
+ */
+@Component
+public class OrderDistanceCache {
+
+    private static final DefaultRedisScript<String> ACCUMULATE_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        ACCUMULATE_SCRIPT.setLocation(new ClassPathResource("lua/order_distance_accumulate.lua"));
+        ACCUMULATE_SCRIPT.setResultType(String.class);
+    }
+
+    private static final byte[] WRITTEN_FIELD = "written".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 按上报顺序累加订单里程，列表中可以包含多个订单的位置
+     */
+    public void accumulate(List<OrderServiceLocationForm> orderLocationServiceFormList) {
+        if (CollectionUtils.isEmpty(orderLocationServiceFormList)) {
+            return;
+        }
+        // 按订单分组，保持上报顺序
+        Map<Long, List<OrderServiceLocationForm>> orderLocationMap = new LinkedHashMap<>();
+        for (OrderServiceLocationForm form : orderLocationServiceFormList) {
+            orderLocationMap.computeIfAbsent(form.getOrderId(), key -> new ArrayList<>()).add(form);
+        }
+        String expireSeconds = String.valueOf(TimeUnit.HOURS.toSeconds(RedisConstant.ORDER_SERVICE_DISTANCE_EXPIRES_TIME));
+        String now = String.valueOf(System.currentTimeMillis());
+        for (Map.Entry<Long, List<OrderServiceLocationForm>> entry : orderLocationMap.entrySet()) {
+            List<OrderServiceLocationForm> locationList = entry.getValue();
+            Object[] args = new Object[2 + locationList.size() * 2];
+            args[0] = expireSeconds;
+            args[1] = now;
+            for (int i = 0; i < locationList.size(); i++) {
+                args[2 + i * 2] = locationList.get(i).getLatitude().toPlainString();
+                args[3 + i * 2] = locationList.get(i).getLongitude().toPlainString();
+            }
+            stringRedisTemplate.execute(ACCUMULATE_SCRIPT, List.of(RedisConstant.ORDER_SERVICE_DISTANCE + entry.getKey()), args);
+        }
+    }
+
+    /**
+     * 获取累加的订单里程，单位：米
+     *
+     * @return 没有累加记录（如已过期或代驾开始于本功能上线前）时返回null
+     */
+    public Double getDistance(Long orderId) {
+        Object distance = stringRedisTemplate.opsForHash().get(RedisConstant.ORDER_SERVICE_DISTANCE + orderId, "distance");
+        return distance == null ? null : Double.valueOf(distance.toString());
+    }
+
+    /**
+     * 累加各订单已写入轨迹的点数（写入失败最终丢弃的点也计入），与累加里程时记录的上报点数比较判断轨迹是否已全部写入。
+     * 所有订单在一次pipeline中完成
+     *
+     * @param writtenCountMap 订单id -> 本次写入的点数
+     */
+    public void addWritten(Map<Long, Integer> writtenCountMap) {
+        if (writtenCountMap.isEmpty()) {
+            return;
+        }
+        long expireSeconds = TimeUnit.HOURS.toSeconds(RedisConstant.ORDER_SERVICE_DISTANCE_EXPIRES_TIME);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<Long, Integer> entry : writtenCountMap.entrySet()) {
+                byte[] key = stringRedisTemplate.getStringSerializer().serialize(RedisConstant.ORDER_SERVICE_DISTANCE + entry.getKey());
+                connection.hashCommands().hIncrBy(key, WRITTEN_FIELD, entry.getValue());
+                connection.keyCommands().expire(key, expireSeconds);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 获取订单已上报但还没有写入轨迹的点数（各实例合计）
+     *
+     * @return 没有累加记录时返回0
+     */
+    public long getUnwrittenCount(Long orderId) {
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(RedisConstant.ORDER_SERVICE_DISTANCE + orderId, List.of("count", "written"));
+        long count = values.get(0) == null ? 0 : Long.parseLong(values.get(0).toString());
+        long written = values.get(1) == null ? 0 : Long.parseLong(values.get(1).toString());
+        return count - written;
+    }
+
+    /**
+     * 获取订单最后一个位置点（位置上报时由Lua脚本同步写入，按上报时的原始字符串保存）
+     *
+     * @return {纬度, 经度}，没有记录时返回null
+     */
+    public BigDecimal[] getLastLocation(Long orderId) {
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(RedisConstant.ORDER_SERVICE_DISTANCE + orderId, List.of("latitude", "longitude"));
+        if (values == null || values.get(0) == null || values.get(1) == null) {
+            return null;
+        }
+        return new BigDecimal[]{new BigDecimal(values.get(0).toString()), new BigDecimal(values.get(1).toString())};
+    }
+}
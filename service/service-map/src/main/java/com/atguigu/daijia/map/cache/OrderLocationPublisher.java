@@ -0,0 +1,60 @@
+package com.atguigu.daijia.map.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.model.form.map.OrderServiceLocationForm;
+import com.atguigu.daijia.model.vo.map.OrderLocationVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单司机位置发布
+ * <p>
+ * 司机位置更新时发布到该订单的Redis频道（order:location:channel:订单id），
+ * 乘客端服务订阅正在查看的订单频道，通过SSE推送给乘客，不再需要乘客端轮询。
+ * 发布失败只记录日志，不影响位置写入
+ */
+@Slf4j
+@Component
+public class OrderLocationPublisher {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 发布订单最新位置
+     */
+    public void publish(Long orderId, OrderLocationVo orderLocationVo) {
+        try {
+            stringRedisTemplate.convertAndSend(RedisConstant.ORDER_LOCATION_CHANNEL + orderId, JSON.toJSONString(orderLocationVo));
+        } catch (Exception e) {
+            log.warn("发布订单位置失败，订单：{}", orderId, e);
+        }
+    }
+
+    /**
+     * 发布一批代驾位置中每个订单的最后一个点
+     */
+    public void publishLast(List<OrderServiceLocationForm> orderLocationServiceFormList) {
+        if (CollectionUtils.isEmpty(orderLocationServiceFormList)) {
+            return;
+        }
+        Map<Long, OrderServiceLocationForm> lastLocationMap = new LinkedHashMap<>();
+        for (OrderServiceLocationForm form : orderLocationServiceFormList) {
+            lastLocationMap.put(form.getOrderId(), form);
+        }
+        for (OrderServiceLocationForm form : lastLocationMap.values()) {
+            OrderLocationVo orderLocationVo = new OrderLocationVo();
+            orderLocationVo.setLatitude(form.getLatitude());
+            orderLocationVo.setLongitude(form.getLongitude());
+            publish(form.getOrderId(), orderLocationVo);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.atguigu.daijia.map.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 司机位置相关配置
+ * 对应配置前缀：map.driver-location
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "map.driver-location")
+public class DriverLocationProperties {
+
+    /**
+     * 是否启用本地网格索引搜索附近司机，关闭后直接走Redis GEORADIUS
+     */
+    private Boolean geoIndexEnabled = true;
+
+    /**
+     * 网格边长，单位：度（0.01度约1.1公里）
+     */
+    private Double cellSizeDegree = 0.01;
+
+    /**
+     * 从Redis全量同步本地索引的间隔，单位：毫秒
+     * 其他节点写入的位置通过变更消息增量可见，全量同步只用于纠正订阅断开期间丢失的变更
+     */
+    private Long syncIntervalMs = 300000L;
+
+    /**
+     * 同步时每次从Redis读取的成员数量
+     */
+    private Integer syncBatchSize = 5000;
+
+    /**
+     * 位置上报缓冲刷写间隔，单位：毫秒（同一司机在间隔内多次上报只保留最新位置）
+     */
+    private Long ingestFlushIntervalMs = 5L;
+
+    /**
+     * 单条GEOADD包含的最大成员数，超过后在同一个pipeline中拆分为多条命令
+     */
+    private Integer ingestBatchSize = 500;
+
+    /**
+     * 缓冲中待刷写的司机数达到该值时立即刷写，不等待下一个刷写周期
+     */
+    private Integer ingestMaxPending = 20000;
+
+    /**
+     * 从Redis刷新本地接单状态位图的间隔，单位：毫秒
+     */
+    private Long serviceStatusRefreshMs = 1000L;
+
+    /**
+     * 最小位移，单位：米（与上次写入的位置相比位移小于该值的上报会被忽略）
+     */
+    private Double minMoveMeters = 20.0;
+
+    /**
+     * 心跳间隔，单位：秒（距上次写入超过该时间的上报即使没有移动也会写入，保持位置新鲜）
+     */
+    private Long heartbeatSeconds = 30L;
+
+    /**
+     * 是否按经纬度网格把司机位置拆分到多个GEO集合，关闭后使用单一集合 driver:geo:location
+     */
+    private Boolean shardEnabled = true;
+
+    /**
+     * 分片网格边长，单位：度（0.5度约55公里，5公里搜索半径通常只涉及1~4个分片）
+     */
+    private Double shardSizeDegree = 0.5;
+
+    /**
+     * 失联判定时间，单位：秒（超过该时间没有写入位置的司机视为失联，应大于心跳间隔）
+     */
+    private Long staleSeconds = 120L;
+
+    /**
+     * 搜索附近司机时是否跳过已失联的司机
+     */
+    private Boolean searchSkipStale = true;
+
+    /**
+     * 失联司机清理间隔，单位：毫秒
+     */
+    private Long evictIntervalMs = 10000L;
+
+    /**
+     * 每批清理的失联司机数量
+     */
+    private Integer evictBatchSize = 500;
+
+    /**
+     * 每次清理最多处理的批数，避免一次清理占用Redis过久
+     */
+    private Integer evictMaxBatches = 20;
+}
@@ -0,0 +1,43 @@
+package com.atguigu.daijia.map.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 腾讯地图接口调用相关配置
+ * 对应配置前缀：map.api
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "map.api")
+public class MapApiProperties {
+
+    /**
+     * 建立连接超时时间，单位：毫秒
+     */
+    private Long connectTimeoutMs = 2000L;
+
+    /**
+     * 单次请求超时时间，单位：毫秒
+     */
+    private Long requestTimeoutMs = 5000L;
+
+    /**
+     * 每个接口默认的最大并发请求数（保护地图接口配额）
+     */
+    private Integer defaultMaxConcurrency = 16;
+
+    /**
+     * 按接口单独配置的最大并发请求数，key为接口名，如 driving
+     */
+    private Map<String, Integer> maxConcurrency = new HashMap<>();
+
+    /**
+     * 每个接口达到并发上限后最多排队的请求数，超过后直接返回地图服务调用失败
+     */
+    private Integer maxWaiting = 500;
+}
@@ -0,0 +1,75 @@
+package com.atguigu.daijia.map.config;
+
+import com.atguigu.daijia.model.entity.map.OrderServiceLocation;
+import com.atguigu.daijia.model.entity.map.OrderServiceLocationBucket;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 轨迹集合索引
+ * <p>
+ * Spring Boot 默认不自动创建实体上声明的索引，这里在启动时按实体注解（@CompoundIndex、@Indexed）创建索引，
+ * 再读取集合的实际索引逐个核对字段，缺失时输出错误日志。
+ * 按订单查询轨迹依赖 (orderId, createTime) 和 (orderId, bt) 复合索引，归档按时间扫描依赖 createTime 和 bt 索引
+ */
+@Slf4j
+@Configuration
+public class MongoIndexConfig {
+
+    private static final List<Class<?>> INDEXED_ENTITY_LIST = List.of(OrderServiceLocation.class, OrderServiceLocationBucket.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @PostConstruct
+    public void ensureIndexes() {
+        MongoPersistentEntityIndexResolver indexResolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> entityClass : INDEXED_ENTITY_LIST) {
+            IndexOperations indexOperations = mongoTemplate.indexOps(entityClass);
+            List<IndexDefinition> indexDefinitionList = new ArrayList<>();
+            indexResolver.resolveIndexFor(entityClass).forEach(indexDefinitionList::add);
+            for (IndexDefinition indexDefinition : indexDefinitionList) {
+                try {
+                    indexOperations.ensureIndex(indexDefinition);
+                } catch (Exception e) {
+                    // 已存在相同字段但名称或选项不同的索引时创建失败，下面按字段核对
+                    log.warn("创建索引失败，集合：{}，索引：{}，原因：{}", mongoTemplate.getCollectionName(entityClass), indexDefinition.getIndexKeys().toJson(), e.getMessage());
+                }
+            }
+
+            List<IndexInfo> indexInfoList = indexOperations.getIndexInfo();
+            for (IndexDefinition indexDefinition : indexDefinitionList) {
+                if (indexInfoList.stream().noneMatch(indexInfo -> sameKeys(indexDefinition.getIndexKeys(), indexInfo))) {
+                    log.error("缺少索引，集合：{}，索引：{}", mongoTemplate.getCollectionName(entityClass), indexDefinition.getIndexKeys().toJson());
+                }
+            }
+            log.info("核对索引完成，集合：{}，索引数：{}", mongoTemplate.getCollectionName(entityClass), indexInfoList.size());
+        }
+    }
+
+    private static boolean sameKeys(Document indexKeys, IndexInfo indexInfo) {
+        List<IndexField> indexFieldList = indexInfo.getIndexFields();
+        if (indexFieldList.size() != indexKeys.size()) {
+            return false;
+        }
+        int i = 0;
+        for (String key : indexKeys.keySet()) {
+            if (!key.equals(indexFieldList.get(i++).getKey())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
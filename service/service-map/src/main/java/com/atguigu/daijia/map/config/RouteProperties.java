@@ -0,0 +1,95 @@
+package com.atguigu.daijia.map.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 驾车路线相关配置
+ * 对应配置前缀：map.route
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "map.route")
+public class RouteProperties {
+
+    /**
+     * 是否启用驾车路线缓存
+     */
+    private Boolean cacheEnabled = true;
+
+    /**
+     * 起终点坐标吸附网格边长，单位：度（0.001度约110米，网格内的起终点视为同一条路线）
+     */
+    private Double snapDegree = 0.001;
+
+    /**
+     * 时段长度，单位：分钟（路况随时段变化，不同时段的路线分别缓存）
+     */
+    private Integer timeBandMinutes = 30;
+
+    /**
+     * 本地缓存最大路线数，超过后淘汰最久未使用的路线
+     */
+    private Integer localMaxSize = 10000;
+
+    /**
+     * 本地缓存过期时间，单位：秒
+     */
+    private Long localTtlSeconds = 300L;
+
+    /**
+     * Redis缓存过期时间，单位：秒
+     */
+    private Long redisTtlSeconds = 1800L;
+
+    /**
+     * 主路线引擎：tencent（腾讯地图接口）、offline（本地离线路网）
+     */
+    private String engine = "tencent";
+
+    /**
+     * 主引擎失败时是否使用另一个引擎降级（离线路网未加载时不降级）
+     */
+    private Boolean fallbackEnabled = true;
+
+    /**
+     * 离线路网文件路径，为空时不加载离线路网
+     */
+    private String graphFile;
+
+    /**
+     * 起终点吸附到离线路网节点的最大距离，单位：米
+     */
+    private Double snapMaxMeters = 1000.0;
+
+    /**
+     * ETA计算的时间上限，单位：秒（超过该时间的司机按直线距离估算）
+     */
+    private Long etaMaxSeconds = 1800L;
+
+    /**
+     * 缓存的上车点行驶时间场数量
+     */
+    private Integer etaFieldCacheSize = 256;
+
+    /**
+     * 上车点行驶时间场缓存时间，单位：秒
+     */
+    private Long etaFieldTtlSeconds = 60L;
+
+    /**
+     * 按直线距离估算ETA时的平均车速，单位：公里/小时（也用于吸附到路网节点的距离）
+     */
+    private Double etaSpeedKmh = 25.0;
+
+    /**
+     * 按直线距离估算ETA时的绕行系数（道路距离/直线距离）
+     */
+    private Double etaDetourFactor = 1.4;
+
+    /**
+     * 司机数达到该值时并行计算ETA
+     */
+    private Integer etaParallelThreshold = 64;
+}
@@ -0,0 +1,41 @@
+package com.atguigu.daijia.map.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ThreadPoolConfig {
+
+    /**
+     * 配置线程池组件
+     * 用于不影响接口返回的后台任务，如代驾结束后生成简化轨迹
+     *
+     * @return 配置好的 ThreadPoolExecutor 实例
+     */
+    @Bean
+    public ThreadPoolExecutor threadPoolExecutor() {
+
+        // 动态获取服务器核数
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        // 核心线程数与最大线程数设置为服务器核数+1
+        // 后台任务允许排队，队列大小设置为1000
+        // 拒绝策略设置为CallerRunsPolicy，队列满时由调用线程执行，任务不会丢失
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+                processors + 1,
+                processors + 1,
+                0,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000),
+                Executors.defaultThreadFactory(),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        return threadPoolExecutor;
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.atguigu.daijia.map.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 代驾轨迹存储相关配置
+ * 对应配置前缀：map.trail
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "map.trail")
+public class TrailProperties {
+
+    /**
+     * 是否仍按旧格式每个位置点写入一条 OrderServiceLocation（迁移期间可开启，便于回退）
+     */
+    private Boolean legacyWriteEnabled = false;
+
+    /**
+     * 是否异步批量写入轨迹：位置上报只更新Redis中的里程和最后位置，轨迹点进入内存队列由后台线程批量写入MongoDB
+     */
+    private Boolean writeBehindEnabled = true;
+
+    /**
+     * 后台刷写间隔，单位：毫秒
+     */
+    private Long writeFlushIntervalMs = 1000L;
+
+    /**
+     * 待写入位置点达到该数量时立即刷写
+     */
+    private Integer writeFlushThreshold = 5000;
+
+    /**
+     * 单次bulk写入的最大上报批数
+     */
+    private Integer writeBatchSize = 2000;
+
+    /**
+     * 待写入位置点上限，超过时新上报的轨迹点丢弃并计数（里程和最后位置已写入Redis，不受影响）
+     */
+    private Integer writeMaxPending = 200000;
+
+    /**
+     * 写入失败时的最大重试次数，超过后丢弃并计数
+     */
+    private Integer writeMaxRetries = 3;
+
+    /**
+     * 结束代驾读取整条轨迹前，等待其他实例队列中该订单的轨迹点写入的最长时间，单位：毫秒
+     */
+    private Long writeAwaitMs = 5000L;
+
+    /**
+     * 地图缩放级别 -> 轨迹简化容差（单位：米），代驾结束时按每个级别生成一份简化轨迹
+     */
+    private Map<Integer, Double> zoomToleranceMeters = new TreeMap<>(Map.of(
+            18, 1.0,
+            16, 5.0,
+            14, 20.0,
+            12, 80.0,
+            10, 300.0));
+
+    /**
+     * 是否定期归档已结束订单的原始轨迹
+     */
+    private Boolean archiveEnabled = true;
+
+    /**
+     * 最后一个位置点超过该天数的订单归档到压缩的冷数据集合，并从原始轨迹集合中删除
+     */
+    private Integer archiveAfterDays = 30;
+
+    /**
+     * 每批归档的订单数
+     */
+    private Integer archiveBatchSize = 100;
+
+    /**
+     * 每次归档最多处理的批数，避免一次归档占用MongoDB过久
+     */
+    private Integer archiveMaxBatches = 20;
+}
@@ -6,9 +6,12 @@ import com.atguigu.daijia.model.form.map.OrderServiceLocationForm;
 import com.atguigu.daijia.model.form.map.SearchNearByDriverForm;
 import com.atguigu.daijia.model.form.map.UpdateDriverLocationForm;
 import com.atguigu.daijia.model.form.map.UpdateOrderLocationForm;
+import com.atguigu.daijia.model.vo.map.DriverLocationStatsVo;
 import com.atguigu.daijia.model.vo.map.NearByDriverVo;
 import com.atguigu.daijia.model.vo.map.OrderLocationVo;
 import com.atguigu.daijia.model.vo.map.OrderServiceLastLocationVo;
+import com.atguigu.daijia.model.vo.map.OrderServiceTrailVo;
+import com.atguigu.daijia.model.vo.map.OrderTrailWriteStatsVo;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
@@ -42,6 +45,19 @@ public class LocationController {
         return Result.ok(locationService.updateDriverLocation(updateDriverLocationForm));
     }
 
+    /**
+     * 开启接单服务：上报司机经纬度位置（缓冲批量写入）
+     * 接单状态在本地位图中判断，位置先进入缓冲，由后台线程批量写入Redis
+     *
+     * @param updateDriverLocationForm 包含司机新位置信息的表单
+     * @return 司机处于接单状态返回true，否则返回false且不记录位置
+     */
+    @Operation(summary = "开启接单服务：上报司机经纬度位置（缓冲批量写入）")
+    @PostMapping("/ingestDriverLocation")
+    public Result<Boolean> ingestDriverLocation(@RequestBody UpdateDriverLocationForm updateDriverLocationForm) {
+        return Result.ok(locationService.ingestDriverLocation(updateDriverLocationForm));
+    }
+
     /**
      * 关闭接单服务：删除司机经纬度位置
      * 此接口通过HTTP DELETE请求处理，用于从系统中移除指定司机的地理位置信息
@@ -55,6 +71,18 @@ public class LocationController {
     public Result<Boolean> removeDriverLocation(@PathVariable Long driverId) {
         return Result.ok(locationService.removeDriverLocation(driverId));
     }
+    /**
+     * 获取司机位置上报统计
+     * 用于观察静止司机过滤的效果：写入次数应与司机实际移动量相关，而不是与在线司机数相关
+     *
+     * @return 司机位置上报统计
+     */
+    @Operation(summary = "获取司机位置上报统计")
+    @GetMapping("/getDriverLocationStats")
+    public Result<DriverLocationStatsVo> getDriverLocationStats() {
+        return Result.ok(locationService.getDriverLocationStats());
+    }
+
     /**
      * 搜索附近满足条件的司机
      *
@@ -66,6 +94,12 @@ public class LocationController {
     public Result<List<NearByDriverVo>> searchNearByDriver(@RequestBody SearchNearByDriverForm searchNearByDriverForm) {
         return Result.ok(locationService.searchNearByDriver(searchNearByDriverForm));
     }
+
+    @Operation(summary = "批量搜索附近满足条件的司机")
+    @PostMapping("/searchNearByDriverBatch")
+    public Result<List<List<NearByDriverVo>>> searchNearByDriverBatch(@RequestBody List<SearchNearByDriverForm> searchNearByDriverFormList) {
+        return Result.ok(locationService.searchNearByDriverBatch(searchNearByDriverFormList));
+    }
     @Operation(summary = "司机赶往代驾起始点：更新订单地址到缓存")
     @PostMapping("/updateOrderLocationToCache")
     public Result<Boolean> updateOrderLocationToCache(@RequestBody UpdateOrderLocationForm updateOrderLocationForm) {
@@ -81,6 +115,18 @@ public class LocationController {
     public Result<Boolean> saveOrderServiceLocation(@RequestBody List<OrderServiceLocationForm> orderLocationServiceFormList) {
         return Result.ok(locationService.saveOrderServiceLocation(orderLocationServiceFormList));
     }
+
+    /**
+     * 获取订单轨迹写入统计
+     * 包括待写入点数、最早待写入点的等待时长以及写入、失败和丢弃的点数
+     *
+     * @return 订单轨迹写入统计
+     */
+    @Operation(summary = "获取订单轨迹写入统计")
+    @GetMapping("/getOrderTrailWriteStats")
+    public Result<OrderTrailWriteStatsVo> getOrderTrailWriteStats() {
+        return Result.ok(locationService.getOrderTrailWriteStats());
+    }
     @Operation(summary = "代驾服务：获取订单服务最后一个位置信息")
     @GetMapping("/getOrderServiceLastLocation/{orderId}")
     public Result<OrderServiceLastLocationVo> getOrderServiceLastLocation(@PathVariable Long orderId) {
@@ -91,5 +137,14 @@ public class LocationController {
     public Result<BigDecimal> calculateOrderRealDistance(@PathVariable Long orderId) {
         return Result.ok(locationService.calculateOrderRealDistance(orderId));
     }
+    @Operation(summary = "结束代驾：保存订单各缩放级别的简化轨迹")
+    @PostMapping("/saveOrderServiceTrail/{orderId}")
+    public Result<Boolean> saveOrderServiceTrail(@PathVariable Long orderId) {
+        return Result.ok(locationService.saveOrderServiceTrail(orderId));
+    }
+    @Operation(summary = "代驾服务：获取订单代驾轨迹（按地图缩放级别简化）")
+    @GetMapping("/getOrderServiceTrail/{orderId}/{zoom}")
+    public Result<OrderServiceTrailVo> getOrderServiceTrail(@PathVariable Long orderId, @PathVariable Integer zoom) {
+        return Result.ok(locationService.getOrderServiceTrail(orderId, zoom));
+    }
 }
-
@@ -1,18 +1,26 @@
 package com.atguigu.daijia.map.controller;
 
 import com.atguigu.daijia.common.result.Result;
+import com.atguigu.daijia.map.service.EtaService;
 import com.atguigu.daijia.map.service.MapService;
 import com.atguigu.daijia.model.form.map.CalculateDrivingLineForm;
+import com.atguigu.daijia.model.form.map.CalculateEtaMatrixForm;
+import com.atguigu.daijia.model.vo.map.DriverEtaVo;
+import com.atguigu.daijia.model.vo.map.DrivingLineCacheStatsVo;
 import com.atguigu.daijia.model.vo.map.DrivingLineVo;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @Slf4j
 @Tag(name = "地图API接口管理")
 @RestController
@@ -23,20 +31,45 @@ public class MapController {
     @Autowired
     private MapService mapService;
 
+    @Autowired
+    private EtaService etaService;
+
     /**
      * 计算驾驶线路接口
      *
      * 该接口通过POST请求接收一个JSON格式的表单数据，该数据包含计算驾驶线路所需的信息，
-     * 如起点、终点等。然后调用地图服务（mapService）的calculateDrivingLine方法进行线路计算，
-     * 并将计算结果封装在Result对象中返回。
+     * 如起点、终点等。然后调用地图服务（mapService）的calculateDrivingLineAsync方法进行线路计算，
+     * 并将计算结果封装在Result对象中返回。等待地图接口响应期间不占用Tomcat线程。
      *
      * @param calculateDrivingLineForm 驾驶线路计算表单，包含计算驾驶线路所需的信息
      * @return 包含驾驶线路信息的Result对象，成功时result.getCode()为200
      */
     @Operation(summary = "计算驾驶线路")
     @PostMapping("/calculateDrivingLine")
-    public Result<DrivingLineVo> calculateDrivingLine(@RequestBody CalculateDrivingLineForm calculateDrivingLineForm) {
-        return Result.ok(mapService.calculateDrivingLine(calculateDrivingLineForm));
+    public CompletableFuture<Result<DrivingLineVo>> calculateDrivingLine(@RequestBody CalculateDrivingLineForm calculateDrivingLineForm) {
+        return mapService.calculateDrivingLineAsync(calculateDrivingLineForm).thenApply(Result::ok);
+    }
+
+    /**
+     * 获取驾车路线缓存命中统计
+     *
+     * @return 本地缓存、Redis缓存命中次数和未命中次数
+     */
+    @Operation(summary = "获取驾车路线缓存统计")
+    @GetMapping("/getDrivingLineCacheStats")
+    public Result<DrivingLineCacheStatsVo> getDrivingLineCacheStats() {
+        return Result.ok(mapService.getDrivingLineCacheStats());
     }
-}
 
+    /**
+     * 计算多个司机到同一上车点的预计到达时间
+     *
+     * @param calculateEtaMatrixForm 上车点和司机位置
+     * @return 按预计到达时间升序排列的司机列表
+     */
+    @Operation(summary = "计算司机到上车点的预计到达时间")
+    @PostMapping("/calculateEtaMatrix")
+    public Result<List<DriverEtaVo>> calculateEtaMatrix(@RequestBody CalculateEtaMatrixForm calculateEtaMatrixForm) {
+        return Result.ok(etaService.calculateEtaMatrix(calculateEtaMatrixForm));
+    }
+}
@@ -0,0 +1,118 @@
+package com.atguigu.daijia.map.geo;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 司机位置变更消息
+ * <p>
+ * 写入Redis的节点把一批位置更新或删除编码为一条二进制消息发布到 driver:geo:change:channel，其他节点据此增量更新本地网格索引。
+ * 格式：类型(1字节) 节点id(8字节) 时间(8字节) 数量(4字节)，
+ * 更新时每个司机为 司机id、纬度、经度，时间为最后上报时间；删除时每个司机为 司机id，时间为删除时间
+ */
+public final class DriverGeoChange {
+
+    public static final byte UPDATE = 1;
+
+    public static final byte REMOVE = 2;
+
+    private static final int HEADER_BYTES = 1 + 8 + 8 + 4;
+
+    private final byte type;
+    private final long nodeId;
+    private final long time;
+    private final long[] ids;
+    private final double[] lats;
+    private final double[] lngs;
+
+    private DriverGeoChange(byte type, long nodeId, long time, long[] ids, double[] lats, double[] lngs) {
+        this.type = type;
+        this.nodeId = nodeId;
+        this.time = time;
+        this.ids = ids;
+        this.lats = lats;
+        this.lngs = lngs;
+    }
+
+    /**
+     * @param locations 司机id -> {纬度, 经度}
+     * @param lastSeen  最后上报时间
+     */
+    public static byte[] encodeUpdate(long nodeId, long lastSeen, Map<Long, double[]> locations) {
+        ByteBuffer buffer = header(UPDATE, nodeId, lastSeen, locations.size(), 24);
+        for (Map.Entry<Long, double[]> entry : locations.entrySet()) {
+            buffer.putLong(entry.getKey());
+            buffer.putDouble(entry.getValue()[0]);
+            buffer.putDouble(entry.getValue()[1]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param removeTime 删除时间
+     */
+    public static byte[] encodeRemove(long nodeId, long removeTime, List<Long> driverIdList) {
+        ByteBuffer buffer = header(REMOVE, nodeId, removeTime, driverIdList.size(), 8);
+        for (Long driverId : driverIdList) {
+            buffer.putLong(driverId);
+        }
+        return buffer.array();
+    }
+
+    public static DriverGeoChange decode(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte type = buffer.get();
+        long nodeId = buffer.getLong();
+        long time = buffer.getLong();
+        int count = buffer.getInt();
+        long[] ids = new long[count];
+        double[] lats = type == UPDATE ? new double[count] : null;
+        double[] lngs = type == UPDATE ? new double[count] : null;
+        for (int i = 0; i < count; i++) {
+            ids[i] = buffer.getLong();
+            if (type == UPDATE) {
+                lats[i] = buffer.getDouble();
+                lngs[i] = buffer.getDouble();
+            }
+        }
+        return new DriverGeoChange(type, nodeId, time, ids, lats, lngs);
+    }
+
+    private static ByteBuffer header(byte type, long nodeId, long time, int count, int entryBytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + count * entryBytes);
+        buffer.put(type);
+        buffer.putLong(nodeId);
+        buffer.putLong(time);
+        buffer.putInt(count);
+        return buffer;
+    }
+
+    public boolean isUpdate() {
+        return type == UPDATE;
+    }
+
+    public long nodeId() {
+        return nodeId;
+    }
+
+    public long time() {
+        return time;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long driverId(int i) {
+        return ids[i];
+    }
+
+    public double latitude(int i) {
+        return lats[i];
+    }
+
+    public double longitude(int i) {
+        return lngs[i];
+    }
+}
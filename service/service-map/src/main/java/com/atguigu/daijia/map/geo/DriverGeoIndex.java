@@ -0,0 +1,371 @@
+package com.atguigu.daijia.map.geo;
+
+import com.atguigu.daijia.common.util.LocationUtil;
+import com.atguigu.daijia.map.config.DriverLocationProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 司机位置本地网格索引
+ * <p>
+ * 按经纬度把地图切分成固定大小的网格，每个网格保存落在其中的司机槽位；
+ * 司机的id、经纬度、所在网格和更新时间保存在 DriverStateStore 的堆外定长记录中，查询时只遍历与搜索圆相交的网格，
+ * 不需要访问Redis，也不需要反序列化GeoResult。
+ * Redis仍然是持久副本以及节点间共享数据的方式，本地索引由 updateDriverLocation/removeDriverLocation 实时维护，
+ * 其他节点写入的位置和删除通过变更消息（DriverGeoChange）增量应用，并以较长间隔从Redis全量同步一次纠正丢失的消息。
+ */
+@Component
+public class DriverGeoIndex {
+
+    // 每纬度对应的公里数
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private static final int NO_SLOT = DriverStateStore.NO_SLOT;
+
+    private static final int NO_CELL = -1;
+
+    private final DriverStateStore store;
+
+    // 与 DriverStateStore 共用一把锁
+    private final ReentrantReadWriteLock lock;
+
+    private final double cellSize;
+
+    // 网格key -> 网格编号（cellTable下标），基本类型哈希表，查询时不装箱
+    private final LongIntHashMap cellIndex = new LongIntHashMap(1024);
+
+    // 网格编号 -> 网格
+    private Cell[] cellTable = new Cell[1024];
+
+    private int cellTableSize;
+
+    // 已清空的网格编号，新网格优先复用
+    private int[] freeCellIds = new int[64];
+
+    private int freeCellCount;
+
+    // 同步期间本地删除的司机，避免同步把已删除的司机加回来
+    private final Map<Long, Long> recentRemovals = new HashMap<>();
+
+    // 是否已完成首次同步，未完成前查询仍走Redis
+    private volatile boolean ready;
+
+    @Autowired
+    public DriverGeoIndex(DriverLocationProperties driverLocationProperties, DriverStateStore driverStateStore) {
+        this.cellSize = driverLocationProperties.getCellSizeDegree();
+        this.store = driverStateStore;
+        this.lock = driverStateStore.lock();
+    }
+
+    /**
+     * 网格：保存落在其中的槽位
+     */
+    private static class Cell {
+        int[] slots = new int[8];
+        int size;
+    }
+
+    /**
+     * 新增或更新司机位置
+     */
+    public void update(long driverId, double latitude, double longitude) {
+        long cellKey = cellKey(latitude, longitude);
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            upsert(driverId, latitude, longitude, cellKey, now, now);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除司机位置
+     */
+    public void remove(long driverId) {
+        lock.writeLock().lock();
+        try {
+            delete(driverId);
+            recentRemovals.put(driverId, System.currentTimeMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 应用其他节点发布的位置变更
+     * 本地记录的最后上报时间晚于变更时间的司机（已有更新的位置或重新上报）不应用
+     */
+    public void apply(DriverGeoChange change) {
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < change.size(); i++) {
+                long driverId = change.driverId(i);
+                int slot = store.slotOf(driverId);
+                if (slot != NO_SLOT && store.hasLocation(slot) && store.lastSeen(slot) > change.time()) {
+                    continue;
+                }
+                if (change.isUpdate()) {
+                    upsert(driverId, change.latitude(i), change.longitude(i), cellKey(change.latitude(i), change.longitude(i)), now, change.time());
+                } else {
+                    delete(driverId);
+                    recentRemovals.put(driverId, now);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 用Redis快照重建索引
+     * 快照开始之后本地有更新或删除的司机以本地数据为准
+     *
+     * @param snapshotTime 开始读取快照的时间
+     * @param lastSeens    各司机的最后上报时间，0表示没有记录
+     */
+    public void reload(long snapshotTime, long[] ids, double[] lats, double[] lngs, long[] lastSeens, int count) {
+        lock.writeLock().lock();
+        try {
+            LongIntHashMap seen = new LongIntHashMap(count);
+            for (int i = 0; i < count; i++) {
+                long driverId = ids[i];
+                seen.put(driverId, i);
+                Long removedAt = recentRemovals.get(driverId);
+                if (removedAt != null && removedAt >= snapshotTime) {
+                    continue;
+                }
+                int slot = store.slotOf(driverId);
+                if (slot != NO_SLOT && store.hasLocation(slot) && store.updateTime(slot) >= snapshotTime) {
+                    continue;
+                }
+                upsert(driverId, lats[i], lngs[i], cellKey(lats[i], lngs[i]), snapshotTime - 1, lastSeens[i]);
+            }
+            // 删除Redis中已经不存在的司机
+            for (int slot = 0; slot < store.slotCount(); slot++) {
+                long driverId = store.driverId(slot);
+                if (driverId != 0 && store.hasLocation(slot) && store.updateTime(slot) < snapshotTime && seen.get(driverId, NO_SLOT) == NO_SLOT) {
+                    delete(driverId);
+                }
+            }
+            Iterator<Long> iterator = recentRemovals.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next() < snapshotTime) {
+                    iterator.remove();
+                }
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 搜索半径范围内的司机，结果按距离升序
+     *
+     * @param radiusKm 搜索半径，单位：公里
+     * @param limit    最多返回数量，小于等于0表示不限制
+     */
+    public NearbyDrivers searchRadius(double latitude, double longitude, double radiusKm, int limit) {
+        return searchRadius(latitude, longitude, radiusKm, limit, new NearbyDrivers(64));
+    }
+
+    /**
+     * 搜索半径范围内的司机，结果写入调用方提供的对象（可在同一线程中重复使用，查询本身不分配对象）
+     *
+     * @param radiusKm 搜索半径，单位：公里
+     * @param limit    最多返回数量，小于等于0表示不限制
+     * @param result   输出，原有内容会被清空
+     */
+    public NearbyDrivers searchRadius(double latitude, double longitude, double radiusKm, int limit, NearbyDrivers result) {
+        result.clear();
+        lock.readLock().lock();
+        try {
+            collect(latitude, longitude, radiusKm, result);
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort();
+        if (limit > 0) {
+            result.truncate(limit);
+        }
+        return result;
+    }
+
+    /**
+     * 搜索距离最近的 k 个司机
+     * 从中心网格开始逐圈扩大，找够 k 个且第 k 个距离不超过已覆盖半径时停止
+     *
+     * @param maxRadiusKm 最大搜索半径，单位：公里
+     */
+    public NearbyDrivers searchNearest(double latitude, double longitude, int k, double maxRadiusKm) {
+        NearbyDrivers result = new NearbyDrivers(k);
+        // 一个网格的最短边对应的公里数，每扩大一圈至少多覆盖这么远
+        double ringKm = cellSize * KM_PER_DEGREE * Math.cos(Math.toRadians(Math.min(Math.abs(latitude) + cellSize, 89)));
+        double radiusKm = Math.min(ringKm, maxRadiusKm);
+        while (true) {
+            result.clear();
+            lock.readLock().lock();
+            try {
+                collect(latitude, longitude, radiusKm, result);
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (result.size() >= k || radiusKm >= maxRadiusKm) {
+                break;
+            }
+            radiusKm = Math.min(radiusKm * 2, maxRadiusKm);
+        }
+        result.sort();
+        result.truncate(k);
+        return result;
+    }
+
+    /**
+     * 获取司机位置
+     *
+     * @param location 输出：{纬度, 经度}
+     * @return 索引中没有该司机时返回false
+     */
+    public boolean getLocation(long driverId, double[] location) {
+        lock.readLock().lock();
+        try {
+            int slot = store.slotOf(driverId);
+            if (slot == NO_SLOT || !store.hasLocation(slot)) {
+                return false;
+            }
+            location[0] = store.latitude(slot);
+            location[1] = store.longitude(slot);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 本地索引是否可用
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return store.locationCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 遍历与搜索圆外接矩形相交的网格，收集半径内的司机
+    private void collect(double latitude, double longitude, double radiusKm, NearbyDrivers result) {
+        double latDelta = radiusKm / KM_PER_DEGREE;
+        double lngDelta = radiusKm / (KM_PER_DEGREE * Math.max(Math.cos(Math.toRadians(latitude)), 0.01));
+        int minLat = (int) Math.floor((latitude - latDelta) / cellSize);
+        int maxLat = (int) Math.floor((latitude + latDelta) / cellSize);
+        int minLng = (int) Math.floor((longitude - lngDelta) / cellSize);
+        int maxLng = (int) Math.floor((longitude + lngDelta) / cellSize);
+        for (int x = minLat; x <= maxLat; x++) {
+            for (int y = minLng; y <= maxLng; y++) {
+                int cellId = cellIndex.get(toCellKey(x, y), NO_CELL);
+                if (cellId == NO_CELL) {
+                    continue;
+                }
+                Cell cell = cellTable[cellId];
+                for (int i = 0; i < cell.size; i++) {
+                    int slot = cell.slots[i];
+                    double distanceKm = LocationUtil.getDistance(latitude, longitude, store.latitude(slot), store.longitude(slot)) / 1000;
+                    if (distanceKm <= radiusKm) {
+                        result.add(store.driverId(slot), distanceKm);
+                    }
+                }
+            }
+        }
+    }
+
+    private void upsert(long driverId, double latitude, double longitude, long cellKey, long updateTime, long lastSeen) {
+        int slot = store.slotOrAllocate(driverId);
+        if (!store.hasLocation(slot)) {
+            addToCell(cellKey, slot);
+        } else if (store.cellKey(slot) != cellKey) {
+            // 跨网格移动
+            removeFromCell(slot);
+            addToCell(cellKey, slot);
+        }
+        store.setLocation(slot, latitude, longitude, cellKey, updateTime, lastSeen);
+    }
+
+    private void delete(long driverId) {
+        int slot = store.slotOf(driverId);
+        if (slot == NO_SLOT || !store.hasLocation(slot)) {
+            return;
+        }
+        removeFromCell(slot);
+        store.clearLocation(slot);
+    }
+
+    // 网格key在写入位置时一并保存到记录中
+    private void addToCell(long cellKey, int slot) {
+        int cellId = cellIndex.get(cellKey, NO_CELL);
+        if (cellId == NO_CELL) {
+            cellId = allocateCell();
+            cellIndex.put(cellKey, cellId);
+        }
+        Cell cell = cellTable[cellId];
+        if (cell.size == cell.slots.length) {
+            cell.slots = Arrays.copyOf(cell.slots, cell.size << 1);
+        }
+        cell.slots[cell.size] = slot;
+        store.setCellPosition(slot, cell.size);
+        cell.size++;
+    }
+
+    // 与网格最后一个元素交换后删除，O(1)
+    private void removeFromCell(int slot) {
+        long cellKey = store.cellKey(slot);
+        int cellId = cellIndex.get(cellKey, NO_CELL);
+        if (cellId == NO_CELL) {
+            return;
+        }
+        Cell cell = cellTable[cellId];
+        int position = store.cellPosition(slot);
+        int last = cell.slots[--cell.size];
+        cell.slots[position] = last;
+        store.setCellPosition(last, position);
+        if (cell.size == 0) {
+            cellIndex.remove(cellKey, NO_CELL);
+            if (freeCellCount == freeCellIds.length) {
+                freeCellIds = Arrays.copyOf(freeCellIds, freeCellCount << 1);
+            }
+            freeCellIds[freeCellCount++] = cellId;
+        }
+    }
+
+    // 分配网格编号，复用已清空的网格
+    private int allocateCell() {
+        if (freeCellCount > 0) {
+            return freeCellIds[--freeCellCount];
+        }
+        if (cellTableSize == cellTable.length) {
+            cellTable = Arrays.copyOf(cellTable, cellTableSize << 1);
+        }
+        cellTable[cellTableSize] = new Cell();
+        return cellTableSize++;
+    }
+
+    private long cellKey(double latitude, double longitude) {
+        return toCellKey((int) Math.floor(latitude / cellSize), (int) Math.floor(longitude / cellSize));
+    }
+
+    private static long toCellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+}
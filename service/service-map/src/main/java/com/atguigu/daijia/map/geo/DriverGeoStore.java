@@ -0,0 +1,445 @@
+package com.atguigu.daijia.map.geo;
+
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.map.config.DriverLocationProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 司机位置Redis存储（按网格分片）
+ * <p>
+ * 全国司机放在同一个GEO集合中会固定在一个集群槽位上，GEORADIUS也要在超大集合上执行。
+ * 这里按粗粒度经纬度网格（默认0.5度，约55公里）把司机分到不同的GEO集合 driver:geo:location:{网格}，
+ * 并用 driver:geo:shard 记录每个司机当前所在的网格，司机跨网格移动时从旧分片删除；
+ * 搜索时只查询与搜索圆相交的分片，多个分片的GEORADIUS放在同一个pipeline中发送后合并结果。
+ * driver:geo:shard:set 记录有司机的分片，供全量同步遍历：每次写入都登记写入的分片，删除司机后清空的分片从中移除；
+ * 分片key分属不同槽位，不能用一个脚本原子地判断并移除，移除与并发写入交错时由该分片的下一次写入重新登记。
+ * 关闭分片（map.driver-location.shard-enabled=false）时退回到单一集合 driver:geo:location。
+ * 每次写入同时在 driver:geo:lastseen 中记录最后上报时间，用于清理和跳过失联司机。
+ * 启用本地网格索引时，写入和删除成功后把变更发布到 driver:geo:change:channel，其他节点据此增量更新本地索引；发布失败只记录日志
+ */
+@Slf4j
+@Component
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class DriverGeoStore {
+
+    // 每纬度对应的公里数
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private static final DefaultRedisScript<List> EVICT_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        EVICT_SCRIPT.setLocation(new ClassPathResource("lua/driver_geo_evict.lua"));
+        EVICT_SCRIPT.setResultType(List.class);
+    }
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    @Autowired
+    private DriverLocationProperties driverLocationProperties;
+
+    // 本节点标识，用于忽略自己发布的变更
+    private final long nodeId = UUID.randomUUID().getMostSignificantBits();
+
+    private static final byte[] CHANGE_CHANNEL = RedisConstant.DRIVER_GEO_CHANGE_CHANNEL.getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 批量写入司机位置
+     * 先用一次HMGET取出司机原来所在的分片，再在同一个pipeline中完成跨分片删除、按分片GEOADD和分片映射更新
+     *
+     * @param locations 司机id -> {纬度, 经度}
+     */
+    public void add(Map<Long, double[]> locations) {
+        if (locations.isEmpty()) {
+            return;
+        }
+        int batchSize = driverLocationProperties.getIngestBatchSize();
+        long now = System.currentTimeMillis();
+        if (!driverLocationProperties.getShardEnabled()) {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    addMembers(operations, RedisConstant.DRIVER_GEO_LOCATION, locations, batchSize);
+                    touchLastSeen(operations, locations.keySet(), now);
+                    return null;
+                }
+            });
+            publishChange(DriverGeoChange.encodeUpdate(nodeId, now, locations));
+            return;
+        }
+
+        // 1.按新位置分组，并读取司机原来所在的分片
+        List<Long> driverIdList = new ArrayList<>(locations.keySet());
+        List<Object> hashKeys = new ArrayList<>(driverIdList.size());
+        for (Long driverId : driverIdList) {
+            hashKeys.add(driverId.toString());
+        }
+        List<Object> oldShards = redisTemplate.opsForHash().multiGet(RedisConstant.DRIVER_GEO_SHARD, hashKeys);
+
+        Map<String, Map<Long, double[]>> shardLocations = new HashMap<>();
+        Map<String, List<Object>> movedOut = new HashMap<>();
+        Map<Object, Object> shardChanges = new HashMap<>();
+        for (int i = 0; i < driverIdList.size(); i++) {
+            Long driverId = driverIdList.get(i);
+            double[] location = locations.get(driverId);
+            String shard = shardOf(location[0], location[1]);
+            shardLocations.computeIfAbsent(shard, key -> new HashMap<>()).put(driverId, location);
+            Object oldShard = oldShards == null ? null : oldShards.get(i);
+            if (!shard.equals(oldShard)) {
+                shardChanges.put(driverId.toString(), shard);
+                // 跨网格移动，从旧分片删除
+                if (oldShard != null) {
+                    movedOut.computeIfAbsent(oldShard.toString(), key -> new ArrayList<>()).add(driverId.toString());
+                }
+            }
+        }
+
+        // 2.同一个pipeline中完成所有写入
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (Map.Entry<String, List<Object>> entry : movedOut.entrySet()) {
+                    operations.opsForZSet().remove(shardKey(entry.getKey()), entry.getValue().toArray());
+                }
+                for (Map.Entry<String, Map<Long, double[]>> entry : shardLocations.entrySet()) {
+                    addMembers(operations, shardKey(entry.getKey()), entry.getValue(), batchSize);
+                }
+                if (!shardChanges.isEmpty()) {
+                    operations.opsForHash().putAll(RedisConstant.DRIVER_GEO_SHARD, shardChanges);
+                }
+                // 每次都登记写入的分片，修复与清理空分片并发时被移除的登记
+                operations.opsForSet().add(RedisConstant.DRIVER_GEO_SHARD_SET, shardLocations.keySet().toArray());
+                touchLastSeen(operations, locations.keySet(), now);
+                return null;
+            }
+        });
+        // 司机移出后可能清空的旧分片
+        movedOut.keySet().removeAll(shardLocations.keySet());
+        pruneEmptyShards(movedOut.keySet());
+        publishChange(DriverGeoChange.encodeUpdate(nodeId, now, locations));
+    }
+
+    /**
+     * 删除司机位置（同时清理旧的单一集合，兼容开启分片前写入的数据）
+     */
+    public void remove(Long driverId) {
+        remove(List.of(driverId));
+    }
+
+    /**
+     * 批量删除司机位置
+     * 一次HMGET取出司机所在分片，再在同一个pipeline中从分片、分片映射、旧的单一集合以及最后上报时间中删除
+     */
+    public void remove(List<Long> driverIdList) {
+        if (driverIdList.isEmpty()) {
+            return;
+        }
+        List<Object> members = new ArrayList<>(driverIdList.size());
+        for (Long driverId : driverIdList) {
+            members.add(driverId.toString());
+        }
+        removeMembers(members, true);
+        publishChange(DriverGeoChange.encodeRemove(nodeId, System.currentTimeMillis(), driverIdList));
+    }
+
+    /**
+     * 删除失联司机
+     * 候选司机可能在查出之后又上报了位置（或来自本地定期同步的副本），先用Lua脚本重新核对最后上报时间，
+     * 只有仍不晚于截止时间的才从最后上报时间中删除，再从GEO分片中删除这些司机
+     *
+     * @param cutoffTime 截止时间，毫秒时间戳
+     * @return 实际删除的司机
+     */
+    public List<Long> removeStale(List<Long> driverIdList, long cutoffTime) {
+        if (driverIdList.isEmpty()) {
+            return driverIdList;
+        }
+        Object[] args = new Object[driverIdList.size() + 1];
+        args[0] = cutoffTime;
+        for (int i = 0; i < driverIdList.size(); i++) {
+            args[i + 1] = driverIdList.get(i).toString();
+        }
+        RedisSerializer valueSerializer = redisTemplate.getValueSerializer();
+        List<Object> removed = (List<Object>) redisTemplate.execute(EVICT_SCRIPT, valueSerializer, valueSerializer,
+                List.of(RedisConstant.DRIVER_GEO_LAST_SEEN), args);
+        if (removed == null || removed.isEmpty()) {
+            return List.of();
+        }
+        List<Object> members = new ArrayList<>(removed.size());
+        List<Long> removedIdList = new ArrayList<>(removed.size());
+        for (Object member : removed) {
+            members.add(member.toString());
+            removedIdList.add(Long.parseLong(member.toString()));
+        }
+        // 最后上报时间已由脚本删除；这之后重新上报的司机保留新的上报时间，下次上报时重新写入位置
+        removeMembers(members, false);
+        // 以截止时间作为删除时间，其他节点上最后上报时间更晚的司机不删除
+        publishChange(DriverGeoChange.encodeRemove(nodeId, cutoffTime, removedIdList));
+        return removedIdList;
+    }
+
+    private void removeMembers(List<Object> members, boolean removeLastSeen) {
+        List<Object> shards = redisTemplate.opsForHash().multiGet(RedisConstant.DRIVER_GEO_SHARD, members);
+        Map<String, List<Object>> shardMembers = new HashMap<>();
+        for (int i = 0; i < members.size(); i++) {
+            Object shard = shards == null ? null : shards.get(i);
+            if (shard != null) {
+                shardMembers.computeIfAbsent(shard.toString(), key -> new ArrayList<>()).add(members.get(i));
+            }
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (Map.Entry<String, List<Object>> entry : shardMembers.entrySet()) {
+                    operations.opsForZSet().remove(shardKey(entry.getKey()), entry.getValue().toArray());
+                }
+                operations.opsForHash().delete(RedisConstant.DRIVER_GEO_SHARD, members.toArray());
+                operations.opsForZSet().remove(RedisConstant.DRIVER_GEO_LOCATION, members.toArray());
+                if (removeLastSeen) {
+                    operations.opsForZSet().remove(RedisConstant.DRIVER_GEO_LAST_SEEN, members.toArray());
+                }
+                return null;
+            }
+        });
+        pruneEmptyShards(shardMembers.keySet());
+    }
+
+    /**
+     * 最后上报时间早于截止时间的司机（按时间升序，最多 limit 个）
+     *
+     * @param cutoffTime 截止时间，毫秒时间戳
+     */
+    public List<Long> findStale(long cutoffTime, int limit) {
+        Set<Object> members = redisTemplate.opsForZSet().rangeByScore(RedisConstant.DRIVER_GEO_LAST_SEEN, Double.NEGATIVE_INFINITY, cutoffTime, 0, limit);
+        List<Long> driverIdList = new ArrayList<>();
+        if (members != null) {
+            for (Object member : members) {
+                driverIdList.add(Long.parseLong(member.toString()));
+            }
+        }
+        return driverIdList;
+    }
+
+    /**
+     * 过滤掉已失联的司机（一次ZMSCORE读取全部候选司机的最后上报时间）
+     * 没有最后上报时间的司机（记录上报时间之前写入的位置）视为正常
+     *
+     * @param cutoffTime 截止时间，毫秒时间戳，最后上报时间早于该时间的司机被过滤
+     */
+    public NearbyDrivers filterStale(NearbyDrivers nearbyDrivers, long cutoffTime) {
+        if (nearbyDrivers.size() == 0) {
+            return nearbyDrivers;
+        }
+        Object[] members = new Object[nearbyDrivers.size()];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = Long.toString(nearbyDrivers.driverId(i));
+        }
+        List<Double> lastSeenList = redisTemplate.opsForZSet().score(RedisConstant.DRIVER_GEO_LAST_SEEN, members);
+        if (lastSeenList == null) {
+            return nearbyDrivers;
+        }
+        NearbyDrivers result = new NearbyDrivers(nearbyDrivers.size());
+        for (int i = 0; i < nearbyDrivers.size(); i++) {
+            Double lastSeen = lastSeenList.get(i);
+            if (lastSeen == null || lastSeen >= cutoffTime) {
+                result.add(nearbyDrivers.driverId(i), nearbyDrivers.distance(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * GEORADIUS搜索半径范围内的司机，结果按距离升序
+     * 只查询与搜索圆外接矩形相交的分片，多个分片的查询放在同一个pipeline中
+     *
+     * @param radiusKm 搜索半径，单位：公里
+     */
+    public NearbyDrivers searchRadius(double latitude, double longitude, double radiusKm) {
+        List<String> keys = driverLocationProperties.getShardEnabled()
+                ? shardKeysIntersecting(latitude, longitude, radiusKm)
+                : List.of(RedisConstant.DRIVER_GEO_LOCATION);
+
+        Circle circle = new Circle(new Point(longitude, latitude), new Distance(radiusKm, RedisGeoCommands.DistanceUnit.KILOMETERS));
+        RedisGeoCommands.GeoRadiusCommandArgs args = RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs()
+                .includeDistance()
+                .sortAscending();
+        RedisSerializer keySerializer = redisTemplate.getKeySerializer();
+        RedisSerializer valueSerializer = redisTemplate.getValueSerializer();
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) (RedisConnection connection) -> {
+            for (String key : keys) {
+                connection.geoCommands().geoRadius(keySerializer.serialize(key), circle, args);
+            }
+            return null;
+        });
+
+        NearbyDrivers nearbyDrivers = new NearbyDrivers(64);
+        for (Object result : results) {
+            if (!(result instanceof GeoResults)) {
+                continue;
+            }
+            for (GeoResult<RedisGeoCommands.GeoLocation<Object>> item : ((GeoResults<RedisGeoCommands.GeoLocation<Object>>) result).getContent()) {
+                Object name = item.getContent().getName();
+                Object member = name instanceof byte[] ? valueSerializer.deserialize((byte[]) name) : name;
+                nearbyDrivers.add(Long.parseLong(member.toString()), item.getDistance().getValue());
+            }
+        }
+        // 多个分片的结果各自有序，合并后重新排序
+        if (keys.size() > 1) {
+            nearbyDrivers.sort();
+        }
+        return nearbyDrivers;
+    }
+
+    /**
+     * 当前所有存放司机位置的GEO集合，供全量同步使用
+     */
+    public List<String> allKeys() {
+        List<String> keys = new ArrayList<>();
+        if (driverLocationProperties.getShardEnabled()) {
+            Set<Object> shards = redisTemplate.opsForSet().members(RedisConstant.DRIVER_GEO_SHARD_SET);
+            if (shards != null) {
+                for (Object shard : shards) {
+                    keys.add(shardKey(shard.toString()));
+                }
+            }
+        } else {
+            keys.add(RedisConstant.DRIVER_GEO_LOCATION);
+        }
+        return keys;
+    }
+
+    private void addMembers(RedisOperations operations, String key, Map<Long, double[]> locations, int batchSize) {
+        Map<Object, Point> members = new HashMap<>(Math.min(locations.size(), batchSize) * 2);
+        for (Map.Entry<Long, double[]> entry : locations.entrySet()) {
+            double[] location = entry.getValue();
+            members.put(entry.getKey().toString(), new Point(location[1], location[0]));
+            if (members.size() == batchSize) {
+                operations.opsForGeo().add(key, members);
+                members = new HashMap<>(batchSize * 2);
+            }
+        }
+        if (!members.isEmpty()) {
+            operations.opsForGeo().add(key, members);
+        }
+    }
+
+    /**
+     * 从分片登记中移除已没有司机的分片（一个pipeline读取ZCARD，再一次SREM）
+     * 只影响全量同步遍历的分片，失败时只记录日志，下次删除时再清理
+     */
+    private void pruneEmptyShards(Collection<String> shards) {
+        if (shards.isEmpty()) {
+            return;
+        }
+        try {
+            doPruneEmptyShards(shards);
+        } catch (Exception e) {
+            log.warn("清理空分片登记失败", e);
+        }
+    }
+
+    private void doPruneEmptyShards(Collection<String> shards) {
+        List<String> shardList = new ArrayList<>(shards);
+        List<Object> sizes = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (String shard : shardList) {
+                    operations.opsForZSet().zCard(shardKey(shard));
+                }
+                return null;
+            }
+        });
+        List<Object> emptyShards = new ArrayList<>();
+        for (int i = 0; i < shardList.size(); i++) {
+            Object size = sizes.get(i);
+            if (size instanceof Long && (Long) size == 0) {
+                emptyShards.add(shardList.get(i));
+            }
+        }
+        if (!emptyShards.isEmpty()) {
+            redisTemplate.opsForSet().remove(RedisConstant.DRIVER_GEO_SHARD_SET, emptyShards.toArray());
+        }
+    }
+
+    /**
+     * 本节点标识，变更消息中携带
+     */
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    private void publishChange(byte[] message) {
+        if (!driverLocationProperties.getGeoIndexEnabled()) {
+            return;
+        }
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(CHANGE_CHANNEL, message));
+        } catch (Exception e) {
+            log.warn("发布司机位置变更失败", e);
+        }
+    }
+
+    // 记录最后上报时间
+    private void touchLastSeen(RedisOperations operations, Set<Long> driverIds, long now) {
+        Set<ZSetOperations.TypedTuple<Object>> tuples = new HashSet<>(driverIds.size() * 2);
+        for (Long driverId : driverIds) {
+            tuples.add(ZSetOperations.TypedTuple.of(driverId.toString(), (double) now));
+        }
+        operations.opsForZSet().add(RedisConstant.DRIVER_GEO_LAST_SEEN, tuples);
+    }
+
+    // 与搜索圆外接矩形相交的分片
+    private List<String> shardKeysIntersecting(double latitude, double longitude, double radiusKm) {
+        double shardSize = driverLocationProperties.getShardSizeDegree();
+        double latDelta = radiusKm / KM_PER_DEGREE;
+        double lngDelta = radiusKm / (KM_PER_DEGREE * Math.max(Math.cos(Math.toRadians(latitude)), 0.01));
+        int minLat = (int) Math.floor((latitude - latDelta) / shardSize);
+        int maxLat = (int) Math.floor((latitude + latDelta) / shardSize);
+        int minLng = (int) Math.floor((longitude - lngDelta) / shardSize);
+        int maxLng = (int) Math.floor((longitude + lngDelta) / shardSize);
+        List<String> keys = new ArrayList<>();
+        for (int x = minLat; x <= maxLat; x++) {
+            for (int y = minLng; y <= maxLng; y++) {
+                keys.add(shardKey(x + ":" + y));
+            }
+        }
+        return keys;
+    }
+
+    private String shardOf(double latitude, double longitude) {
+        double shardSize = driverLocationProperties.getShardSizeDegree();
+        return (int) Math.floor(latitude / shardSize) + ":" + (int) Math.floor(longitude / shardSize);
+    }
+
+    private static String shardKey(String shard) {
+        return RedisConstant.DRIVER_GEO_LOCATION_SHARD + shard;
+    }
+}
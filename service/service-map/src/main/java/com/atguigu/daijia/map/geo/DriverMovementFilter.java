@@ -0,0 +1,113 @@
+package com.atguigu.daijia.map.geo;
+
+import com.atguigu.daijia.common.util.LocationUtil;
+import com.atguigu.daijia.map.config.DriverLocationProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 司机静止位置过滤
+ * <p>
+ * 大部分位置上报来自停车等单的司机，坐标几乎不变。这里记录每个司机最后一次写入的位置和时间，
+ * 位移小于阈值且距上次写入未超过心跳间隔的上报直接忽略，使写入量与实际移动量成正比，而不是与在线司机数成正比。
+ * 最后位置保存在按槽位访问的基本类型数组中，司机id -> 槽位 使用 LongIntHashMap
+ */
+@Component
+public class DriverMovementFilter {
+
+    private static final int NO_SLOT = -1;
+
+    private final double minMoveMeters;
+
+    private final long heartbeatMillis;
+
+    // 司机id -> 槽位
+    private final LongIntHashMap slotIndex = new LongIntHashMap(1024);
+
+    // 槽位数据：最后写入的纬度、经度、时间
+    private double[] latitudes = new double[1024];
+    private double[] longitudes = new double[1024];
+    private long[] acceptTimes = new long[1024];
+    private int slotCount;
+
+    // 空闲槽位栈
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+
+    private final LongAdder acceptedCount = new LongAdder();
+
+    private final LongAdder suppressedCount = new LongAdder();
+
+    @Autowired
+    public DriverMovementFilter(DriverLocationProperties driverLocationProperties) {
+        this.minMoveMeters = driverLocationProperties.getMinMoveMeters();
+        this.heartbeatMillis = driverLocationProperties.getHeartbeatSeconds() * 1000;
+    }
+
+    /**
+     * 判断本次上报是否需要写入，需要写入时同时记录为最后位置
+     *
+     * @return true：需要写入；false：位移过小且未到心跳间隔，忽略
+     */
+    public boolean accept(long driverId, double latitude, double longitude) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            int slot = slotIndex.get(driverId, NO_SLOT);
+            if (slot == NO_SLOT) {
+                slot = allocateSlot();
+                slotIndex.put(driverId, slot);
+            } else if (now - acceptTimes[slot] < heartbeatMillis
+                    && LocationUtil.getDistance(latitudes[slot], longitudes[slot], latitude, longitude) < minMoveMeters) {
+                suppressedCount.increment();
+                return false;
+            }
+            latitudes[slot] = latitude;
+            longitudes[slot] = longitude;
+            acceptTimes[slot] = now;
+        }
+        acceptedCount.increment();
+        return true;
+    }
+
+    /**
+     * 清除司机的最后位置（停止接单时调用），重新开启接单后的第一次上报一定写入
+     */
+    public synchronized void remove(long driverId) {
+        int slot = slotIndex.remove(driverId, NO_SLOT);
+        if (slot == NO_SLOT) {
+            return;
+        }
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount << 1);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.sum();
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount.sum();
+    }
+
+    public synchronized int size() {
+        return slotIndex.size();
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == latitudes.length) {
+            int capacity = slotCount << 1;
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            acceptTimes = Arrays.copyOf(acceptTimes, capacity);
+        }
+        return slotCount++;
+    }
+}
@@ -0,0 +1,392 @@
+package com.atguigu.daijia.map.geo;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 司机状态堆外存储
+ * <p>
+ * 每个司机一条定长记录（位置、本地更新时间、最后上报时间、所在网格、接单设置及其版本号），
+ * 记录按槽位保存在分页分配的直接内存 ByteBuffer 中，司机id -> 槽位 使用 LongIntHashMap。
+ * 百万级司机时堆上只有索引的两个基本类型数组，不产生每个司机的Java对象，GC不需要扫描记录数据；
+ * 附近司机搜索、失联过滤/清理和接单设置过滤都直接按槽位读取记录，不分配对象。
+ * 所有读写由同一把读写锁保护，本包内的 DriverGeoIndex 在持有该锁时直接按槽位访问
+ */
+@Component
+public class DriverStateStore {
+
+    static final int NO_SLOT = -1;
+
+    // 记录字段偏移量
+    private static final int DRIVER_ID = 0;
+    private static final int LATITUDE = 8;
+    private static final int LONGITUDE = 16;
+    private static final int UPDATE_TIME = 24;
+    private static final int LAST_SEEN = 32;
+    private static final int CELL_KEY = 40;
+    private static final int CELL_POSITION = 48;
+    private static final int FLAGS = 52;
+    private static final int ACCEPT_DISTANCE = 56;
+    private static final int ORDER_DISTANCE = 64;
+    private static final int SET_VERSION = 72;
+    private static final int RECORD_SIZE = 80;
+
+    // 记录标志位
+    private static final int HAS_LOCATION = 1;
+    private static final int HAS_DRIVER_SET = 1 << 1;
+    private static final int SERVICE_STATUS = 1 << 2;
+    private static final int AUTO_ACCEPT = 1 << 3;
+
+    // 每页记录数，按页分配直接内存，扩容时不需要复制已有记录
+    private static final int PAGE_SHIFT = 14;
+    private static final int PAGE_RECORDS = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_RECORDS - 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 司机id -> 槽位
+    private final LongIntHashMap slotIndex = new LongIntHashMap(1024);
+
+    private ByteBuffer[] pages = new ByteBuffer[8];
+    private int slotCount;
+
+    // 空闲槽位栈
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+
+    // 有位置的司机数
+    private int locationCount;
+
+    ReentrantReadWriteLock lock() {
+        return lock;
+    }
+
+    // ---------- 以下方法由调用方持有锁 ----------
+
+    int slotOf(long driverId) {
+        return slotIndex.get(driverId, NO_SLOT);
+    }
+
+    /**
+     * 获取司机槽位，不存在时分配一条空记录
+     */
+    int slotOrAllocate(long driverId) {
+        int slot = slotIndex.get(driverId, NO_SLOT);
+        if (slot != NO_SLOT) {
+            return slot;
+        }
+        slot = allocateSlot();
+        ByteBuffer page = page(slot);
+        int offset = offset(slot);
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            page.putLong(offset + i, 0);
+        }
+        page.putLong(offset + DRIVER_ID, driverId);
+        slotIndex.put(driverId, slot);
+        return slot;
+    }
+
+    /**
+     * 已使用过的最大槽位数（遍历记录时的上界，空闲槽位的司机id为0）
+     */
+    int slotCount() {
+        return slotCount;
+    }
+
+    long driverId(int slot) {
+        return page(slot).getLong(offset(slot) + DRIVER_ID);
+    }
+
+    boolean hasLocation(int slot) {
+        return (flags(slot) & HAS_LOCATION) != 0;
+    }
+
+    double latitude(int slot) {
+        return page(slot).getDouble(offset(slot) + LATITUDE);
+    }
+
+    double longitude(int slot) {
+        return page(slot).getDouble(offset(slot) + LONGITUDE);
+    }
+
+    long updateTime(int slot) {
+        return page(slot).getLong(offset(slot) + UPDATE_TIME);
+    }
+
+    long lastSeen(int slot) {
+        return page(slot).getLong(offset(slot) + LAST_SEEN);
+    }
+
+    long cellKey(int slot) {
+        return page(slot).getLong(offset(slot) + CELL_KEY);
+    }
+
+    int cellPosition(int slot) {
+        return page(slot).getInt(offset(slot) + CELL_POSITION);
+    }
+
+    void setCellPosition(int slot, int cellPosition) {
+        page(slot).putInt(offset(slot) + CELL_POSITION, cellPosition);
+    }
+
+    /**
+     * 写入位置
+     *
+     * @param lastSeen 最后上报时间，小于等于0时不修改
+     */
+    void setLocation(int slot, double latitude, double longitude, long cellKey, long updateTime, long lastSeen) {
+        ByteBuffer page = page(slot);
+        int offset = offset(slot);
+        page.putDouble(offset + LATITUDE, latitude);
+        page.putDouble(offset + LONGITUDE, longitude);
+        page.putLong(offset + CELL_KEY, cellKey);
+        page.putLong(offset + UPDATE_TIME, updateTime);
+        if (lastSeen > 0) {
+            page.putLong(offset + LAST_SEEN, lastSeen);
+        }
+        int flags = page.getInt(offset + FLAGS);
+        if ((flags & HAS_LOCATION) == 0) {
+            page.putInt(offset + FLAGS, flags | HAS_LOCATION);
+            locationCount++;
+        }
+    }
+
+    /**
+     * 清除位置，没有接单设置时同时释放记录
+     */
+    void clearLocation(int slot) {
+        ByteBuffer page = page(slot);
+        int offset = offset(slot);
+        int flags = page.getInt(offset + FLAGS);
+        if ((flags & HAS_LOCATION) == 0) {
+            return;
+        }
+        locationCount--;
+        flags &= ~HAS_LOCATION;
+        page.putInt(offset + FLAGS, flags);
+        page.putLong(offset + LAST_SEEN, 0);
+        if ((flags & HAS_DRIVER_SET) == 0) {
+            free(slot);
+        }
+    }
+
+    int locationCount() {
+        return locationCount;
+    }
+
+    // ---------- 以下方法自行加锁，供其他包使用 ----------
+
+    /**
+     * 过滤掉最后上报时间早于截止时间的司机（原地修改，不分配对象）
+     * 没有最后上报时间的司机视为正常
+     */
+    public void filterStale(NearbyDrivers nearbyDrivers, long cutoffTime) {
+        lock.readLock().lock();
+        try {
+            int size = 0;
+            for (int i = 0; i < nearbyDrivers.size(); i++) {
+                int slot = slotIndex.get(nearbyDrivers.driverId(i), NO_SLOT);
+                long lastSeen = slot == NO_SLOT ? 0 : page(slot).getLong(offset(slot) + LAST_SEEN);
+                if (lastSeen == 0 || lastSeen >= cutoffTime) {
+                    nearbyDrivers.set(size++, nearbyDrivers.driverId(i), nearbyDrivers.distance(i));
+                }
+            }
+            nearbyDrivers.truncate(size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 遍历记录，找出最后上报时间早于截止时间的司机
+     *
+     * @param driverIds 输出：司机id
+     * @return 找到的司机数，最多 driverIds.length 个
+     */
+    public int findStale(long cutoffTime, long[] driverIds) {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (int slot = 0; slot < slotCount && count < driverIds.length; slot++) {
+                ByteBuffer page = page(slot);
+                int offset = offset(slot);
+                if ((page.getInt(offset + FLAGS) & HAS_LOCATION) == 0) {
+                    continue;
+                }
+                long lastSeen = page.getLong(offset + LAST_SEEN);
+                if (lastSeen != 0 && lastSeen < cutoffTime) {
+                    driverIds[count++] = page.getLong(offset + DRIVER_ID);
+                }
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 缓存的接单设置版本号
+     *
+     * @return 没有缓存接单设置时返回-1
+     */
+    public long getDriverSetVersion(long driverId) {
+        lock.readLock().lock();
+        try {
+            int slot = slotIndex.get(driverId, NO_SLOT);
+            if (slot == NO_SLOT || (flags(slot) & HAS_DRIVER_SET) == 0) {
+                return -1;
+            }
+            return page(slot).getLong(offset(slot) + SET_VERSION);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写入接单设置
+     *
+     * @param acceptDistance 接单里程，单位：公里，0表示不限制
+     * @param orderDistance  订单里程，单位：公里，0表示不限制
+     */
+    public void putDriverSet(long driverId, long version, boolean serviceStatus, boolean autoAccept, double acceptDistance, double orderDistance) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotOrAllocate(driverId);
+            ByteBuffer page = page(slot);
+            int offset = offset(slot);
+            int flags = page.getInt(offset + FLAGS) | HAS_DRIVER_SET;
+            flags = serviceStatus ? flags | SERVICE_STATUS : flags & ~SERVICE_STATUS;
+            flags = autoAccept ? flags | AUTO_ACCEPT : flags & ~AUTO_ACCEPT;
+            page.putInt(offset + FLAGS, flags);
+            page.putLong(offset + SET_VERSION, version);
+            page.putDouble(offset + ACCEPT_DISTANCE, acceptDistance);
+            page.putDouble(offset + ORDER_DISTANCE, orderDistance);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 读取接单设置
+     *
+     * @param distances 输出：{接单里程, 订单里程}
+     * @return 没有缓存接单设置时返回-1，否则返回标志位：1：开启接单；2：自动接单
+     */
+    public int getDriverSet(long driverId, double[] distances) {
+        lock.readLock().lock();
+        try {
+            int slot = slotIndex.get(driverId, NO_SLOT);
+            if (slot == NO_SLOT) {
+                return -1;
+            }
+            int flags = flags(slot);
+            if ((flags & HAS_DRIVER_SET) == 0) {
+                return -1;
+            }
+            distances[0] = page(slot).getDouble(offset(slot) + ACCEPT_DISTANCE);
+            distances[1] = page(slot).getDouble(offset(slot) + ORDER_DISTANCE);
+            return ((flags & SERVICE_STATUS) != 0 ? 1 : 0) | ((flags & AUTO_ACCEPT) != 0 ? 2 : 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按接单设置过滤附近司机（原地修改，不分配对象）
+     * 没有接单设置的司机、超出司机接单里程的司机、订单里程超出司机设置的司机被过滤，0表示不限制
+     *
+     * @param mileageDistance 订单里程，单位：公里
+     */
+    public void filterByDriverSet(NearbyDrivers nearbyDrivers, double mileageDistance) {
+        lock.readLock().lock();
+        try {
+            int size = 0;
+            for (int i = 0; i < nearbyDrivers.size(); i++) {
+                int slot = slotIndex.get(nearbyDrivers.driverId(i), NO_SLOT);
+                if (slot == NO_SLOT || (flags(slot) & HAS_DRIVER_SET) == 0) {
+                    continue;
+                }
+                ByteBuffer page = page(slot);
+                int offset = offset(slot);
+                double acceptDistance = page.getDouble(offset + ACCEPT_DISTANCE);
+                if (acceptDistance != 0 && acceptDistance < nearbyDrivers.distance(i)) {
+                    continue;
+                }
+                double orderDistance = page.getDouble(offset + ORDER_DISTANCE);
+                if (orderDistance != 0 && orderDistance < mileageDistance) {
+                    continue;
+                }
+                nearbyDrivers.set(size++, nearbyDrivers.driverId(i), nearbyDrivers.distance(i));
+            }
+            nearbyDrivers.truncate(size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已分配的直接内存，单位：字节
+     */
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (ByteBuffer page : pages) {
+                if (page != null) {
+                    bytes += page.capacity();
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int flags(int slot) {
+        return page(slot).getInt(offset(slot) + FLAGS);
+    }
+
+    private ByteBuffer page(int slot) {
+        return pages[slot >>> PAGE_SHIFT];
+    }
+
+    private static int offset(int slot) {
+        return (slot & PAGE_MASK) * RECORD_SIZE;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        int pageIndex = slotCount >>> PAGE_SHIFT;
+        if (pageIndex == pages.length) {
+            pages = Arrays.copyOf(pages, pages.length << 1);
+        }
+        if (pages[pageIndex] == null) {
+            pages[pageIndex] = ByteBuffer.allocateDirect(PAGE_RECORDS * RECORD_SIZE).order(ByteOrder.nativeOrder());
+        }
+        return slotCount++;
+    }
+
+    private void free(int slot) {
+        slotIndex.remove(driverId(slot), NO_SLOT);
+        page(slot).putLong(offset(slot) + DRIVER_ID, 0);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount << 1);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+}
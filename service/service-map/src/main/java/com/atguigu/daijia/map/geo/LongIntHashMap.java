@@ -0,0 +1,126 @@
+package com.atguigu.daijia.map.geo;
+
+import java.util.Arrays;
+
+/**
+ * long -> int 开放寻址哈希表（线性探测）
+ * 键和值都保存在基本类型数组中，避免Long/Integer装箱，用于 司机id -> 槽位 的映射
+ * 非线程安全，由调用方加锁
+ */
+public class LongIntHashMap {
+
+    // 空槽标记，司机id不会出现该值
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+        mask = capacity - 1;
+        // 负载因子0.5，保证探测链足够短
+        resizeThreshold = capacity >> 1;
+    }
+
+    private int indexOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * 获取值，不存在时返回 missingValue
+     */
+    public int get(long key, int missingValue) {
+        int i = indexOf(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public void put(long key, int value) {
+        int i = indexOf(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * 删除键，返回原值；不存在时返回 missingValue
+     */
+    public int remove(long key, int missingValue) {
+        int i = indexOf(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                int old = values[i];
+                shiftBack(i);
+                size--;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    // 线性探测的删除：把后续冲突元素前移，避免使用墓碑
+    private void shiftBack(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (keys[i] == EMPTY) {
+                break;
+            }
+            int home = indexOf(keys[i]);
+            // home 不在 (hole, i] 区间内时，元素可以移动到 hole
+            if (hole <= i ? (home <= hole || home > i) : (home <= hole && home > i)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+}
@@ -0,0 +1,115 @@
+package com.atguigu.daijia.map.geo;
+
+import java.util.Arrays;
+
+/**
+ * 附近司机查询结果
+ * 使用并行的基本类型数组保存司机id与距离（公里），按距离升序排列
+ */
+public class NearbyDrivers {
+
+    private long[] driverIds;
+    private double[] distances;
+    private int size;
+
+    public NearbyDrivers(int capacity) {
+        driverIds = new long[Math.max(capacity, 8)];
+        distances = new double[driverIds.length];
+    }
+
+    public void add(long driverId, double distanceKm) {
+        if (size == driverIds.length) {
+            driverIds = Arrays.copyOf(driverIds, size << 1);
+            distances = Arrays.copyOf(distances, size << 1);
+        }
+        driverIds[size] = driverId;
+        distances[size] = distanceKm;
+        size++;
+    }
+
+    /**
+     * 覆盖第 i 个位置（原地过滤时使用，i 不超过当前大小）
+     */
+    void set(int i, long driverId, double distanceKm) {
+        driverIds[i] = driverId;
+        distances[i] = distanceKm;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * 截断到前 n 个
+     */
+    void truncate(int n) {
+        if (n < size) {
+            size = n;
+        }
+    }
+
+    /**
+     * 按距离升序排序（原地快速排序，同时交换司机id）
+     */
+    public void sort() {
+        quickSort(0, size - 1);
+    }
+
+    private void quickSort(int lo, int hi) {
+        while (lo < hi) {
+            if (hi - lo < 16) {
+                insertionSort(lo, hi);
+                return;
+            }
+            double pivot = distances[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (distances[i] < pivot) i++;
+                while (distances[j] > pivot) j--;
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // 先递归较短的一侧，控制栈深度
+            if (j - lo < hi - i) {
+                quickSort(lo, j);
+                lo = i;
+            } else {
+                quickSort(i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    private void insertionSort(int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && distances[j - 1] > distances[j]; j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    private void swap(int a, int b) {
+        long id = driverIds[a];
+        driverIds[a] = driverIds[b];
+        driverIds[b] = id;
+        double d = distances[a];
+        distances[a] = distances[b];
+        distances[b] = d;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long driverId(int i) {
+        return driverIds[i];
+    }
+
+    /**
+     * 第 i 个司机的距离，单位：公里
+     */
+    public double distance(int i) {
+        return distances[i];
+    }
+}
@@ -0,0 +1,40 @@
+package com.atguigu.daijia.map.geo;
+
+/**
+ * Redis GEO 分值解码
+ * Redis把经纬度编码为52位交错geohash作为有序集合的score（偶数位为纬度，奇数位为经度，各26位），
+ * 直接解码score可以用一次ZRANGE WITHSCORES拿到全部司机坐标，不必再调用GEOPOS
+ */
+public class RedisGeoHash {
+
+    private static final int STEP = 26;
+    private static final double LAT_MIN = -85.05112878;
+    private static final double LAT_MAX = 85.05112878;
+    private static final double LNG_MIN = -180;
+    private static final double LNG_MAX = 180;
+
+    /**
+     * 解码纬度（网格中心点）
+     */
+    public static double decodeLatitude(double score) {
+        long bits = deinterleave((long) score);
+        return LAT_MIN + (bits + 0.5) / (1L << STEP) * (LAT_MAX - LAT_MIN);
+    }
+
+    /**
+     * 解码经度（网格中心点）
+     */
+    public static double decodeLongitude(double score) {
+        long bits = deinterleave((long) score >>> 1);
+        return LNG_MIN + (bits + 0.5) / (1L << STEP) * (LNG_MAX - LNG_MIN);
+    }
+
+    // 取出偶数位
+    private static long deinterleave(long hash) {
+        long result = 0;
+        for (int i = 0; i < STEP; i++) {
+            result |= ((hash >>> (i << 1)) & 1L) << i;
+        }
+        return result;
+    }
+}
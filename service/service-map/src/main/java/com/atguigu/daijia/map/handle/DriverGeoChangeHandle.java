@@ -0,0 +1,57 @@
+package com.atguigu.daijia.map.handle;
+
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.map.config.DriverLocationProperties;
+import com.atguigu.daijia.map.geo.DriverGeoChange;
+import com.atguigu.daijia.map.geo.DriverGeoIndex;
+import com.atguigu.daijia.map.geo.DriverGeoStore;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+/**
+ * 司机位置变更订阅
+ * 订阅其他节点发布的位置更新和删除，增量应用到本地网格索引，每条消息的开销只与变更的司机数有关；
+ * 订阅断开期间丢失的消息由 DriverGeoIndexSyncHandle 的定期全量同步纠正
+ */
+@Slf4j
+@Component
+public class DriverGeoChangeHandle implements MessageListener {
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private DriverGeoIndex driverGeoIndex;
+
+    @Autowired
+    private DriverGeoStore driverGeoStore;
+
+    @Autowired
+    private DriverLocationProperties driverLocationProperties;
+
+    @PostConstruct
+    public void init() {
+        if (driverLocationProperties.getGeoIndexEnabled()) {
+            redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(RedisConstant.DRIVER_GEO_CHANGE_CHANNEL));
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            DriverGeoChange change = DriverGeoChange.decode(message.getBody());
+            // 本节点的变更在写入时已更新本地索引
+            if (change.nodeId() != driverGeoStore.getNodeId()) {
+                driverGeoIndex.apply(change);
+            }
+        } catch (Exception e) {
+            log.error("应用司机位置变更失败", e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.atguigu.daijia.map.handle;
+
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.map.config.DriverLocationProperties;
+import com.atguigu.daijia.map.geo.DriverGeoIndex;
+import com.atguigu.daijia.map.geo.DriverGeoStore;
+import com.atguigu.daijia.map.geo.LongIntHashMap;
+import com.atguigu.daijia.map.geo.RedisGeoHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * 本地司机网格索引同步
+ * 启动时以及之后每隔 sync-interval-ms（默认5分钟）从Redis的各个司机GEO分片读取全量快照（ZRANGE WITHSCORES分批读取，score直接解码为经纬度），
+ * 以及各司机的最后上报时间。其他节点写入的位置平时由 DriverGeoChangeHandle 订阅变更消息增量应用，
+ * 全量同步只用于首次加载和纠正订阅断开期间丢失的变更，读取量为全部司机，间隔不宜过短
+ */
+@Slf4j
+@Component
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class DriverGeoIndexSyncHandle {
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    @Autowired
+    private DriverGeoIndex driverGeoIndex;
+
+    @Autowired
+    private DriverGeoStore driverGeoStore;
+
+    @Autowired
+    private DriverLocationProperties driverLocationProperties;
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${map.driver-location.sync-interval-ms:300000}")
+    public void sync() {
+        if (!driverLocationProperties.getGeoIndexEnabled()) {
+            return;
+        }
+        try {
+            long snapshotTime = System.currentTimeMillis();
+            int batchSize = driverLocationProperties.getSyncBatchSize();
+            long[] ids = new long[batchSize];
+            double[] lats = new double[batchSize];
+            double[] lngs = new double[batchSize];
+            int count = 0;
+            for (String key : driverGeoStore.allKeys()) {
+                for (long start = 0; ; start += batchSize) {
+                    Set<ZSetOperations.TypedTuple<Object>> tuples = redisTemplate.opsForZSet()
+                            .rangeWithScores(key, start, start + batchSize - 1);
+                    if (tuples == null || tuples.isEmpty()) {
+                        break;
+                    }
+                    if (count + tuples.size() > ids.length) {
+                        int capacity = Math.max(ids.length << 1, count + tuples.size());
+                        ids = Arrays.copyOf(ids, capacity);
+                        lats = Arrays.copyOf(lats, capacity);
+                        lngs = Arrays.copyOf(lngs, capacity);
+                    }
+                    for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+                        ids[count] = Long.parseLong(tuple.getValue().toString());
+                        lats[count] = RedisGeoHash.decodeLatitude(tuple.getScore());
+                        lngs[count] = RedisGeoHash.decodeLongitude(tuple.getScore());
+                        count++;
+                    }
+                    if (tuples.size() < batchSize) {
+                        break;
+                    }
+                }
+            }
+            // 读取最后上报时间，用于本地过滤和清理失联司机
+            long[] lastSeens = new long[count];
+            LongIntHashMap positions = new LongIntHashMap(count);
+            for (int i = 0; i < count; i++) {
+                positions.put(ids[i], i);
+            }
+            for (long start = 0; ; start += batchSize) {
+                Set<ZSetOperations.TypedTuple<Object>> tuples = redisTemplate.opsForZSet()
+                        .rangeWithScores(RedisConstant.DRIVER_GEO_LAST_SEEN, start, start + batchSize - 1);
+                if (tuples == null || tuples.isEmpty()) {
+                    break;
+                }
+                for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+                    int position = positions.get(Long.parseLong(tuple.getValue().toString()), -1);
+                    if (position >= 0) {
+                        lastSeens[position] = tuple.getScore().longValue();
+                    }
+                }
+                if (tuples.size() < batchSize) {
+                    break;
+                }
+            }
+            driverGeoIndex.reload(snapshotTime, ids, lats, lngs, lastSeens, count);
+            log.debug("司机网格索引同步完成，司机数：{}，耗时：{}ms", count, System.currentTimeMillis() - snapshotTime);
+        } catch (Exception e) {
+            log.error("司机网格索引同步失败", e);
+        }
+    }
+}
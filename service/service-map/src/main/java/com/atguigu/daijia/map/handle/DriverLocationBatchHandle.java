@@ -0,0 +1,125 @@
+package com.atguigu.daijia.map.handle;
+
+import com.atguigu.daijia.map.cache.DriverServiceStatusCache;
+import com.atguigu.daijia.map.config.DriverLocationProperties;
+import com.atguigu.daijia.map.geo.DriverGeoIndex;
+import com.atguigu.daijia.map.geo.DriverGeoStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 司机位置批量写入
+ * <p>
+ * 位置上报先进入内存缓冲（同一司机只保留最新位置），由独立线程每隔几毫秒刷写一次：
+ * 所有待写司机按分片拼成多成员GEOADD，超过单批上限的拆成多条命令放在同一个pipeline中发送，
+ * 把每次上报一次Redis往返变成每个刷写周期一次往返。
+ * 写入前再次确认司机仍在接单，已停止接单的司机不会被写回；写入失败的位置放回缓冲，下一轮重试
+ */
+@Slf4j
+@Component
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class DriverLocationBatchHandle {
+
+    @Autowired
+    private DriverGeoStore driverGeoStore;
+
+    @Autowired
+    private DriverGeoIndex driverGeoIndex;
+
+    @Autowired
+    private DriverLocationProperties driverLocationProperties;
+
+    @Autowired
+    private DriverServiceStatusCache driverServiceStatusCache;
+
+    // 司机id -> 最新位置 {纬度, 经度}
+    private final Map<Long, double[]> pending = new ConcurrentHashMap<>();
+
+    // 是否已提交了提前刷写任务，避免缓冲满时重复提交
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "driver-location-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = driverLocationProperties.getIngestFlushIntervalMs();
+        executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+        // 停机前把剩余位置写入Redis
+        flush();
+    }
+
+    /**
+     * 加入缓冲，等待下一次刷写
+     */
+    public void add(Long driverId, double latitude, double longitude) {
+        pending.put(driverId, new double[]{latitude, longitude});
+        if (pending.size() >= driverLocationProperties.getIngestMaxPending() && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * 丢弃尚未刷写的位置（司机停止接单时，在标记停止接单之后、删除位置之前调用，避免删除后又被写回）
+     * 与刷写互斥：返回时正在进行的刷写已经结束，之后的刷写会跳过已停止接单的司机
+     */
+    public synchronized void discard(Long driverId) {
+        pending.remove(driverId);
+    }
+
+    private synchronized void flush() {
+        flushScheduled.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+        // 逐个取出，刷写期间新到的位置留给下一轮
+        Map<Long, double[]> locations = new HashMap<>(pending.size() * 2);
+        Iterator<Long> iterator = pending.keySet().iterator();
+        while (iterator.hasNext()) {
+            Long driverId = iterator.next();
+            double[] location = pending.remove(driverId);
+            if (location != null) {
+                locations.put(driverId, location);
+            }
+        }
+        try {
+            // 位置进入缓冲后司机可能已停止接单
+            locations.keySet().removeIf(driverId -> !driverServiceStatusCache.isInService(driverId));
+
+            // 按网格分片批量GEOADD，所有命令在同一个pipeline中发送
+            driverGeoStore.add(locations);
+
+            // 同步更新本地网格索引
+            for (Map.Entry<Long, double[]> entry : locations.entrySet()) {
+                driverGeoIndex.update(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+            log.debug("批量写入司机位置：{}个", locations.size());
+        } catch (Exception e) {
+            // 静止过滤已把这些位置记为已写入，放回缓冲由下一轮重试，期间新到的位置优先
+            locations.forEach(pending::putIfAbsent);
+            log.error("批量写入司机位置失败，{}个位置等待重试", locations.size(), e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.atguigu.daijia.map.handle;
+
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.map.config.DriverLocationProperties;
+import com.atguigu.daijia.map.geo.DriverGeoIndex;
+import com.atguigu.daijia.map.geo.DriverGeoStore;
+import com.atguigu.daijia.map.geo.DriverMovementFilter;
+import com.atguigu.daijia.map.geo.DriverStateStore;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 失联司机清理
+ * 司机App崩溃时不会调用 removeDriverLocation，位置会一直留在GEO集合中；
+ * 这里定期按最后上报时间（driver:geo:lastseen，本地索引可用时读取同步到堆外记录中的副本）找出超过失联时间的司机，分批从Redis和本地索引中删除，
+ * 删除前在Redis中用Lua脚本重新核对最后上报时间，期间重新上报的司机不会被删除；
+ * 多个实例通过分布式锁保证同一时间只有一个执行，每次最多处理固定批数，避免一次清理占用Redis过久
+ */
+@Slf4j
+@Component
+public class DriverLocationEvictHandle {
+
+    @Autowired
+    private DriverGeoStore driverGeoStore;
+
+    @Autowired
+    private DriverGeoIndex driverGeoIndex;
+
+    @Autowired
+    private DriverMovementFilter driverMovementFilter;
+
+    @Autowired
+    private DriverLocationProperties driverLocationProperties;
+
+    @Autowired
+    private DriverStateStore driverStateStore;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Scheduled(initialDelayString = "${map.driver-location.evict-interval-ms:10000}", fixedDelayString = "${map.driver-location.evict-interval-ms:10000}")
+    public void evict() {
+        RLock lock = redissonClient.getLock(RedisConstant.DRIVER_GEO_EVICT_LOCK);
+        try {
+            if (!lock.tryLock(0, 5, TimeUnit.MINUTES)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            long cutoffTime = System.currentTimeMillis() - driverLocationProperties.getStaleSeconds() * 1000;
+            int batchSize = driverLocationProperties.getEvictBatchSize();
+            boolean localCandidates = driverLocationProperties.getGeoIndexEnabled() && driverGeoIndex.isReady();
+            int total = 0;
+            for (int batch = 0; batch < driverLocationProperties.getEvictMaxBatches(); batch++) {
+                List<Long> driverIdList = findStale(localCandidates, cutoffTime, batchSize);
+                if (driverIdList.isEmpty()) {
+                    break;
+                }
+                List<Long> removedIdList = driverGeoStore.removeStale(driverIdList, cutoffTime);
+                for (Long driverId : removedIdList) {
+                    driverGeoIndex.remove(driverId);
+                    driverMovementFilter.remove(driverId);
+                }
+                total += removedIdList.size();
+                if (driverIdList.size() < batchSize) {
+                    break;
+                }
+                // 堆外副本要等下次同步才会更新，被核对保留的司机下一批仍会被找出，本次不再继续
+                if (localCandidates && removedIdList.size() < driverIdList.size()) {
+                    break;
+                }
+            }
+            if (total > 0) {
+                log.info("清理失联司机：{}个", total);
+            }
+        } catch (Exception e) {
+            log.error("清理失联司机失败", e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    // 本地索引可用时遍历堆外记录中的最后上报时间（与Redis定期同步，可能落后，只作为候选），否则ZRANGEBYSCORE查询Redis
+    private List<Long> findStale(boolean localCandidates, long cutoffTime, int batchSize) {
+        if (!localCandidates) {
+            return driverGeoStore.findStale(cutoffTime, batchSize);
+        }
+        long[] driverIds = new long[batchSize];
+        int count = driverStateStore.findStale(cutoffTime, driverIds);
+        List<Long> driverIdList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            driverIdList.add(driverIds[i]);
+        }
+        return driverIdList;
+    }
+}
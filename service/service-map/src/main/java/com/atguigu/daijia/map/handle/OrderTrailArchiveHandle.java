@@ -0,0 +1,82 @@
+package com.atguigu.daijia.map.handle;
+
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.map.config.TrailProperties;
+import com.atguigu.daijia.map.trail.OrderTrailArchiver;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单原始轨迹归档
+ * 定期找出最后一个位置点超过 archive-after-days 天的订单，把原始轨迹压缩写入归档集合并从热数据集合删除；
+ * 多个实例通过分布式锁保证同一时间只有一个执行，每次最多处理固定批数
+ */
+@Slf4j
+@Component
+public class OrderTrailArchiveHandle {
+
+    @Autowired
+    private OrderTrailArchiver orderTrailArchiver;
+
+    @Autowired
+    private TrailProperties trailProperties;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Scheduled(initialDelayString = "${map.trail.archive-interval-ms:3600000}", fixedDelayString = "${map.trail.archive-interval-ms:3600000}")
+    public void archive() {
+        if (!trailProperties.getArchiveEnabled()) {
+            return;
+        }
+        RLock lock = redissonClient.getLock(RedisConstant.ORDER_TRAIL_ARCHIVE_LOCK);
+        try {
+            if (!lock.tryLock(0, 30, TimeUnit.MINUTES)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            Date cutoffTime = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(trailProperties.getArchiveAfterDays()));
+            int batchSize = trailProperties.getArchiveBatchSize();
+            int total = 0;
+            // 按订单id分批遍历，跳过的订单（仍有近期位置点或归档失败）不会阻塞后面的订单
+            long afterOrderId = 0;
+            for (int batch = 0; batch < trailProperties.getArchiveMaxBatches(); batch++) {
+                List<Long> orderIdList = orderTrailArchiver.findOrderIds(cutoffTime, afterOrderId, batchSize);
+                for (Long orderId : orderIdList) {
+                    try {
+                        if (orderTrailArchiver.archive(orderId, cutoffTime)) {
+                            total++;
+                        }
+                    } catch (Exception e) {
+                        log.error("归档订单轨迹失败，订单：{}", orderId, e);
+                    }
+                    afterOrderId = orderId;
+                }
+                if (orderIdList.size() < batchSize) {
+                    break;
+                }
+            }
+            if (total > 0) {
+                log.info("归档订单轨迹：{}个", total);
+            }
+        } catch (Exception e) {
+            log.error("归档订单轨迹失败", e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.atguigu.daijia.map.repository;
+
+import com.atguigu.daijia.model.entity.map.OrderServiceLocationBucket;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OrderServiceLocationBucketRepository extends MongoRepository<OrderServiceLocationBucket, String> {
+    List<OrderServiceLocationBucket> findByOrderIdOrderByBucketTimeAsc(Long orderId);
+
+    OrderServiceLocationBucket findFirstByOrderIdOrderByBucketTimeDesc(Long orderId);
+}
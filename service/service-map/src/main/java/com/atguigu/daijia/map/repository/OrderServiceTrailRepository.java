@@ -0,0 +1,9 @@
+package com.atguigu.daijia.map.repository;
+
+import com.atguigu.daijia.model.entity.map.OrderServiceTrail;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OrderServiceTrailRepository extends MongoRepository<OrderServiceTrail, Long> {
+}
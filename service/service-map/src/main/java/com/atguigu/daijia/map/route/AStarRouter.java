@@ -0,0 +1,140 @@
+package com.atguigu.daijia.map.route;
+
+import com.atguigu.daijia.common.util.LocationUtil;
+
+import java.util.Arrays;
+
+/**
+ * 路网最短路径（A*，按行驶时间最短）
+ * <p>
+ * 启发函数为两点直线距离除以路网最高限速，不会高估剩余时间，结果与Dijkstra一致，但搜索的节点少得多。
+ * 搜索状态数组按节点数分配，每次查询重新分配，可并发调用。
+ * 另外提供从终点沿反向边的有界搜索，一次得到多个起点到同一终点的行驶时间
+ */
+public class AStarRouter {
+
+    private final RoadGraph graph;
+
+    public AStarRouter(RoadGraph graph) {
+        this.graph = graph;
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * 计算两个节点之间行驶时间最短的路径
+     *
+     * @return 路径，不可达时返回null
+     */
+    public RoutePath route(int source, int target) {
+        int nodeCount = graph.nodeCount();
+        double[] seconds = new double[nodeCount];
+        Arrays.fill(seconds, Double.POSITIVE_INFINITY);
+        double[] meters = new double[nodeCount];
+        int[] previous = new int[nodeCount];
+        boolean[] settled = new boolean[nodeCount];
+
+        double targetLatitude = graph.latitude(target);
+        double targetLongitude = graph.longitude(target);
+        double maxSpeed = graph.maxSpeed();
+
+        NodeHeap heap = new NodeHeap(64);
+        seconds[source] = 0;
+        previous[source] = -1;
+        heap.push(source, heuristic(source, targetLatitude, targetLongitude, maxSpeed));
+        while (!heap.isEmpty()) {
+            int node = heap.pop();
+            if (settled[node]) {
+                continue;
+            }
+            if (node == target) {
+                return buildPath(target, seconds[target], meters[target], previous);
+            }
+            settled[node] = true;
+            for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+                int next = graph.edgeTarget(edge);
+                if (settled[next]) {
+                    continue;
+                }
+                double nextSeconds = seconds[node] + graph.edgeSeconds(edge);
+                if (nextSeconds < seconds[next]) {
+                    seconds[next] = nextSeconds;
+                    meters[next] = meters[node] + graph.edgeMeters(edge);
+                    previous[next] = node;
+                    heap.push(next, nextSeconds + heuristic(next, targetLatitude, targetLongitude, maxSpeed));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 计算时间上限内所有节点到终点的最短行驶时间（反向Dijkstra）
+     *
+     * @param maxSeconds 时间上限，单位：秒
+     */
+    public TravelTimeField travelTimeTo(int target, double maxSeconds) {
+        int nodeCount = graph.nodeCount();
+        double[] seconds = new double[nodeCount];
+        Arrays.fill(seconds, Double.POSITIVE_INFINITY);
+        double[] meters = new double[nodeCount];
+        boolean[] settled = new boolean[nodeCount];
+
+        int[] reachedNodes = new int[64];
+        double[] reachedSeconds = new double[64];
+        double[] reachedMeters = new double[64];
+        int reachedCount = 0;
+
+        NodeHeap heap = new NodeHeap(64);
+        seconds[target] = 0;
+        heap.push(target, 0);
+        while (!heap.isEmpty()) {
+            int node = heap.pop();
+            if (settled[node]) {
+                continue;
+            }
+            settled[node] = true;
+            if (reachedCount == reachedNodes.length) {
+                reachedNodes = Arrays.copyOf(reachedNodes, reachedCount * 2);
+                reachedSeconds = Arrays.copyOf(reachedSeconds, reachedCount * 2);
+                reachedMeters = Arrays.copyOf(reachedMeters, reachedCount * 2);
+            }
+            reachedNodes[reachedCount] = node;
+            reachedSeconds[reachedCount] = seconds[node];
+            reachedMeters[reachedCount] = meters[node];
+            reachedCount++;
+            for (int edge = graph.reverseStart(node), end = graph.reverseEnd(node); edge < end; edge++) {
+                int previous = graph.reverseSource(edge);
+                if (settled[previous]) {
+                    continue;
+                }
+                double previousSeconds = seconds[node] + graph.reverseSeconds(edge);
+                if (previousSeconds <= maxSeconds && previousSeconds < seconds[previous]) {
+                    seconds[previous] = previousSeconds;
+                    meters[previous] = meters[node] + graph.reverseMeters(edge);
+                    heap.push(previous, previousSeconds);
+                }
+            }
+        }
+        return new TravelTimeField(reachedNodes, reachedSeconds, reachedMeters, reachedCount);
+    }
+
+    private double heuristic(int node, double targetLatitude, double targetLongitude, double maxSpeed) {
+        // 等距圆柱近似在短距离内略小于大圆距离，仍不高估
+        return LocationUtil.getDistanceFast(graph.latitude(node), graph.longitude(node), targetLatitude, targetLongitude) / maxSpeed * 0.99;
+    }
+
+    private RoutePath buildPath(int target, double seconds, double meters, int[] previous) {
+        int length = 0;
+        for (int node = target; node != -1; node = previous[node]) {
+            length++;
+        }
+        int[] nodes = new int[length];
+        for (int node = target, i = length - 1; node != -1; node = previous[node], i--) {
+            nodes[i] = node;
+        }
+        return new RoutePath(nodes, meters, seconds);
+    }
+}
@@ -0,0 +1,66 @@
+package com.atguigu.daijia.map.route;
+
+import java.util.Arrays;
+
+/**
+ * 节点最小堆（允许同一节点重复入堆，出堆时跳过已确定的节点）
+ */
+class NodeHeap {
+
+    private int[] nodes;
+    private double[] keys;
+    private int size;
+
+    NodeHeap(int capacity) {
+        nodes = new int[capacity];
+        keys = new double[capacity];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void push(int node, double key) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            nodes[i] = nodes[parent];
+            keys[i] = keys[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        keys[i] = key;
+    }
+
+    int pop() {
+        int top = nodes[0];
+        int lastNode = nodes[--size];
+        double lastKey = keys[size];
+        int i = 0;
+        while (true) {
+            int child = i * 2 + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (keys[child] >= lastKey) {
+                break;
+            }
+            nodes[i] = nodes[child];
+            keys[i] = keys[child];
+            i = child;
+        }
+        nodes[i] = lastNode;
+        keys[i] = lastKey;
+        return top;
+    }
+}
@@ -0,0 +1,309 @@
+package com.atguigu.daijia.map.route;
+
+import com.atguigu.daijia.common.util.LocationUtil;
+import com.atguigu.daijia.map.geo.LongIntHashMap;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 路网图（只读）
+ * <p>
+ * 从文本文件加载，每行一条记录，# 开头为注释：
+ * <pre>
+ * n 节点id 纬度 经度
+ * e 起点id 终点id 长度(米，0表示按坐标计算) 限速(公里/小时) [是否单行，1：单行，默认双向]
+ * </pre>
+ * 节点坐标和邻接表都保存在基本类型数组中（CSR格式：edgeStart[i]~edgeStart[i+1]为节点i的出边），
+ * 同时保存一份反向邻接表（节点i的入边），用于计算多个起点到同一终点的行驶时间；
+ * 另外按经纬度网格索引节点，用于把任意坐标吸附到最近的路网节点
+ */
+public class RoadGraph {
+
+    // 节点网格边长，单位：度
+    private static final double CELL_SIZE = 0.01;
+
+    // 每纬度对应的米数
+    private static final double METERS_PER_DEGREE = 111320;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    private final int[] edgeStart;
+    private final int[] edgeTarget;
+    private final double[] edgeMeters;
+    private final double[] edgeSeconds;
+
+    // 反向邻接表：reverseStart[i]~reverseStart[i+1]为节点i的入边
+    private final int[] reverseStart;
+    private final int[] reverseSource;
+    private final double[] reverseMeters;
+    private final double[] reverseSeconds;
+
+    // 最高限速，单位：米/秒（A*启发函数使用）
+    private final double maxSpeed;
+
+    // 网格编号 -> 网格内的节点下标
+    private final Map<Long, int[]> cells;
+
+    private RoadGraph(double[] latitudes, double[] longitudes, int[] from, int[] to,
+                      double[] meters, double[] seconds, int edgeCount, double maxSpeed) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        int nodeCount = latitudes.length;
+
+        // 按起点转为CSR格式
+        this.edgeStart = prefixSum(from, edgeCount, nodeCount);
+        this.edgeTarget = new int[edgeCount];
+        this.edgeMeters = new double[edgeCount];
+        this.edgeSeconds = new double[edgeCount];
+        int[] position = Arrays.copyOf(edgeStart, nodeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            int p = position[from[i]]++;
+            edgeTarget[p] = to[i];
+            edgeMeters[p] = meters[i];
+            edgeSeconds[p] = seconds[i];
+        }
+
+        // 按终点转为反向CSR格式
+        this.reverseStart = prefixSum(to, edgeCount, nodeCount);
+        this.reverseSource = new int[edgeCount];
+        this.reverseMeters = new double[edgeCount];
+        this.reverseSeconds = new double[edgeCount];
+        position = Arrays.copyOf(reverseStart, nodeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            int p = position[to[i]]++;
+            reverseSource[p] = from[i];
+            reverseMeters[p] = meters[i];
+            reverseSeconds[p] = seconds[i];
+        }
+
+        this.maxSpeed = maxSpeed;
+        this.cells = buildCells(latitudes, longitudes);
+    }
+
+    /**
+     * 读取路网文件
+     *
+     * @throws IllegalArgumentException 文件格式错误或边引用了不存在的节点
+     */
+    public static RoadGraph load(BufferedReader reader) throws IOException {
+        LongIntHashMap nodeIndex = new LongIntHashMap(1024);
+        double[] latitudes = new double[1024];
+        double[] longitudes = new double[1024];
+        int nodeCount = 0;
+
+        // 边先按读取顺序暂存，双向道路拆为两条有向边
+        int[] from = new int[1024];
+        int[] to = new int[1024];
+        double[] meters = new double[1024];
+        double[] seconds = new double[1024];
+        int edgeCount = 0;
+        double maxSpeed = 0;
+
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            try {
+                if ("n".equals(fields[0])) {
+                    if (nodeCount == latitudes.length) {
+                        latitudes = Arrays.copyOf(latitudes, nodeCount * 2);
+                        longitudes = Arrays.copyOf(longitudes, nodeCount * 2);
+                    }
+                    nodeIndex.put(Long.parseLong(fields[1]), nodeCount);
+                    latitudes[nodeCount] = Double.parseDouble(fields[2]);
+                    longitudes[nodeCount] = Double.parseDouble(fields[3]);
+                    nodeCount++;
+                } else if ("e".equals(fields[0])) {
+                    int a = nodeIndex.get(Long.parseLong(fields[1]), -1);
+                    int b = nodeIndex.get(Long.parseLong(fields[2]), -1);
+                    if (a < 0 || b < 0) {
+                        throw new IllegalArgumentException("路网文件第" + lineNumber + "行引用了不存在的节点");
+                    }
+                    double length = Double.parseDouble(fields[3]);
+                    if (length <= 0) {
+                        length = LocationUtil.getDistance(latitudes[a], longitudes[a], latitudes[b], longitudes[b]);
+                    }
+                    double speed = Double.parseDouble(fields[4]) / 3.6;
+                    boolean oneway = fields.length > 5 && "1".equals(fields[5]);
+                    maxSpeed = Math.max(maxSpeed, speed);
+                    if (edgeCount + 2 > from.length) {
+                        from = Arrays.copyOf(from, from.length * 2);
+                        to = Arrays.copyOf(to, to.length * 2);
+                        meters = Arrays.copyOf(meters, meters.length * 2);
+                        seconds = Arrays.copyOf(seconds, seconds.length * 2);
+                    }
+                    from[edgeCount] = a;
+                    to[edgeCount] = b;
+                    meters[edgeCount] = length;
+                    seconds[edgeCount] = length / speed;
+                    edgeCount++;
+                    if (!oneway) {
+                        from[edgeCount] = b;
+                        to[edgeCount] = a;
+                        meters[edgeCount] = length;
+                        seconds[edgeCount] = length / speed;
+                        edgeCount++;
+                    }
+                } else {
+                    throw new IllegalArgumentException("路网文件第" + lineNumber + "行类型错误：" + fields[0]);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("路网文件第" + lineNumber + "行格式错误", e);
+            }
+        }
+
+        return new RoadGraph(Arrays.copyOf(latitudes, nodeCount), Arrays.copyOf(longitudes, nodeCount),
+                from, to, meters, seconds, edgeCount, maxSpeed);
+    }
+
+    /**
+     * 距离坐标最近的节点
+     *
+     * @param maxMeters 最大吸附距离，单位：米
+     * @return 节点下标，范围内没有节点时返回-1
+     */
+    public int nearestNode(double latitude, double longitude, double maxMeters) {
+        int latCell = cell(latitude);
+        int lngCell = cell(longitude);
+        // 经度方向网格随纬度变窄，按较窄的边换算需要搜索的网格圈数
+        double cosLatitude = Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        double cellMeters = CELL_SIZE * METERS_PER_DEGREE * cosLatitude;
+        int rings = (int) Math.ceil(maxMeters / cellMeters);
+        int nearest = -1;
+        // 短距离内用平面近似比较距离平方，不做三角函数运算
+        double nearestSquare = maxMeters * maxMeters;
+        for (int ring = 0; ring <= rings; ring++) {
+            for (int i = latCell - ring; i <= latCell + ring; i++) {
+                boolean edgeRow = i == latCell - ring || i == latCell + ring;
+                // 只遍历第 ring 圈上的网格
+                int step = edgeRow ? 1 : Math.max(ring * 2, 1);
+                for (int j = lngCell - ring; j <= lngCell + ring; j += step) {
+                    int[] nodes = cells.get(cellKey(i, j));
+                    if (nodes == null) {
+                        continue;
+                    }
+                    for (int node : nodes) {
+                        double dy = (latitudes[node] - latitude) * METERS_PER_DEGREE;
+                        double dx = (longitudes[node] - longitude) * METERS_PER_DEGREE * cosLatitude;
+                        double square = dx * dx + dy * dy;
+                        if (square <= nearestSquare) {
+                            nearestSquare = square;
+                            nearest = node;
+                        }
+                    }
+                }
+            }
+            // 下一圈网格与坐标的距离至少为 ring 个网格宽度，已找到更近的节点时停止
+            double ringMeters = ring * cellMeters;
+            if (nearest >= 0 && nearestSquare <= ringMeters * ringMeters) {
+                break;
+            }
+        }
+        return nearest;
+    }
+
+    public int nodeCount() {
+        return latitudes.length;
+    }
+
+    public int edgeCount() {
+        return edgeTarget.length;
+    }
+
+    public double latitude(int node) {
+        return latitudes[node];
+    }
+
+    public double longitude(int node) {
+        return longitudes[node];
+    }
+
+    int edgeStart(int node) {
+        return edgeStart[node];
+    }
+
+    int edgeEnd(int node) {
+        return edgeStart[node + 1];
+    }
+
+    int edgeTarget(int edge) {
+        return edgeTarget[edge];
+    }
+
+    double edgeMeters(int edge) {
+        return edgeMeters[edge];
+    }
+
+    double edgeSeconds(int edge) {
+        return edgeSeconds[edge];
+    }
+
+    int reverseStart(int node) {
+        return reverseStart[node];
+    }
+
+    int reverseEnd(int node) {
+        return reverseStart[node + 1];
+    }
+
+    int reverseSource(int edge) {
+        return reverseSource[edge];
+    }
+
+    double reverseMeters(int edge) {
+        return reverseMeters[edge];
+    }
+
+    double reverseSeconds(int edge) {
+        return reverseSeconds[edge];
+    }
+
+    double maxSpeed() {
+        return maxSpeed;
+    }
+
+    private static int[] prefixSum(int[] nodes, int edgeCount, int nodeCount) {
+        int[] start = new int[nodeCount + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            start[nodes[i] + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            start[i + 1] += start[i];
+        }
+        return start;
+    }
+
+    private static Map<Long, int[]> buildCells(double[] latitudes, double[] longitudes) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (int i = 0; i < latitudes.length; i++) {
+            counts.merge(cellKey(cell(latitudes[i]), cell(longitudes[i])), 1, Integer::sum);
+        }
+        Map<Long, int[]> cells = new HashMap<>(counts.size() * 2);
+        Map<Long, Integer> filled = new HashMap<>(counts.size() * 2);
+        for (int i = 0; i < latitudes.length; i++) {
+            long key = cellKey(cell(latitudes[i]), cell(longitudes[i]));
+            int[] nodes = cells.computeIfAbsent(key, k -> new int[counts.get(k)]);
+            int p = filled.merge(key, 1, Integer::sum) - 1;
+            nodes[p] = i;
+        }
+        return cells;
+    }
+
+    private static int cell(double degree) {
+        return (int) Math.floor(degree / CELL_SIZE);
+    }
+
+    private static long cellKey(int latCell, int lngCell) {
+        return ((long) latCell << 32) | (lngCell & 0xffffffffL);
+    }
+}
@@ -0,0 +1,34 @@
+package com.atguigu.daijia.map.route;
+
+/**
+ * 路网路径
+ */
+public class RoutePath {
+
+    // 途经节点下标，按行驶顺序
+    private final int[] nodes;
+
+    // 路径长度，单位：米
+    private final double meters;
+
+    // 行驶时间，单位：秒
+    private final double seconds;
+
+    RoutePath(int[] nodes, double meters, double seconds) {
+        this.nodes = nodes;
+        this.meters = meters;
+        this.seconds = seconds;
+    }
+
+    public int[] getNodes() {
+        return nodes;
+    }
+
+    public double getMeters() {
+        return meters;
+    }
+
+    public double getSeconds() {
+        return seconds;
+    }
+}
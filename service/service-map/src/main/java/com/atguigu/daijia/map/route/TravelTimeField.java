@@ -0,0 +1,57 @@
+package com.atguigu.daijia.map.route;
+
+import com.atguigu.daijia.map.geo.LongIntHashMap;
+
+/**
+ * 到同一终点的行驶时间场
+ * <p>
+ * 从终点沿反向边做一次有界Dijkstra得到：时间上限内所有节点到终点的最短行驶时间和距离。
+ * 之后任意起点只需吸附到最近节点后查表，多个司机到同一上车点的ETA只需一次搜索。
+ * 只保存搜索到的节点，创建后只读，可并发查询
+ */
+public class TravelTimeField {
+
+    private static final int MISSING = -1;
+
+    // 节点下标 -> 数组下标
+    private final LongIntHashMap index;
+
+    private final double[] seconds;
+
+    private final double[] meters;
+
+    private final long createTime = System.currentTimeMillis();
+
+    TravelTimeField(int[] nodes, double[] seconds, double[] meters, int count) {
+        this.index = new LongIntHashMap(count);
+        for (int i = 0; i < count; i++) {
+            index.put(nodes[i], i);
+        }
+        this.seconds = seconds;
+        this.meters = meters;
+    }
+
+    /**
+     * 节点到终点的行驶时间，单位：秒，超出时间上限（未搜索到）时返回-1
+     */
+    public double seconds(int node) {
+        int i = index.get(node, MISSING);
+        return i == MISSING ? -1 : seconds[i];
+    }
+
+    /**
+     * 节点到终点的行驶距离，单位：米，超出时间上限（未搜索到）时返回-1
+     */
+    public double meters(int node) {
+        int i = index.get(node, MISSING);
+        return i == MISSING ? -1 : meters[i];
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+}
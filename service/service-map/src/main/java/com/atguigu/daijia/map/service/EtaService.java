@@ -0,0 +1,11 @@
+package com.atguigu.daijia.map.service;
+
+import com.atguigu.daijia.model.form.map.CalculateEtaMatrixForm;
+import com.atguigu.daijia.model.vo.map.DriverEtaVo;
+
+import java.util.List;
+
+public interface EtaService {
+
+    List<DriverEtaVo> calculateEtaMatrix(CalculateEtaMatrixForm calculateEtaMatrixForm);
+}
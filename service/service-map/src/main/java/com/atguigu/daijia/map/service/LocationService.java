@@ -4,9 +4,12 @@ import com.atguigu.daijia.model.form.map.OrderServiceLocationForm;
 import com.atguigu.daijia.model.form.map.SearchNearByDriverForm;
 import com.atguigu.daijia.model.form.map.UpdateDriverLocationForm;
 import com.atguigu.daijia.model.form.map.UpdateOrderLocationForm;
+import com.atguigu.daijia.model.vo.map.DriverLocationStatsVo;
 import com.atguigu.daijia.model.vo.map.NearByDriverVo;
 import com.atguigu.daijia.model.vo.map.OrderLocationVo;
 import com.atguigu.daijia.model.vo.map.OrderServiceLastLocationVo;
+import com.atguigu.daijia.model.vo.map.OrderServiceTrailVo;
+import com.atguigu.daijia.model.vo.map.OrderTrailWriteStatsVo;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -15,17 +18,29 @@ public interface LocationService {
 
     Boolean updateDriverLocation(UpdateDriverLocationForm updateDriverLocationForm);
 
+    Boolean ingestDriverLocation(UpdateDriverLocationForm updateDriverLocationForm);
+
     Boolean removeDriverLocation(Long driverId);
 
+    DriverLocationStatsVo getDriverLocationStats();
+
     List<NearByDriverVo> searchNearByDriver(SearchNearByDriverForm searchNearByDriverForm);
 
+    List<List<NearByDriverVo>> searchNearByDriverBatch(List<SearchNearByDriverForm> searchNearByDriverFormList);
+
     Boolean updateOrderLocationToCache(UpdateOrderLocationForm updateOrderLocationForm);
 
     OrderLocationVo getCacheOrderLocation(Long orderId);
 
     Boolean saveOrderServiceLocation(List<OrderServiceLocationForm> orderLocationServiceFormList);
 
+    OrderTrailWriteStatsVo getOrderTrailWriteStats();
+
     OrderServiceLastLocationVo getOrderServiceLastLocation(Long orderId);
 
     BigDecimal calculateOrderRealDistance(Long orderId);
+
+    Boolean saveOrderServiceTrail(Long orderId);
+
+    OrderServiceTrailVo getOrderServiceTrail(Long orderId, Integer zoom);
 }
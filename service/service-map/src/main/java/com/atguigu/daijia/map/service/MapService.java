@@ -1,9 +1,16 @@
 package com.atguigu.daijia.map.service;
 
 import com.atguigu.daijia.model.form.map.CalculateDrivingLineForm;
+import com.atguigu.daijia.model.vo.map.DrivingLineCacheStatsVo;
 import com.atguigu.daijia.model.vo.map.DrivingLineVo;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface MapService {
 
     DrivingLineVo calculateDrivingLine(CalculateDrivingLineForm calculateDrivingLineForm);
+
+    CompletableFuture<DrivingLineVo> calculateDrivingLineAsync(CalculateDrivingLineForm calculateDrivingLineForm);
+
+    DrivingLineCacheStatsVo getDrivingLineCacheStats();
 }
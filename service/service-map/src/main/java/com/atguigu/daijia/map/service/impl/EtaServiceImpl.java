@@ -0,0 +1,166 @@
+package com.atguigu.daijia.map.service.impl;
+
+import com.atguigu.daijia.common.util.LocationUtil;
+import com.atguigu.daijia.map.config.RouteProperties;
+import com.atguigu.daijia.map.geo.DriverGeoIndex;
+import com.atguigu.daijia.map.route.AStarRouter;
+import com.atguigu.daijia.map.route.RoadGraph;
+import com.atguigu.daijia.map.route.TravelTimeField;
+import com.atguigu.daijia.map.service.EtaService;
+import com.atguigu.daijia.model.form.map.CalculateEtaMatrixForm;
+import com.atguigu.daijia.model.form.map.EtaOriginForm;
+import com.atguigu.daijia.model.vo.map.DriverEtaVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 多个司机到同一上车点的ETA
+ * <p>
+ * 离线路网已加载时，以上车点最近的路网节点为终点做一次反向有界Dijkstra，得到行驶时间场并按节点缓存，
+ * 同一上车点附近的后续派单直接复用；每个司机只需吸附到最近节点后查表，司机较多时按CPU核数并行计算。
+ * 路网未加载、上车点或司机不在路网覆盖范围内、或超出时间上限时，按直线距离乘以绕行系数和平均车速估算
+ */
+@Slf4j
+@Service
+public class EtaServiceImpl implements EtaService {
+
+    @Autowired
+    private RouteProperties routeProperties;
+
+    @Autowired
+    private OfflineMapServiceImpl offlineMapService;
+
+    @Autowired
+    private DriverGeoIndex driverGeoIndex;
+
+    // 上车点节点 -> 行驶时间场，按访问顺序淘汰，访问需加锁
+    private final LinkedHashMap<Integer, TravelTimeField> fieldCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, TravelTimeField> eldest) {
+            return size() > routeProperties.getEtaFieldCacheSize();
+        }
+    };
+
+    // 缓存对应的路网，路网重新加载后缓存失效
+    private RoadGraph fieldGraph;
+
+    @Override
+    public List<DriverEtaVo> calculateEtaMatrix(CalculateEtaMatrixForm calculateEtaMatrixForm) {
+        List<EtaOriginForm> originList = calculateEtaMatrixForm.getOriginList();
+        if (CollectionUtils.isEmpty(originList)) {
+            return new ArrayList<>();
+        }
+        double targetLatitude = calculateEtaMatrixForm.getLatitude().doubleValue();
+        double targetLongitude = calculateEtaMatrixForm.getLongitude().doubleValue();
+
+        // 司机位置，未传入时使用本地索引中的最新位置，都没有的司机不参与计算
+        int size = originList.size();
+        long[] driverIds = new long[size];
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        double[] location = new double[2];
+        int count = 0;
+        for (EtaOriginForm origin : originList) {
+            if (origin.getLatitude() != null && origin.getLongitude() != null) {
+                latitudes[count] = origin.getLatitude().doubleValue();
+                longitudes[count] = origin.getLongitude().doubleValue();
+            } else if (driverGeoIndex.getLocation(origin.getDriverId(), location)) {
+                latitudes[count] = location[0];
+                longitudes[count] = location[1];
+            } else {
+                continue;
+            }
+            driverIds[count++] = origin.getDriverId();
+        }
+
+        // 路网上的行驶时间场
+        AStarRouter router = offlineMapService.getRouter();
+        RoadGraph graph = router == null ? null : router.getGraph();
+        TravelTimeField field = null;
+        double targetSnapSeconds = 0;
+        double speed = routeProperties.getEtaSpeedKmh() / 3.6;
+        double snapMaxMeters = routeProperties.getSnapMaxMeters();
+        if (graph != null) {
+            int targetNode = graph.nearestNode(targetLatitude, targetLongitude, snapMaxMeters);
+            if (targetNode >= 0) {
+                field = getField(router, targetNode);
+                targetSnapSeconds = LocationUtil.getDistanceFast(targetLatitude, targetLongitude,
+                        graph.latitude(targetNode), graph.longitude(targetNode)) / speed;
+            }
+        }
+
+        double[] seconds = new double[count];
+        double[] meters = new double[count];
+        boolean[] estimated = new boolean[count];
+        TravelTimeField travelTimeField = field;
+        double snapSeconds = targetSnapSeconds;
+        IntStream indexes = IntStream.range(0, count);
+        if (count >= routeProperties.getEtaParallelThreshold()) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> {
+            if (travelTimeField != null) {
+                int node = graph.nearestNode(latitudes[i], longitudes[i], snapMaxMeters);
+                double fieldSeconds = node < 0 ? -1 : travelTimeField.seconds(node);
+                if (fieldSeconds >= 0) {
+                    double snapMeters = LocationUtil.getDistanceFast(latitudes[i], longitudes[i], graph.latitude(node), graph.longitude(node));
+                    seconds[i] = fieldSeconds + snapMeters / speed + snapSeconds;
+                    meters[i] = travelTimeField.meters(node) + snapMeters;
+                    return;
+                }
+            }
+            double roadMeters = LocationUtil.getDistanceFast(latitudes[i], longitudes[i], targetLatitude, targetLongitude) * routeProperties.getEtaDetourFactor();
+            seconds[i] = roadMeters / speed;
+            meters[i] = roadMeters;
+            estimated[i] = true;
+        });
+
+        List<DriverEtaVo> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            DriverEtaVo driverEtaVo = new DriverEtaVo();
+            driverEtaVo.setDriverId(driverIds[i]);
+            driverEtaVo.setDuration(BigDecimal.valueOf(Math.round(seconds[i])));
+            driverEtaVo.setDistance(BigDecimal.valueOf(meters[i] / 1000).setScale(2, RoundingMode.HALF_UP));
+            driverEtaVo.setEstimated(estimated[i]);
+            list.add(driverEtaVo);
+        }
+        list.sort(Comparator.comparing(DriverEtaVo::getDuration));
+        return list;
+    }
+
+    /**
+     * 获取上车点的行驶时间场，缓存中没有或已过期时重新计算
+     */
+    private TravelTimeField getField(AStarRouter router, int targetNode) {
+        long now = System.currentTimeMillis();
+        long ttlMillis = routeProperties.getEtaFieldTtlSeconds() * 1000;
+        synchronized (fieldCache) {
+            if (fieldGraph != router.getGraph()) {
+                fieldCache.clear();
+                fieldGraph = router.getGraph();
+            }
+            TravelTimeField field = fieldCache.get(targetNode);
+            if (field != null && now - field.getCreateTime() < ttlMillis) {
+                return field;
+            }
+        }
+        TravelTimeField field = router.travelTimeTo(targetNode, routeProperties.getEtaMaxSeconds());
+        synchronized (fieldCache) {
+            if (fieldGraph == router.getGraph()) {
+                fieldCache.put(targetNode, field);
+            }
+        }
+        return field;
+    }
+}
@@ -4,29 +4,43 @@ package com.atguigu.daijia.map.service.impl;
 import com.atguigu.daijia.common.constant.RedisConstant;
 import com.atguigu.daijia.common.constant.SystemConstant;
 import com.atguigu.daijia.common.util.LocationUtil;
-import com.atguigu.daijia.driver.client.DriverInfoFeignClient;
+import com.atguigu.daijia.map.cache.DriverServiceStatusCache;
+import com.atguigu.daijia.map.cache.DriverSetCache;
+import com.atguigu.daijia.map.cache.OrderDistanceCache;
+import com.atguigu.daijia.map.cache.OrderLocationPublisher;
+import com.atguigu.daijia.map.config.DriverLocationProperties;
+import com.atguigu.daijia.map.geo.DriverGeoIndex;
+import com.atguigu.daijia.map.geo.DriverGeoStore;
+import com.atguigu.daijia.map.geo.DriverMovementFilter;
+import com.atguigu.daijia.map.geo.DriverStateStore;
+import com.atguigu.daijia.map.geo.NearbyDrivers;
+import com.atguigu.daijia.map.handle.DriverLocationBatchHandle;
 import com.atguigu.daijia.map.repository.OrderServiceLocationRepository;
 import com.atguigu.daijia.map.service.LocationService;
-import com.atguigu.daijia.model.entity.driver.DriverSet;
+import com.atguigu.daijia.map.trail.OrderTrail;
+import com.atguigu.daijia.map.trail.OrderTrailArchiver;
+import com.atguigu.daijia.map.trail.OrderTrailSimplifier;
+import com.atguigu.daijia.map.trail.OrderTrailStore;
+import com.atguigu.daijia.map.trail.OrderTrailWriter;
 import com.atguigu.daijia.model.entity.map.OrderServiceLocation;
 import com.atguigu.daijia.model.form.map.OrderServiceLocationForm;
 import com.atguigu.daijia.model.form.map.SearchNearByDriverForm;
 import com.atguigu.daijia.model.form.map.UpdateDriverLocationForm;
 import com.atguigu.daijia.model.form.map.UpdateOrderLocationForm;
+import com.atguigu.daijia.model.vo.map.DriverLocationStatsVo;
 import com.atguigu.daijia.model.vo.map.NearByDriverVo;
 import com.atguigu.daijia.model.vo.map.OrderLocationVo;
 import com.atguigu.daijia.model.vo.map.OrderServiceLastLocationVo;
+import com.atguigu.daijia.model.vo.map.OrderServiceTrailVo;
+import com.atguigu.daijia.model.vo.map.OrderTrailWriteStatsVo;
 import com.atguigu.daijia.order.client.OrderInfoFeignClient;
 import lombok.extern.slf4j.Slf4j;
-import org.bson.types.ObjectId;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
-import org.springframework.data.geo.*;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
-import org.springframework.data.redis.connection.RedisGeoCommands;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
@@ -35,8 +49,10 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 
 @Slf4j
@@ -46,6 +62,18 @@ public class LocationServiceImpl implements LocationService {
     @Autowired
     private RedisTemplate redisTemplate;
 
+    @Autowired
+    private DriverGeoIndex driverGeoIndex;
+
+    @Autowired
+    private DriverLocationProperties driverLocationProperties;
+
+    @Autowired
+    private DriverMovementFilter driverMovementFilter;
+
+    @Autowired
+    private DriverGeoStore driverGeoStore;
+
     /**
      * 更新司机位置信息
      * 该方法使用Redis的GEO功能来存储和操作地理位置信息
@@ -56,15 +84,46 @@ public class LocationServiceImpl implements LocationService {
      */
     @Override
     public Boolean updateDriverLocation(UpdateDriverLocationForm updateDriverLocationForm) {
-        // 创建Point对象，用于存储经纬度信息
-        Point point = new Point(updateDriverLocationForm.getLongitude().doubleValue(), updateDriverLocationForm.getLatitude().doubleValue());
-        // 使用RedisTemplate的opsForGeo()方法添加司机的地理位置信息到Redis中
-        redisTemplate.opsForGeo().add(RedisConstant.DRIVER_GEO_LOCATION, point, updateDriverLocationForm.getDriverId().toString());
+        // 司机基本没有移动且未到心跳间隔，不重复写入
+        if (!driverMovementFilter.accept(updateDriverLocationForm.getDriverId(), updateDriverLocationForm.getLatitude().doubleValue(), updateDriverLocationForm.getLongitude().doubleValue())) {
+            return true;
+        }
+        // 写入司机所在网格分片的GEO集合，跨网格时从旧分片删除
+        driverGeoStore.add(Map.of(updateDriverLocationForm.getDriverId(), new double[]{updateDriverLocationForm.getLatitude().doubleValue(), updateDriverLocationForm.getLongitude().doubleValue()}));
+        // 同步更新本地网格索引
+        driverGeoIndex.update(updateDriverLocationForm.getDriverId(), updateDriverLocationForm.getLatitude().doubleValue(), updateDriverLocationForm.getLongitude().doubleValue());
         // 返回操作成功标志
         return true;
     }
 
 
+    @Autowired
+    private DriverServiceStatusCache driverServiceStatusCache;
+
+    @Autowired
+    private DriverLocationBatchHandle driverLocationBatchHandle;
+
+    /**
+     * 上报司机位置信息（缓冲批量写入）
+     * 接单状态按本地位图判断，不再远程获取司机设置；位置进入缓冲后立即返回，
+     * 由 DriverLocationBatchHandle 每隔几毫秒合并为一次pipeline批量GEOADD写入Redis
+     *
+     * @param updateDriverLocationForm 包含司机位置信息的表单，包括经度、纬度和司机ID
+     * @return 司机处于接单状态返回true，否则返回false
+     */
+    @Override
+    public Boolean ingestDriverLocation(UpdateDriverLocationForm updateDriverLocationForm) {
+        if (!driverServiceStatusCache.isInService(updateDriverLocationForm.getDriverId())) {
+            return false;
+        }
+        // 司机基本没有移动且未到心跳间隔，不重复写入
+        if (!driverMovementFilter.accept(updateDriverLocationForm.getDriverId(), updateDriverLocationForm.getLatitude().doubleValue(), updateDriverLocationForm.getLongitude().doubleValue())) {
+            return true;
+        }
+        driverLocationBatchHandle.add(updateDriverLocationForm.getDriverId(), updateDriverLocationForm.getLatitude().doubleValue(), updateDriverLocationForm.getLongitude().doubleValue());
+        return true;
+    }
+
     /**
      * 移除司机的位置信息
      * <p>
@@ -76,76 +135,120 @@ public class LocationServiceImpl implements LocationService {
      */
     @Override
     public Boolean removeDriverLocation(Long driverId) {
+        // 先在本地标记为停止接单，再丢弃缓冲中尚未写入的位置（等待正在进行的刷写结束），之后的刷写不会写回该司机
+        driverServiceStatusCache.markStopped(driverId);
+        driverLocationBatchHandle.discard(driverId);
+        driverMovementFilter.remove(driverId);
         // 移除Redis中指定司机ID的位置信息
-        redisTemplate.opsForGeo().remove(RedisConstant.DRIVER_GEO_LOCATION, driverId.toString());
+        driverGeoStore.remove(driverId);
+        // 同步删除本地网格索引
+        driverGeoIndex.remove(driverId);
         // 返回操作状态
         return true;
     }
 
+    /**
+     * 获取司机位置上报统计
+     * 包括实际写入次数、因位移过小被忽略的次数、当前记录最后位置的司机数以及司机状态堆外存储的大小
+     *
+     * @return 司机位置上报统计
+     */
+    @Override
+    public DriverLocationStatsVo getDriverLocationStats() {
+        DriverLocationStatsVo driverLocationStatsVo = new DriverLocationStatsVo();
+        driverLocationStatsVo.setAcceptedCount(driverMovementFilter.getAcceptedCount());
+        driverLocationStatsVo.setSuppressedCount(driverMovementFilter.getSuppressedCount());
+        driverLocationStatsVo.setTrackedDriverCount(driverMovementFilter.size());
+        driverLocationStatsVo.setStateStoreSize(driverStateStore.size());
+        driverLocationStatsVo.setStateStoreMemoryBytes(driverStateStore.memoryBytes());
+        return driverLocationStatsVo;
+    }
+
     @Autowired
-    private DriverInfoFeignClient driverInfoFeignClient;
+    private DriverSetCache driverSetCache;
+
+    @Autowired
+    private DriverStateStore driverStateStore;
+
+    // 本地索引查询结果缓冲，同一线程的多次查询复用
+    private static final ThreadLocal<NearbyDrivers> NEARBY_DRIVERS_BUFFER = ThreadLocal.withInitial(() -> new NearbyDrivers(64));
 
     /**
      * 根据地理位置搜索附近的司机
      *
-     * @param searchNearByDriverForm 包含搜索条件的表单对象，主要包括经度、纬度和订单里程
+     * @param searchNearByDriverForm 包含搜索条件的表单对象，主要包括经度、纬度、订单里程，以及可选的搜索半径和返回数量
      * @return 返回一个包含附近司机信息的列表，每个司机信息包括司机ID和距离
      */
     @Override
     public List<NearByDriverVo> searchNearByDriver(SearchNearByDriverForm searchNearByDriverForm) {
-        // 搜索经纬度位置5公里以内的司机
-        // 定义经纬度点
-        Point point = new Point(searchNearByDriverForm.getLongitude().doubleValue(), searchNearByDriverForm.getLatitude().doubleValue());
-        // 定义距离：5公里(系统配置)
-        Distance distance = new Distance(SystemConstant.NEARBY_DRIVER_RADIUS, RedisGeoCommands.DistanceUnit.KILOMETERS);
-        // 定义以point点为中心，distance为距离这么一个范围
-        Circle circle = new Circle(point, distance);
-
-        // 定义GEO参数
-        RedisGeoCommands.GeoRadiusCommandArgs args = RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs()
-                .includeDistance() // 包含距离
-                .includeCoordinates() // 包含坐标
-                .sortAscending(); // 排序：升序
-
-        // 1.GEORADIUS获取附近范围内的信息
-        GeoResults<RedisGeoCommands.GeoLocation<String>> result = this.redisTemplate.opsForGeo().radius(RedisConstant.DRIVER_GEO_LOCATION, circle, args);
-
-        // 2.收集信息，存入list
-        List<GeoResult<RedisGeoCommands.GeoLocation<String>>> content = result.getContent();
-
-        // 3.返回计算后的信息
-        List<NearByDriverVo> list = new ArrayList();
-        if (!CollectionUtils.isEmpty(content)) {
-            Iterator<GeoResult<RedisGeoCommands.GeoLocation<String>>> iterator = content.iterator();
-            while (iterator.hasNext()) {
-                GeoResult<RedisGeoCommands.GeoLocation<String>> item = iterator.next();
-
-                // 司机id
-                Long driverId = Long.parseLong(item.getContent().getName());
-                // 当前距离
-                BigDecimal currentDistance = new BigDecimal(item.getDistance().getValue()).setScale(2, RoundingMode.HALF_UP);
-                log.info("司机：{}，距离：{}", driverId, item.getDistance().getValue());
-
-                // 获取司机接单设置参数
-                DriverSet driverSet = driverInfoFeignClient.getDriverSet(driverId).getData();
-                // 接单里程判断，acceptDistance==0：不限制，
-                if (driverSet.getAcceptDistance().doubleValue() != 0 && driverSet.getAcceptDistance().subtract(currentDistance).doubleValue() < 0) {
-                    continue;
-                }
-                // 订单里程判断，orderDistance==0：不限制
-                if (driverSet.getOrderDistance().doubleValue() != 0 && driverSet.getOrderDistance().subtract(searchNearByDriverForm.getMileageDistance()).doubleValue() < 0) {
-                    continue;
-                }
+        // 搜索经纬度位置指定半径以内的司机，未指定时为5公里(系统配置)
+        double latitude = searchNearByDriverForm.getLatitude().doubleValue();
+        double longitude = searchNearByDriverForm.getLongitude().doubleValue();
+        double radius = SystemConstant.NEARBY_DRIVER_RADIUS;
+        if (searchNearByDriverForm.getRadius() != null && searchNearByDriverForm.getRadius().doubleValue() > 0) {
+            radius = Math.min(searchNearByDriverForm.getRadius().doubleValue(), SystemConstant.NEARBY_DRIVER_MAX_RADIUS);
+        }
 
-                // 满足条件的附近司机信息
-                NearByDriverVo nearByDriverVo = new NearByDriverVo();
-                nearByDriverVo.setDriverId(driverId);
-                nearByDriverVo.setDistance(currentDistance);
-                list.add(nearByDriverVo);
+        // 1.获取附近范围内的司机：本地索引可用时直接查询本地网格（复用本线程的结果缓冲），否则GEORADIUS查询相交的Redis分片
+        boolean localIndex = driverLocationProperties.getGeoIndexEnabled() && driverGeoIndex.isReady();
+        NearbyDrivers nearbyDrivers;
+        if (localIndex) {
+            nearbyDrivers = driverGeoIndex.searchRadius(latitude, longitude, radius, 0, NEARBY_DRIVERS_BUFFER.get());
+        } else {
+            nearbyDrivers = driverGeoStore.searchRadius(latitude, longitude, radius);
+        }
+        // 跳过超过失联时间没有上报位置的司机：本地索引按堆外记录中的最后上报时间原地过滤，否则ZMSCORE查询Redis
+        if (driverLocationProperties.getSearchSkipStale()) {
+            long cutoffTime = System.currentTimeMillis() - driverLocationProperties.getStaleSeconds() * 1000;
+            if (localIndex) {
+                driverStateStore.filterStale(nearbyDrivers, cutoffTime);
+            } else {
+                nearbyDrivers = driverGeoStore.filterStale(nearbyDrivers, cutoffTime);
             }
         }
+
+        // 2.刷新司机接单设置（版本号校验，只对变更过的司机发起一次批量远程调用），
+        // 再按堆外记录中的接单里程、订单里程原地过滤：acceptDistance==0、orderDistance==0 表示不限制
+        driverSetCache.refresh(nearbyDrivers);
+        driverStateStore.filterByDriverSet(nearbyDrivers, searchNearByDriverForm.getMileageDistance().doubleValue());
+
+        // 3.返回计算后的信息：结果按距离升序，指定了数量时只返回最近的前 limit 个
+        int size = nearbyDrivers.size();
+        if (searchNearByDriverForm.getLimit() != null && searchNearByDriverForm.getLimit() > 0) {
+            size = Math.min(size, searchNearByDriverForm.getLimit());
+        }
+        List<NearByDriverVo> list = new ArrayList(size);
+        for (int i = 0; i < size; i++) {
+            // 司机id
+            Long driverId = nearbyDrivers.driverId(i);
+            // 当前距离
+            BigDecimal currentDistance = new BigDecimal(nearbyDrivers.distance(i)).setScale(2, RoundingMode.HALF_UP);
+            log.info("司机：{}，距离：{}", driverId, nearbyDrivers.distance(i));
+
+            // 满足条件的附近司机信息
+            NearByDriverVo nearByDriverVo = new NearByDriverVo();
+            nearByDriverVo.setDriverId(driverId);
+            nearByDriverVo.setDistance(currentDistance);
+            list.add(nearByDriverVo);
+        }
         return list;
     }
+
+    /**
+     * 批量搜索附近的司机，派单批量匹配时一次调用查询一批订单的候选司机
+     *
+     * @param searchNearByDriverFormList 每个订单的搜索条件
+     * @return 与搜索条件一一对应的附近司机列表
+     */
+    @Override
+    public List<List<NearByDriverVo>> searchNearByDriverBatch(List<SearchNearByDriverForm> searchNearByDriverFormList) {
+        List<List<NearByDriverVo>> list = new ArrayList<>(searchNearByDriverFormList.size());
+        for (SearchNearByDriverForm searchNearByDriverForm : searchNearByDriverFormList) {
+            list.add(this.searchNearByDriver(searchNearByDriverForm));
+        }
+        return list;
+    }
+
     /**
      * 更新订单位置到缓存
      *
@@ -165,8 +268,10 @@ public class LocationServiceImpl implements LocationService {
         orderLocationVo.setLongitude(updateOrderLocationForm.getLongitude());
         // 设置纬度
         orderLocationVo.setLatitude(updateOrderLocationForm.getLatitude());
-        // 将订单位置信息保存到Redis缓存中，键名包含前缀和订单ID
-        redisTemplate.opsForValue().set(RedisConstant.UPDATE_ORDER_LOCATION + updateOrderLocationForm.getOrderId(), orderLocationVo);
+        // 将订单位置信息保存到Redis缓存中，键名包含前缀和订单ID；司机停止上报后自动过期
+        redisTemplate.opsForValue().set(RedisConstant.UPDATE_ORDER_LOCATION + updateOrderLocationForm.getOrderId(), orderLocationVo, RedisConstant.UPDATE_ORDER_LOCATION_EXPIRES_TIME, TimeUnit.MINUTES);
+        // 推送给正在查看该订单的乘客
+        orderLocationPublisher.publish(updateOrderLocationForm.getOrderId(), orderLocationVo);
         // 返回成功更新的标志
         return true;
     }
@@ -186,49 +291,83 @@ public class LocationServiceImpl implements LocationService {
     @Autowired
     private OrderServiceLocationRepository orderServiceLocationRepository;
 
+    @Autowired
+    private OrderLocationPublisher orderLocationPublisher;
+
+    @Autowired
+    private OrderTrailStore orderTrailStore;
+
+    @Autowired
+    private OrderTrailWriter orderTrailWriter;
+
+    @Autowired
+    private OrderTrailArchiver orderTrailArchiver;
+
     /**
      * 保存订单服务位置信息
      *
      * @param orderLocationServiceFormList 订单服务位置表单列表，包含待保存的订单服务位置信息
      * @return 返回布尔值，表示保存操作是否成功
      *
-     * 该方法将表单列表中的数据转换为OrderServiceLocation实体类列表，并将其保存到数据库中
-     * 它主要用于在创建或更新订单时，确保订单的服务位置信息是最新的
+     * 该方法同步累加订单里程并记录最后一个位置点（Redis），随后推送给乘客；
+     * 轨迹点进入 OrderTrailWriter 的待写入队列后立即返回，由后台线程按订单合并为无序bulk写入每分钟一个的轨迹分桶文档
+     * （开启 map.trail.legacy-write-enabled 时同时按旧格式每个点写入一条OrderServiceLocation）
      */
     @Override
     public Boolean saveOrderServiceLocation(List<OrderServiceLocationForm> orderLocationServiceFormList) {
-        // 初始化OrderServiceLocation对象列表
-        List<OrderServiceLocation> list = new ArrayList<>();
-        // 遍历表单列表，转换为OrderServiceLocation对象并设置其属性
-        orderLocationServiceFormList.forEach(item -> {
-            OrderServiceLocation orderServiceLocation = new OrderServiceLocation();
-            // 复制表单数据到实体类对象
-            BeanUtils.copyProperties(item, orderServiceLocation);
-            // 生成新的ID，确保每个OrderServiceLocation对象都有唯一的标识
-            orderServiceLocation.setId(ObjectId.get().toString());
-            // 设置创建时间，记录对象创建的时间戳
-            orderServiceLocation.setCreateTime(new Date());
-            // 将对象添加到列表中
-            list.add(orderServiceLocation);
-        });
-        // 保存所有OrderServiceLocation对象到数据库中
-        orderServiceLocationRepository.saveAll(list);
+        // 累加订单实际里程，结束代驾时直接读取
+        orderDistanceCache.accumulate(orderLocationServiceFormList);
+        // 推送每个订单的最新位置给乘客
+        orderLocationPublisher.publishLast(orderLocationServiceFormList);
+        // 轨迹点异步批量写入MongoDB
+        orderTrailWriter.add(orderLocationServiceFormList, new Date());
         // 返回操作成功标识
         return true;
     }
+
+    /**
+     * 获取订单轨迹写入统计
+     * 包括待写入点数、最早待写入点的等待时长以及写入、失败和丢弃的点数
+     *
+     * @return 订单轨迹写入统计
+     */
+    @Override
+    public OrderTrailWriteStatsVo getOrderTrailWriteStats() {
+        return orderTrailWriter.getStats();
+    }
     @Autowired
     private MongoTemplate mongoTemplate;
 
     /**
      * 根据订单ID获取最新的订单服务位置信息
-     * 本方法通过查询数据库中特定订单ID的记录，找出最近创建的位置信息
-     * 使用MongoDB的查询和排序功能来实现
+     * 代驾进行中直接读取位置上报时写入Redis的最后一个点，不访问MongoDB；
+     * 缓存过期后读取该订单最后一个轨迹分桶并解码出最后一个点，
+     * 没有分桶数据时再通过MongoDB的查询和排序功能查询旧格式的最近一条记录
      *
      * @param orderId 订单ID，用于定位特定的订单记录
-     * @return OrderServiceLastLocationVo 返回最新的订单服务位置信息，封装在自定义的VO中
+     * @return OrderServiceLastLocationVo 返回最新的订单服务位置信息，封装在自定义的VO中；还没有上报过位置时返回null
      */
     @Override
     public OrderServiceLastLocationVo getOrderServiceLastLocation(Long orderId) {
+        // 优先读取位置上报时写入Redis的最后一个点（O(1)）
+        BigDecimal[] cachedLocation = orderDistanceCache.getLastLocation(orderId);
+        if (cachedLocation != null) {
+            OrderServiceLastLocationVo orderServiceLastLocationVo = new OrderServiceLastLocationVo();
+            orderServiceLastLocationVo.setLatitude(cachedLocation[0]);
+            orderServiceLastLocationVo.setLongitude(cachedLocation[1]);
+            return orderServiceLastLocationVo;
+        }
+
+        // 缓存中没有（如已过期），从轨迹分桶中解码最后一个点
+        double[] lastLocation = orderTrailStore.findLastLocation(orderId);
+        if (lastLocation != null) {
+            OrderServiceLastLocationVo orderServiceLastLocationVo = new OrderServiceLastLocationVo();
+            orderServiceLastLocationVo.setLatitude(BigDecimal.valueOf(lastLocation[0]));
+            orderServiceLastLocationVo.setLongitude(BigDecimal.valueOf(lastLocation[1]));
+            return orderServiceLastLocationVo;
+        }
+
+        // 没有分桶数据（旧格式写入的订单），按旧格式查询
         //初始化查询对象
         Query query = new Query();
         //设置查询条件为指定的订单ID
@@ -240,6 +379,10 @@ public class LocationServiceImpl implements LocationService {
 
         //执行查询，获取最新的订单服务位置信息
         OrderServiceLocation orderServiceLocation = mongoTemplate.findOne(query, OrderServiceLocation.class);
+        if (orderServiceLocation == null) {
+            // 刚开始服务还没有上报过位置
+            return null;
+        }
 
         //封装返回对象
         OrderServiceLastLocationVo orderServiceLastLocationVo = new OrderServiceLastLocationVo();
@@ -250,30 +393,99 @@ public class LocationServiceImpl implements LocationService {
     @Autowired
     private OrderInfoFeignClient orderInfoFeignClient;
 
+    @Autowired
+    private OrderDistanceCache orderDistanceCache;
+
     /**
      * 计算订单的实际行驶距离
+     * 优先读取位置上报时累加的里程（O(1)），没有累加记录时再读取整条轨迹重新计算
      *
      * @param orderId 订单ID
      * @return 订单的实际行驶距离（BigDecimal类型）
      */
     @Override
     public BigDecimal calculateOrderRealDistance(Long orderId) {
-        // 根据订单ID获取按创建时间升序的服务位置列表
-        List<OrderServiceLocation> orderServiceLocationList = orderServiceLocationRepository.findByOrderIdOrderByCreateTimeAsc(orderId);
+        Double accumulatedDistance = orderDistanceCache.getDistance(orderId);
+        if (accumulatedDistance != null && accumulatedDistance > 0) {
+            return new BigDecimal(accumulatedDistance);
+        }
+        // 兜底重新计算需要完整轨迹
+        orderTrailWriter.awaitWritten(orderId);
+        return this.recalculateOrderRealDistance(orderId);
+    }
+
+    @Autowired
+    private OrderTrailSimplifier orderTrailSimplifier;
+
+    @Autowired
+    private ThreadPoolExecutor threadPoolExecutor;
+
+    /**
+     * 保存订单各缩放级别的简化轨迹（结束代驾时调用）
+     * 在后台等待各实例写完该订单的轨迹后再简化，接口立即返回，不影响结束代驾的耗时
+     *
+     * @param orderId 订单ID
+     * @return 总是返回true，表示已提交
+     */
+    @Override
+    public Boolean saveOrderServiceTrail(Long orderId) {
+        threadPoolExecutor.execute(() -> {
+            try {
+                orderTrailWriter.awaitWritten(orderId);
+                orderTrailSimplifier.save(orderId);
+            } catch (Exception e) {
+                log.error("保存订单简化轨迹失败，订单：{}", orderId, e);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 获取订单代驾轨迹（按地图缩放级别简化）
+     *
+     * @param orderId 订单ID
+     * @param zoom    地图缩放级别，返回最接近该级别的简化轨迹
+     * @return 简化后的轨迹
+     */
+    @Override
+    public OrderServiceTrailVo getOrderServiceTrail(Long orderId, Integer zoom) {
+        return orderTrailSimplifier.getTrail(orderId, zoom);
+    }
+
+    /**
+     * 读取整条轨迹重新计算订单的实际行驶距离，用于累加记录缺失时兜底以及核对
+     *
+     * @param orderId 订单ID
+     * @return 订单的实际行驶距离（BigDecimal类型）
+     */
+    private BigDecimal recalculateOrderRealDistance(Long orderId) {
         // 初始化实际行驶距离为0
         double realDistance = 0;
-        // 检查列表是否非空
-        if(!CollectionUtils.isEmpty(orderServiceLocationList)) {
-            // 遍历列表计算相邻两个地点之间的距离并累加
-            for (int i = 0, size=orderServiceLocationList.size()-1; i < size; i++) {
-                // 获取当前和下一个服务位置
-                OrderServiceLocation location1 = orderServiceLocationList.get(i);
-                OrderServiceLocation location2 = orderServiceLocationList.get(i+1);
-
-                // 使用LocationUtil类计算两个地点之间的距离
-                double distance = LocationUtil.getDistance(location1.getLatitude().doubleValue(), location1.getLongitude().doubleValue(), location2.getLatitude().doubleValue(), location2.getLongitude().doubleValue());
-                // 累加距离
-                realDistance += distance;
+        // 读取并解码订单轨迹分桶，按时间升序
+        OrderTrail trail = orderTrailStore.loadTrail(orderId);
+        // 原始轨迹已归档时读取归档数据
+        if (trail.size() == 0) {
+            trail = orderTrailArchiver.loadTrail(orderId);
+        }
+        if (trail.size() > 0) {
+            // 批量计算相邻两个点之间的距离并累加（与逐段调用 getDistance 结果一致）
+            realDistance = LocationUtil.getTrailDistance(trail.latitudes(), trail.longitudes(), trail.size());
+        } else {
+            // 没有分桶数据（旧格式写入的订单），根据订单ID获取按创建时间升序的服务位置列表
+            List<OrderServiceLocation> orderServiceLocationList = orderServiceLocationRepository.findByOrderIdOrderByCreateTimeAsc(orderId);
+            // 检查列表是否非空
+            if(!CollectionUtils.isEmpty(orderServiceLocationList)) {
+                // 遍历列表计算相邻两个地点之间的距离并累加
+                for (int i = 0, size=orderServiceLocationList.size()-1; i < size; i++) {
+                    // 获取当前和下一个服务位置
+                    OrderServiceLocation location1 = orderServiceLocationList.get(i);
+                    OrderServiceLocation location2 = orderServiceLocationList.get(i+1);
+
+                    // 使用LocationUtil类计算两个地点之间的距离
+                    double distance = LocationUtil.getDistance(location1.getLatitude().doubleValue(), location1.getLongitude().doubleValue(), location2.getLatitude().doubleValue(), location2.getLongitude().doubleValue());
+                    // 累加距离
+                    realDistance += distance;
+                }
             }
         }
         // 如果实际行驶距离为0，则通过调用接口获取订单信息，并返回预期里程加上模拟的额外距离
@@ -2,71 +2,128 @@ package com.atguigu.daijia.map.service.impl;
 
 import com.alibaba.fastjson.JSONObject;
 import com.atguigu.daijia.common.execption.GuiguException;
-import com.atguigu.daijia.common.result.ResultCodeEnum;
+import com.atguigu.daijia.common.util.PolylineUtil;
+import com.atguigu.daijia.map.api.TencentMapClient;
+import com.atguigu.daijia.map.cache.DrivingLineCache;
+import com.atguigu.daijia.map.config.RouteProperties;
 import com.atguigu.daijia.map.service.MapService;
 import com.atguigu.daijia.model.form.map.CalculateDrivingLineForm;
+import com.atguigu.daijia.model.vo.map.DrivingLineCacheStatsVo;
 import com.atguigu.daijia.model.vo.map.DrivingLineVo;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * 驾车路线（默认实现）
+ * 根据 map.route.engine 选择腾讯地图接口或离线路网作为主引擎，主引擎失败时按配置降级到另一个引擎
+ */
 @Slf4j
+@Primary
 @Service
 @SuppressWarnings({"unchecked", "rawtypes"})
 public class MapServiceImpl implements MapService {
+
+    private static final String ENGINE_OFFLINE = "offline";
+
+    @Autowired
+    private TencentMapClient tencentMapClient;
+
     @Autowired
-    private RestTemplate restTemplate;
+    private DrivingLineCache drivingLineCache;
 
-    @Value("${tencent.map.key}")
-    private String key;    // 腾讯地图服务
+    @Autowired
+    private OfflineMapServiceImpl offlineMapService;
+
+    @Autowired
+    private RouteProperties routeProperties;
 
     @Override
     /**
      * 计算驾车路线
+     * 起终点吸附到网格后按时段缓存，预估订单与提交订单等重复请求直接使用缓存的路线
      * @param calculateDrivingLineForm 包含了起点和终点经纬度以及API密钥的表单数据
      * @return 返回一个包含驾车路线信息的对象，包括距离、预计时间和路线多边形
      * @throws GuiguException 如果地图服务返回的状态码不为0，表示请求失败，则抛出异常
      */
     public DrivingLineVo calculateDrivingLine(CalculateDrivingLineForm calculateDrivingLineForm) {
-        // 腾讯地图API的URL，用于请求驾车路线
-        String url = "https://apis.map.qq.com/ws/direction/v1/driving/?from={from}&to={to}&key={key}";
+        try {
+            return calculateDrivingLineAsync(calculateDrivingLineForm).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof GuiguException) {
+                throw (GuiguException) e.getCause();
+            }
+            throw e;
+        }
+    }
 
+    @Override
+    public CompletableFuture<DrivingLineVo> calculateDrivingLineAsync(CalculateDrivingLineForm calculateDrivingLineForm) {
+        boolean fallback = routeProperties.getFallbackEnabled() && offlineMapService.isAvailable();
+        if (ENGINE_OFFLINE.equals(routeProperties.getEngine())) {
+            CompletableFuture<DrivingLineVo> offline = offlineMapService.calculateDrivingLineAsync(calculateDrivingLineForm);
+            if (!routeProperties.getFallbackEnabled()) {
+                return offline;
+            }
+            return offline.exceptionallyCompose(e -> {
+                log.warn("离线路网计算路线失败，使用腾讯地图接口：{}", e.getMessage());
+                return drivingLineCache.get(calculateDrivingLineForm, () -> requestDrivingLine(calculateDrivingLineForm));
+            });
+        }
+        CompletableFuture<DrivingLineVo> online = drivingLineCache.get(calculateDrivingLineForm, () -> requestDrivingLine(calculateDrivingLineForm));
+        if (!fallback) {
+            return online;
+        }
+        // 降级结果不写入路线缓存，接口恢复后立即使用腾讯地图路线
+        return online.exceptionallyCompose(e -> {
+            log.warn("腾讯地图接口计算路线失败，使用离线路网：{}", e.getMessage());
+            return offlineMapService.calculateDrivingLineAsync(calculateDrivingLineForm);
+        });
+    }
+
+    @Override
+    public DrivingLineCacheStatsVo getDrivingLineCacheStats() {
+        DrivingLineCacheStatsVo drivingLineCacheStatsVo = drivingLineCache.getStats();
+        drivingLineCacheStatsVo.setRequestCount(tencentMapClient.getRequestCount());
+        drivingLineCacheStatsVo.setCoalescedCount(drivingLineCacheStatsVo.getCoalescedCount() + tencentMapClient.getCoalescedCount());
+        drivingLineCacheStatsVo.setRejectedCount(tencentMapClient.getRejectedCount());
+        return drivingLineCacheStatsVo;
+    }
+
+    /**
+     * 异步调用腾讯地图驾车路线接口
+     */
+    private CompletableFuture<DrivingLineVo> requestDrivingLine(CalculateDrivingLineForm calculateDrivingLineForm) {
         // 创建一个映射，用于存储请求参数
         Map<String, String> map = new HashMap<>();
         // 设置起点，将纬度和经度拼接成腾讯地图API所需的格式
         map.put("from", calculateDrivingLineForm.getStartPointLatitude() + "," + calculateDrivingLineForm.getStartPointLongitude());
         // 设置终点，同样将纬度和经度拼接成所需的格式
         map.put("to", calculateDrivingLineForm.getEndPointLatitude() + "," + calculateDrivingLineForm.getEndPointLongitude());
-        // 设置API密钥
-        map.put("key", key);
-
-        // 使用RestTemplate发送GET请求并接收返回的JSON对象
-        JSONObject result = restTemplate.getForObject(url, JSONObject.class, map);
-        // 检查返回的状态码，如果不为0，则表示请求失败
-        if(result.getIntValue("status") != 0) {
-            // 抛出异常，表示地图服务请求失败
-            throw new GuiguException(ResultCodeEnum.MAP_FAIL);
-        }
 
-        // 解析返回的JSON对象，获取第一条驾车路线（默认为最佳路线）
-        JSONObject route = result.getJSONObject("result").getJSONArray("routes").getJSONObject(0);
-        // 创建驾车路线VO对象，用于存储驾车路线信息
-        DrivingLineVo drivingLineVo = new DrivingLineVo();
-        // 计算距离，单位转换为千米，并保留两位小数
-        drivingLineVo.setDistance(route.getBigDecimal("distance").divide(new BigDecimal(1000)).setScale(2, RoundingMode.HALF_UP));
-        // 设置预计时间，单位为秒
-        drivingLineVo.setDuration(route.getBigDecimal("duration"));
-        // 设置路线多边形，用于标识驾车路线
-        drivingLineVo.setPolyline(route.getJSONArray("polyline"));
-        // 返回驾车路线VO对象
-        return drivingLineVo;
+        // 异步发送GET请求，状态码不为0时由客户端以 MAP_FAIL 异常结束
+        return tencentMapClient.get("direction/v1/driving", map).thenApply(result -> {
+            // 解析返回的JSON对象，获取第一条驾车路线（默认为最佳路线）
+            JSONObject route = result.getJSONObject("result").getJSONArray("routes").getJSONObject(0);
+            // 创建驾车路线VO对象，用于存储驾车路线信息
+            DrivingLineVo drivingLineVo = new DrivingLineVo();
+            // 计算距离，单位转换为千米，并保留两位小数
+            drivingLineVo.setDistance(route.getBigDecimal("distance").divide(new BigDecimal(1000)).setScale(2, RoundingMode.HALF_UP));
+            // 设置预计时间，单位为秒
+            drivingLineVo.setDuration(route.getBigDecimal("duration"));
+            // 设置路线多边形，用于标识驾车路线，编码后传输，不再逐个传输JSON数字
+            drivingLineVo.setEncodedPolyline(PolylineUtil.encodeTencent(route.getJSONArray("polyline")));
+            // 返回驾车路线VO对象
+            return drivingLineVo;
+        });
     }
 
 
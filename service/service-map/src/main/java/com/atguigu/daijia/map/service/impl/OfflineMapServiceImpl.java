@@ -0,0 +1,180 @@
+package com.atguigu.daijia.map.service.impl;
+
+import com.atguigu.daijia.common.execption.GuiguException;
+import com.atguigu.daijia.common.result.ResultCodeEnum;
+import com.atguigu.daijia.common.util.LocationUtil;
+import com.atguigu.daijia.common.util.PolylineUtil;
+import com.atguigu.daijia.map.config.RouteProperties;
+import com.atguigu.daijia.map.route.AStarRouter;
+import com.atguigu.daijia.map.route.RoadGraph;
+import com.atguigu.daijia.map.route.RoutePath;
+import com.atguigu.daijia.map.service.MapService;
+import com.atguigu.daijia.model.form.map.CalculateDrivingLineForm;
+import com.atguigu.daijia.model.vo.map.DrivingLineCacheStatsVo;
+import com.atguigu.daijia.model.vo.map.DrivingLineVo;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 离线路网计算驾车路线
+ * <p>
+ * 启动时从 map.route.graph-file 加载本地路网，在进程内用A*计算最短路径，不依赖腾讯地图接口。
+ * 可以通过 map.route.engine=offline 作为主引擎，也可以在腾讯地图接口失败时作为降级（map.route.fallback-enabled）。
+ * 返回的路线坐标与腾讯地图接口的结果一样编码为 encodedPolyline
+ */
+@Slf4j
+@Service
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class OfflineMapServiceImpl implements MapService {
+
+    private static final double SCALE = 1_000_000d;
+
+    @Autowired
+    private RouteProperties routeProperties;
+
+    // 路网与路径计算一起替换，读取时从同一个router取路网
+    private volatile AStarRouter router;
+
+    @PostConstruct
+    public void init() {
+        if (!StringUtils.hasText(routeProperties.getGraphFile())) {
+            return;
+        }
+        try {
+            load(Path.of(routeProperties.getGraphFile()));
+        } catch (Exception e) {
+            // 路网加载失败不影响启动，仍可使用腾讯地图接口
+            log.error("加载离线路网失败：{}", routeProperties.getGraphFile(), e);
+        }
+    }
+
+    /**
+     * 加载路网文件，加载完成后替换当前路网
+     */
+    public void load(Path graphFile) throws IOException {
+        long start = System.currentTimeMillis();
+        RoadGraph graph;
+        try (BufferedReader reader = Files.newBufferedReader(graphFile, StandardCharsets.UTF_8)) {
+            graph = RoadGraph.load(reader);
+        }
+        this.router = new AStarRouter(graph);
+        log.info("加载离线路网：{}，节点数：{}，边数：{}，耗时：{}ms", graphFile, graph.nodeCount(), graph.edgeCount(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 是否已加载路网
+     */
+    public boolean isAvailable() {
+        return router != null;
+    }
+
+    /**
+     * 当前路网，未加载时返回null
+     */
+    public RoadGraph getRoadGraph() {
+        AStarRouter current = router;
+        return current == null ? null : current.getGraph();
+    }
+
+    /**
+     * 当前路网的路径计算，未加载时返回null
+     */
+    public AStarRouter getRouter() {
+        return router;
+    }
+
+    /**
+     * 起终点先吸附到最近的路网节点，节点之间按A*最短路径；
+     * 起点到起点节点、终点节点到终点两段按直线距离和 eta-speed-kmh 计入距离和时间（与ETA计算一致），并画入路线
+     */
+    @Override
+    public DrivingLineVo calculateDrivingLine(CalculateDrivingLineForm calculateDrivingLineForm) {
+        AStarRouter currentRouter = router;
+        if (currentRouter == null) {
+            throw new GuiguException(ResultCodeEnum.MAP_FAIL);
+        }
+        RoadGraph graph = currentRouter.getGraph();
+        double startLatitude = calculateDrivingLineForm.getStartPointLatitude().doubleValue();
+        double startLongitude = calculateDrivingLineForm.getStartPointLongitude().doubleValue();
+        double endLatitude = calculateDrivingLineForm.getEndPointLatitude().doubleValue();
+        double endLongitude = calculateDrivingLineForm.getEndPointLongitude().doubleValue();
+        double maxMeters = routeProperties.getSnapMaxMeters();
+        int source = graph.nearestNode(startLatitude, startLongitude, maxMeters);
+        int target = graph.nearestNode(endLatitude, endLongitude, maxMeters);
+        if (source < 0 || target < 0) {
+            // 起点或终点不在路网覆盖范围内
+            throw new GuiguException(ResultCodeEnum.MAP_FAIL);
+        }
+        RoutePath path = currentRouter.route(source, target);
+        if (path == null) {
+            throw new GuiguException(ResultCodeEnum.MAP_FAIL);
+        }
+
+        double snapMeters = LocationUtil.getDistanceFast(startLatitude, startLongitude, graph.latitude(source), graph.longitude(source))
+                + LocationUtil.getDistanceFast(graph.latitude(target), graph.longitude(target), endLatitude, endLongitude);
+        double meters = path.getMeters() + snapMeters;
+        double seconds = path.getSeconds() + snapMeters / (routeProperties.getEtaSpeedKmh() / 3.6);
+
+        DrivingLineVo drivingLineVo = new DrivingLineVo();
+        // 距离单位转换为千米，保留两位小数
+        drivingLineVo.setDistance(BigDecimal.valueOf(meters).divide(new BigDecimal(1000)).setScale(2, RoundingMode.HALF_UP));
+        // 预计时间单位为分钟，与腾讯地图接口一致向上取整
+        drivingLineVo.setDuration(BigDecimal.valueOf((long) Math.ceil(seconds / 60)));
+        drivingLineVo.setEncodedPolyline(toEncodedPolyline(graph, path.getNodes(), startLatitude, startLongitude, endLatitude, endLongitude));
+        return drivingLineVo;
+    }
+
+    @Override
+    public CompletableFuture<DrivingLineVo> calculateDrivingLineAsync(CalculateDrivingLineForm calculateDrivingLineForm) {
+        // 进程内计算，直接在调用线程完成
+        try {
+            return CompletableFuture.completedFuture(calculateDrivingLine(calculateDrivingLineForm));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public DrivingLineCacheStatsVo getDrivingLineCacheStats() {
+        // 离线路网不经过路线缓存
+        DrivingLineCacheStatsVo drivingLineCacheStatsVo = new DrivingLineCacheStatsVo();
+        drivingLineCacheStatsVo.setLocalHitCount(0L);
+        drivingLineCacheStatsVo.setRedisHitCount(0L);
+        drivingLineCacheStatsVo.setMissCount(0L);
+        drivingLineCacheStatsVo.setLocalSize(0);
+        drivingLineCacheStatsVo.setRequestCount(0L);
+        drivingLineCacheStatsVo.setCoalescedCount(0L);
+        drivingLineCacheStatsVo.setRejectedCount(0L);
+        return drivingLineCacheStatsVo;
+    }
+
+    /**
+     * 路线坐标：起点、途经的路网节点、终点
+     */
+    private static String toEncodedPolyline(RoadGraph graph, int[] nodes, double startLatitude, double startLongitude,
+                                            double endLatitude, double endLongitude) {
+        int count = nodes.length + 2;
+        int[] microDegrees = new int[count * 2];
+        microDegrees[0] = (int) Math.round(startLatitude * SCALE);
+        microDegrees[1] = (int) Math.round(startLongitude * SCALE);
+        for (int i = 0; i < nodes.length; i++) {
+            microDegrees[i * 2 + 2] = (int) Math.round(graph.latitude(nodes[i]) * SCALE);
+            microDegrees[i * 2 + 3] = (int) Math.round(graph.longitude(nodes[i]) * SCALE);
+        }
+        microDegrees[count * 2 - 2] = (int) Math.round(endLatitude * SCALE);
+        microDegrees[count * 2 - 1] = (int) Math.round(endLongitude * SCALE);
+        return PolylineUtil.encode(microDegrees, count);
+    }
+}
@@ -0,0 +1,98 @@
+package com.atguigu.daijia.map.trail;
+
+import java.util.Arrays;
+
+/**
+ * Douglas-Peucker 轨迹简化
+ * 使用显式栈代替递归，直接在基本类型数组上计算，不创建点对象；
+ * 点到线段的距离在以起点为原点的局部平面（等距圆柱投影）上计算，单位：米
+ */
+public class DouglasPeucker {
+
+    // 每度对应的米数
+    private static final double METERS_PER_DEGREE = 111320;
+
+    /**
+     * 简化轨迹
+     *
+     * @param trail           原始轨迹
+     * @param toleranceMeters 容差，单位：米，偏离首尾连线小于该值的点被删除
+     * @return 保留的点的下标，升序
+     */
+    public static int[] simplify(OrderTrail trail, double toleranceMeters) {
+        int size = trail.size();
+        if (size <= 2) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+        double cosLatitude = Math.cos(Math.toRadians(trail.latitude(0)));
+
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = size - 1;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            if (end - start < 2) {
+                continue;
+            }
+            double ax = trail.longitude(start) * cosLatitude * METERS_PER_DEGREE;
+            double ay = trail.latitude(start) * METERS_PER_DEGREE;
+            double bx = trail.longitude(end) * cosLatitude * METERS_PER_DEGREE;
+            double by = trail.latitude(end) * METERS_PER_DEGREE;
+            double maxDistance = -1;
+            int maxIndex = -1;
+            for (int i = start + 1; i < end; i++) {
+                double distance = segmentDistance(trail.longitude(i) * cosLatitude * METERS_PER_DEGREE, trail.latitude(i) * METERS_PER_DEGREE, ax, ay, bx, by);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    maxIndex = i;
+                }
+            }
+            if (maxDistance > toleranceMeters) {
+                keep[maxIndex] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length << 1);
+                }
+                stack[top++] = start;
+                stack[top++] = maxIndex;
+                stack[top++] = maxIndex;
+                stack[top++] = end;
+            }
+        }
+
+        int count = 0;
+        for (boolean k : keep) {
+            if (k) {
+                count++;
+            }
+        }
+        int[] indexes = new int[count];
+        for (int i = 0, j = 0; i < size; i++) {
+            if (keep[i]) {
+                indexes[j++] = i;
+            }
+        }
+        return indexes;
+    }
+
+    // 点(px, py)到线段(ax, ay)-(bx, by)的距离
+    private static double segmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        if (lengthSquared == 0) {
+            return Math.hypot(px - ax, py - ay);
+        }
+        double t = ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(px - (ax + t * dx), py - (ay + t * dy));
+    }
+}
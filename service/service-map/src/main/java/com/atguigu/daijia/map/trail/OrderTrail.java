@@ -0,0 +1,63 @@
+package com.atguigu.daijia.map.trail;
+
+import java.util.Arrays;
+
+/**
+ * 解码后的订单轨迹
+ * 使用并行的基本类型数组按时间顺序保存各点的纬度、经度和上报时间（毫秒）
+ */
+public class OrderTrail {
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private long[] times;
+    private int size;
+
+    public OrderTrail(int capacity) {
+        latitudes = new double[Math.max(capacity, 8)];
+        longitudes = new double[latitudes.length];
+        times = new long[latitudes.length];
+    }
+
+    public void add(double latitude, double longitude, long time) {
+        if (size == latitudes.length) {
+            latitudes = Arrays.copyOf(latitudes, size << 1);
+            longitudes = Arrays.copyOf(longitudes, size << 1);
+            times = Arrays.copyOf(times, size << 1);
+        }
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        times[size] = time;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double latitude(int i) {
+        return latitudes[i];
+    }
+
+    public double longitude(int i) {
+        return longitudes[i];
+    }
+
+    public long time(int i) {
+        return times[i];
+    }
+
+    /**
+     * 纬度数组（只有前 size() 个有效），用于 LocationUtil 的批量计算
+     */
+    public double[] latitudes() {
+        return latitudes;
+    }
+
+    /**
+     * 经度数组（只有前 size() 个有效），用于 LocationUtil 的批量计算
+     */
+    public double[] longitudes() {
+        return longitudes;
+    }
+}
@@ -0,0 +1,273 @@
+package com.atguigu.daijia.map.trail;
+
+import com.atguigu.daijia.map.repository.OrderServiceLocationArchiveRepository;
+import com.atguigu.daijia.map.repository.OrderServiceLocationRepository;
+import com.atguigu.daijia.model.entity.map.OrderServiceLocation;
+import com.atguigu.daijia.model.entity.map.OrderServiceLocationArchive;
+import com.atguigu.daijia.model.entity.map.OrderServiceLocationBucket;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 订单原始轨迹归档
+ * <p>
+ * 最后一个位置点早于截止时间的订单（代驾早已结束），把分桶和旧格式的原始轨迹合并为一条压缩文档写入 OrderServiceLocationArchive，
+ * 再从原始轨迹集合中删除，使热数据集合和索引保持较小；展示用的简化轨迹（OrderServiceTrail）不归档。
+ * 先写归档再删除，中途失败重新执行时会与已有归档合并，不会丢失数据；
+ * 此时剩余的原始点（可能只删除了一部分）已包含在归档中，合并时按（时间, 坐标）去掉重复的点
+ */
+@Slf4j
+@Component
+public class OrderTrailArchiver {
+
+    private static final double SCALE = 1_000_000d;
+
+    // 归档数据格式版本
+    private static final int FORMAT_VERSION = 1;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private OrderTrailStore orderTrailStore;
+
+    @Autowired
+    private OrderServiceLocationRepository orderServiceLocationRepository;
+
+    @Autowired
+    private OrderServiceLocationArchiveRepository orderServiceLocationArchiveRepository;
+
+    /**
+     * 查找有早于截止时间的原始轨迹的订单，按订单id升序
+     *
+     * @param cutoffTime   截止时间
+     * @param afterOrderId 只返回大于该id的订单，用于分批遍历
+     * @param limit        最多返回的订单数
+     */
+    public List<Long> findOrderIds(Date cutoffTime, long afterOrderId, int limit) {
+        TreeSet<Long> orderIdSet = new TreeSet<>();
+        collectOrderIds(OrderServiceLocationBucket.class, "bt", cutoffTime, afterOrderId, limit, orderIdSet);
+        collectOrderIds(OrderServiceLocation.class, "createTime", cutoffTime, afterOrderId, limit, orderIdSet);
+        // 两个集合各取前limit个，合并后的前limit个仍是连续的
+        List<Long> orderIdList = new ArrayList<>(limit);
+        for (Long orderId : orderIdSet) {
+            if (orderIdList.size() >= limit) {
+                break;
+            }
+            orderIdList.add(orderId);
+        }
+        return orderIdList;
+    }
+
+    /**
+     * 归档一个订单的原始轨迹
+     *
+     * @param cutoffTime 截止时间，订单在此之后仍有位置点时（代驾可能仍在进行）不归档
+     * @return 是否已归档
+     */
+    public boolean archive(Long orderId, Date cutoffTime) {
+        Query recentBucketQuery = new Query(Criteria.where("orderId").is(orderId).and("bt").gte(cutoffTime));
+        Query recentLocationQuery = new Query(Criteria.where("orderId").is(orderId).and("createTime").gte(cutoffTime));
+        if (mongoTemplate.exists(recentBucketQuery, OrderServiceLocationBucket.class) || mongoTemplate.exists(recentLocationQuery, OrderServiceLocation.class)) {
+            return false;
+        }
+
+        // 有分桶数据时以分桶为准（迁移期间两种格式会重复写入），否则读取旧格式
+        OrderTrail trail = orderTrailStore.loadTrail(orderId);
+        if (trail.size() == 0) {
+            List<OrderServiceLocation> locationList = orderServiceLocationRepository.findByOrderIdOrderByCreateTimeAsc(orderId);
+            trail = new OrderTrail(locationList.size());
+            for (OrderServiceLocation location : locationList) {
+                trail.add(location.getLatitude().doubleValue(), location.getLongitude().doubleValue(), location.getCreateTime().getTime());
+            }
+        }
+        // 与上次中途失败时已写入的归档合并，去掉已归档的点
+        OrderServiceLocationArchive existing = orderServiceLocationArchiveRepository.findById(orderId).orElse(null);
+        if (existing != null) {
+            trail = merge(decode(existing.getData()), trail);
+        }
+
+        if (trail.size() > 0) {
+            OrderServiceLocationArchive archive = new OrderServiceLocationArchive();
+            archive.setId(orderId);
+            archive.setPointCount(trail.size());
+            archive.setStartTime(new Date(trail.time(0)));
+            archive.setEndTime(new Date(trail.time(trail.size() - 1)));
+            archive.setData(encode(trail));
+            archive.setCreateTime(new Date());
+            orderServiceLocationArchiveRepository.save(archive);
+        }
+
+        Query orderQuery = new Query(Criteria.where("orderId").is(orderId));
+        mongoTemplate.remove(orderQuery, OrderServiceLocationBucket.class);
+        mongoTemplate.remove(orderQuery, OrderServiceLocation.class);
+        return true;
+    }
+
+    /**
+     * 读取并解码已归档的轨迹
+     *
+     * @return 没有归档时返回空轨迹
+     */
+    public OrderTrail loadTrail(Long orderId) {
+        OrderServiceLocationArchive archive = orderServiceLocationArchiveRepository.findById(orderId).orElse(null);
+        if (archive == null) {
+            return new OrderTrail(0);
+        }
+        return decode(archive.getData());
+    }
+
+    private void collectOrderIds(Class<?> entityClass, String timeField, Date cutoffTime, long afterOrderId, int limit, Set<Long> orderIdSet) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where(timeField).lt(cutoffTime).and("orderId").gt(afterOrderId)),
+                Aggregation.group("orderId"),
+                Aggregation.sort(Sort.by("_id")),
+                Aggregation.limit(limit));
+        for (Document document : mongoTemplate.aggregate(aggregation, entityClass, Document.class)) {
+            Long orderId = document.getLong("_id");
+            if (orderId != null) {
+                orderIdSet.add(orderId);
+            }
+        }
+    }
+
+    /**
+     * 按时间合并已归档的轨迹和剩余的原始轨迹
+     * 同一时间（分桶中同一次批量写入的点时间相同）先输出归档中的点，原始轨迹中按归档精度坐标相同的点视为已归档，每个归档点只抵消一个
+     */
+    static OrderTrail merge(OrderTrail archived, OrderTrail raw) {
+        OrderTrail trail = new OrderTrail(archived.size() + raw.size());
+        int i = 0;
+        int j = 0;
+        while (i < archived.size() || j < raw.size()) {
+            long time = i < archived.size() && (j >= raw.size() || archived.time(i) <= raw.time(j)) ? archived.time(i) : raw.time(j);
+            int archivedStart = i;
+            while (i < archived.size() && archived.time(i) == time) {
+                trail.add(archived.latitude(i), archived.longitude(i), time);
+                i++;
+            }
+            boolean[] matched = new boolean[i - archivedStart];
+            for (; j < raw.size() && raw.time(j) == time; j++) {
+                if (!matchArchived(archived, archivedStart, matched, raw.latitude(j), raw.longitude(j))) {
+                    trail.add(raw.latitude(j), raw.longitude(j), time);
+                }
+            }
+        }
+        return trail;
+    }
+
+    // 在同一时间的归档点中找一个坐标相同且未被抵消的点
+    private static boolean matchArchived(OrderTrail archived, int start, boolean[] matched, double latitude, double longitude) {
+        long lat = Math.round(latitude * SCALE);
+        long lng = Math.round(longitude * SCALE);
+        for (int k = 0; k < matched.length; k++) {
+            if (!matched[k] && Math.round(archived.latitude(start + k) * SCALE) == lat && Math.round(archived.longitude(start + k) * SCALE) == lng) {
+                matched[k] = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static byte[] encode(OrderTrail trail) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(trail.size() * 4 + 16);
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeByte(FORMAT_VERSION);
+            writeVarLong(out, trail.size());
+            long lastLatitude = 0;
+            long lastLongitude = 0;
+            long lastTime = 0;
+            for (int i = 0; i < trail.size(); i++) {
+                long latitude = Math.round(trail.latitude(i) * SCALE);
+                long longitude = Math.round(trail.longitude(i) * SCALE);
+                long time = trail.time(i);
+                writeVarLong(out, zigzag(latitude - lastLatitude));
+                writeVarLong(out, zigzag(longitude - lastLongitude));
+                writeVarLong(out, zigzag(time - lastTime));
+                lastLatitude = latitude;
+                lastLongitude = longitude;
+                lastTime = time;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static OrderTrail decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data)))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("不支持的轨迹归档格式版本：" + version);
+            }
+            int size = (int) readVarLong(in);
+            OrderTrail trail = new OrderTrail(size);
+            long latitude = 0;
+            long longitude = 0;
+            long time = 0;
+            for (int i = 0; i < size; i++) {
+                latitude += unzigzag(readVarLong(in));
+                longitude += unzigzag(readVarLong(in));
+                time += unzigzag(readVarLong(in));
+                trail.add(latitude / SCALE, longitude / SCALE, time);
+            }
+            return trail;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("轨迹归档数据不完整");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("轨迹归档数据格式错误");
+    }
+}
@@ -0,0 +1,15 @@
+package com.atguigu.daijia.map.trail;
+
+import com.atguigu.daijia.model.form.map.OrderServiceLocationForm;
+
+import java.util.List;
+
+/**
+ * 一个订单一次上报的位置点，等待写入轨迹分桶
+ *
+ * @param orderId      订单ID
+ * @param locationList 按上报顺序排列的位置点
+ * @param createTime   上报时间（毫秒）
+ */
+record OrderTrailBatch(Long orderId, List<OrderServiceLocationForm> locationList, long createTime) {
+}
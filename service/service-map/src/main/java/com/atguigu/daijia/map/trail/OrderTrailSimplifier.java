@@ -0,0 +1,156 @@
+package com.atguigu.daijia.map.trail;
+
+import com.atguigu.daijia.map.config.TrailProperties;
+import com.atguigu.daijia.map.repository.OrderServiceLocationRepository;
+import com.atguigu.daijia.map.repository.OrderServiceTrailRepository;
+import com.atguigu.daijia.model.entity.map.OrderServiceLocation;
+import com.atguigu.daijia.model.entity.map.OrderServiceTrail;
+import com.atguigu.daijia.model.entity.map.OrderServiceTrailLevel;
+import com.atguigu.daijia.model.vo.map.OrderLocationVo;
+import com.atguigu.daijia.model.vo.map.OrderServiceTrailVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单简化轨迹
+ * <p>
+ * 代驾结束时（结束代驾流程调用 saveOrderServiceTrail）读取一次原始轨迹，按配置的每个地图缩放级别用 Douglas-Peucker
+ * 生成一份简化轨迹保存到 OrderServiceTrail，乘客端和管理端回放轨迹时只读取对应级别的简化点，不再读取全部原始点。
+ * 简化只用于展示，订单实际里程仍按原始轨迹计算。
+ * <p>
+ * 没有在位置上报时逐点流式简化：Douglas-Peucker 需要整条轨迹才能确定保留的点，流式近似的结果与整条简化不一致；
+ * 同一订单的上报分散在多个实例上异步写入，流式简化还需要在实例间共享每个订单的简化状态。
+ * 而保存的简化轨迹只在代驾结束后才需要，结束时在后台线程对整条轨迹简化一次（单次 O(n log n)，一单通常只有几千个点），
+ * 代驾进行中的回放按请求的级别即时简化。
+ * 原始轨迹依次从分桶、归档和旧格式的 OrderServiceLocation 读取
+ */
+@Slf4j
+@Component
+public class OrderTrailSimplifier {
+
+    private static final double SCALE = 1_000_000d;
+
+    @Autowired
+    private OrderTrailStore orderTrailStore;
+
+    @Autowired
+    private OrderServiceTrailRepository orderServiceTrailRepository;
+
+    @Autowired
+    private TrailProperties trailProperties;
+
+    @Autowired
+    private OrderTrailArchiver orderTrailArchiver;
+
+    @Autowired
+    private OrderServiceLocationRepository orderServiceLocationRepository;
+
+    /**
+     * 生成并保存各缩放级别的简化轨迹（重复调用会覆盖）
+     */
+    public void save(Long orderId) {
+        OrderTrail trail = loadTrail(orderId);
+        if (trail.size() == 0) {
+            return;
+        }
+        List<OrderServiceTrailLevel> levels = new ArrayList<>();
+        for (Map.Entry<Integer, Double> entry : trailProperties.getZoomToleranceMeters().entrySet()) {
+            OrderServiceTrailLevel level = new OrderServiceTrailLevel();
+            level.setZoom(entry.getKey());
+            level.setToleranceMeters(entry.getValue());
+            level.setPoints(toMicroDegrees(trail, DouglasPeucker.simplify(trail, entry.getValue())));
+            levels.add(level);
+        }
+        OrderServiceTrail orderServiceTrail = new OrderServiceTrail();
+        orderServiceTrail.setId(orderId);
+        orderServiceTrail.setPointCount(trail.size());
+        orderServiceTrail.setLevels(levels);
+        orderServiceTrail.setCreateTime(new Date());
+        orderServiceTrailRepository.save(orderServiceTrail);
+        log.info("保存订单简化轨迹，订单：{}，原始点数：{}", orderId, trail.size());
+    }
+
+    /**
+     * 获取指定缩放级别的轨迹
+     * 已保存简化轨迹时直接读取最接近的级别；代驾进行中还没有保存时，按该级别的容差即时简化
+     */
+    public OrderServiceTrailVo getTrail(Long orderId, Integer zoom) {
+        OrderServiceTrailVo orderServiceTrailVo = new OrderServiceTrailVo();
+        orderServiceTrailVo.setOrderId(orderId);
+
+        OrderServiceTrail orderServiceTrail = orderServiceTrailRepository.findById(orderId).orElse(null);
+        if (orderServiceTrail != null && orderServiceTrail.getLevels() != null && !orderServiceTrail.getLevels().isEmpty()) {
+            OrderServiceTrailLevel nearest = null;
+            for (OrderServiceTrailLevel level : orderServiceTrail.getLevels()) {
+                if (nearest == null || Math.abs(level.getZoom() - zoom) < Math.abs(nearest.getZoom() - zoom)) {
+                    nearest = level;
+                }
+            }
+            orderServiceTrailVo.setZoom(nearest.getZoom());
+            orderServiceTrailVo.setPointCount(orderServiceTrail.getPointCount());
+            orderServiceTrailVo.setPoints(toLocationList(nearest.getPoints()));
+            return orderServiceTrailVo;
+        }
+
+        Map.Entry<Integer, Double> nearest = null;
+        for (Map.Entry<Integer, Double> entry : trailProperties.getZoomToleranceMeters().entrySet()) {
+            if (nearest == null || Math.abs(entry.getKey() - zoom) < Math.abs(nearest.getKey() - zoom)) {
+                nearest = entry;
+            }
+        }
+        OrderTrail trail = loadTrail(orderId);
+        int[] points = nearest == null
+                ? toMicroDegrees(trail, DouglasPeucker.simplify(trail, 0))
+                : toMicroDegrees(trail, DouglasPeucker.simplify(trail, nearest.getValue()));
+        orderServiceTrailVo.setZoom(nearest == null ? zoom : nearest.getKey());
+        orderServiceTrailVo.setPointCount(trail.size());
+        orderServiceTrailVo.setPoints(toLocationList(points));
+        return orderServiceTrailVo;
+    }
+
+    /**
+     * 读取原始轨迹：分桶 -> 归档 -> 旧格式每个点一条的 OrderServiceLocation
+     */
+    private OrderTrail loadTrail(Long orderId) {
+        OrderTrail trail = orderTrailStore.loadTrail(orderId);
+        if (trail.size() == 0) {
+            trail = orderTrailArchiver.loadTrail(orderId);
+        }
+        if (trail.size() == 0) {
+            List<OrderServiceLocation> orderServiceLocationList = orderServiceLocationRepository.findByOrderIdOrderByCreateTimeAsc(orderId);
+            trail = new OrderTrail(orderServiceLocationList.size());
+            for (OrderServiceLocation orderServiceLocation : orderServiceLocationList) {
+                trail.add(orderServiceLocation.getLatitude().doubleValue(), orderServiceLocation.getLongitude().doubleValue(),
+                        orderServiceLocation.getCreateTime() == null ? 0 : orderServiceLocation.getCreateTime().getTime());
+            }
+        }
+        return trail;
+    }
+
+    private static int[] toMicroDegrees(OrderTrail trail, int[] indexes) {
+        int[] points = new int[indexes.length * 2];
+        for (int i = 0; i < indexes.length; i++) {
+            points[i * 2] = (int) Math.round(trail.latitude(indexes[i]) * SCALE);
+            points[i * 2 + 1] = (int) Math.round(trail.longitude(indexes[i]) * SCALE);
+        }
+        return points;
+    }
+
+    private static List<OrderLocationVo> toLocationList(int[] points) {
+        List<OrderLocationVo> list = new ArrayList<>(points.length / 2);
+        for (int i = 0; i + 1 < points.length; i += 2) {
+            OrderLocationVo orderLocationVo = new OrderLocationVo();
+            orderLocationVo.setLatitude(BigDecimal.valueOf(points[i], 6));
+            orderLocationVo.setLongitude(BigDecimal.valueOf(points[i + 1], 6));
+            list.add(orderLocationVo);
+        }
+        return list;
+    }
+}
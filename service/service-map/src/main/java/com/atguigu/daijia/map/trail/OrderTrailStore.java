@@ -0,0 +1,183 @@
+package com.atguigu.daijia.map.trail;
+
+import com.atguigu.daijia.map.repository.OrderServiceLocationBucketRepository;
+import com.atguigu.daijia.model.entity.map.OrderServiceLocationBucket;
+import com.atguigu.daijia.model.entity.map.OrderServiceLocationChunk;
+import com.atguigu.daijia.model.form.map.OrderServiceLocationForm;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单轨迹分桶存储
+ * <p>
+ * 每个订单每分钟一个 OrderServiceLocationBucket 文档，每次位置上报用 $push + upsert 追加一个数据块：
+ * 坐标换算为整数微度，块内第一个点保存绝对值，后续点只保存与前一个点的差值。
+ * 相比每个点一条带ObjectId、Date和BigDecimal的文档，存储量和索引条目都大幅减少，读取整条轨迹也只需读取少量文档。
+ * 数据块互相独立，解码时不依赖其他块
+ */
+@Component
+public class OrderTrailStore {
+
+    // 坐标换算为整数时的倍数（微度）
+    private static final double SCALE = 1_000_000d;
+
+    // 分桶时长：1分钟
+    private static final long BUCKET_MILLIS = 60 * 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private OrderServiceLocationBucketRepository orderServiceLocationBucketRepository;
+
+    /**
+     * 追加一批位置点，同一订单的点编码为一个数据块
+     *
+     * @param orderLocationServiceFormList 按上报顺序排列的位置点，可以包含多个订单
+     * @param createTime                   上报时间
+     */
+    public void append(List<OrderServiceLocationForm> orderLocationServiceFormList, Date createTime) {
+        if (CollectionUtils.isEmpty(orderLocationServiceFormList)) {
+            return;
+        }
+        Map<Long, List<OrderServiceLocationForm>> orderLocationMap = new LinkedHashMap<>();
+        for (OrderServiceLocationForm form : orderLocationServiceFormList) {
+            orderLocationMap.computeIfAbsent(form.getOrderId(), key -> new ArrayList<>()).add(form);
+        }
+        List<OrderTrailBatch> batchList = new ArrayList<>(orderLocationMap.size());
+        for (Map.Entry<Long, List<OrderServiceLocationForm>> entry : orderLocationMap.entrySet()) {
+            batchList.add(new OrderTrailBatch(entry.getKey(), entry.getValue(), createTime.getTime()));
+        }
+        appendAll(batchList);
+    }
+
+    /**
+     * 批量追加多次上报的位置点，所有数据块在同一个无序bulk请求中写入
+     * 同一订单的多个数据块写入顺序不确定，读取时按时间偏移排序
+     *
+     * @param batchList 每个元素为一个订单一次上报的位置点
+     */
+    void appendAll(List<OrderTrailBatch> batchList) {
+        if (CollectionUtils.isEmpty(batchList)) {
+            return;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OrderServiceLocationBucket.class);
+        for (OrderTrailBatch batch : batchList) {
+            long time = batch.createTime();
+            long bucketStart = time - time % BUCKET_MILLIS;
+            OrderServiceLocationChunk chunk = encode(batch.locationList(), (int) (time - bucketStart));
+
+            Query query = new Query(Criteria.where("id").is(bucketId(batch.orderId(), bucketStart)));
+            Update update = new Update()
+                    .push("chunks", chunk)
+                    .inc("count", batch.locationList().size())
+                    .setOnInsert("orderId", batch.orderId())
+                    .setOnInsert("bucketTime", new Date(bucketStart));
+            bulkOperations.upsert(query, update);
+        }
+        bulkOperations.execute();
+    }
+
+    /**
+     * 读取并解码订单的整条轨迹，按时间升序
+     */
+    public OrderTrail loadTrail(Long orderId) {
+        List<OrderServiceLocationBucket> bucketList = orderServiceLocationBucketRepository.findByOrderIdOrderByBucketTimeAsc(orderId);
+        int count = 0;
+        for (OrderServiceLocationBucket bucket : bucketList) {
+            count += bucket.getCount() == null ? 0 : bucket.getCount();
+        }
+        OrderTrail trail = new OrderTrail(count);
+        for (OrderServiceLocationBucket bucket : bucketList) {
+            decode(bucket, trail);
+        }
+        return trail;
+    }
+
+    /**
+     * 订单最后一个位置点，只读取并解码最后一个分桶
+     *
+     * @return {纬度, 经度}，没有轨迹时返回null
+     */
+    public double[] findLastLocation(Long orderId) {
+        OrderServiceLocationBucket bucket = orderServiceLocationBucketRepository.findFirstByOrderIdOrderByBucketTimeDesc(orderId);
+        if (bucket == null) {
+            return null;
+        }
+        OrderTrail trail = new OrderTrail(bucket.getCount() == null ? 0 : bucket.getCount());
+        decode(bucket, trail);
+        if (trail.size() == 0) {
+            return null;
+        }
+        return new double[]{trail.latitude(trail.size() - 1), trail.longitude(trail.size() - 1)};
+    }
+
+    private static OrderServiceLocationChunk encode(List<OrderServiceLocationForm> locationList, int timeOffset) {
+        OrderServiceLocationChunk chunk = new OrderServiceLocationChunk();
+        chunk.setTimeOffset(timeOffset);
+        int[] deltas = new int[(locationList.size() - 1) * 2];
+        int lastLatitude = 0;
+        int lastLongitude = 0;
+        for (int i = 0; i < locationList.size(); i++) {
+            int latitude = toMicroDegree(locationList.get(i).getLatitude().doubleValue());
+            int longitude = toMicroDegree(locationList.get(i).getLongitude().doubleValue());
+            if (i == 0) {
+                chunk.setLatitude(latitude);
+                chunk.setLongitude(longitude);
+            } else {
+                deltas[(i - 1) * 2] = latitude - lastLatitude;
+                deltas[(i - 1) * 2 + 1] = longitude - lastLongitude;
+            }
+            lastLatitude = latitude;
+            lastLongitude = longitude;
+        }
+        chunk.setDeltas(deltas);
+        return chunk;
+    }
+
+    private static void decode(OrderServiceLocationBucket bucket, OrderTrail trail) {
+        if (CollectionUtils.isEmpty(bucket.getChunks())) {
+            return;
+        }
+        long bucketStart = bucket.getBucketTime().getTime();
+        List<OrderServiceLocationChunk> chunkList = new ArrayList<>(bucket.getChunks());
+        // 并发追加时数据块可能乱序，按时间稳定排序
+        chunkList.sort(Comparator.comparingInt(OrderServiceLocationChunk::getTimeOffset));
+        for (OrderServiceLocationChunk chunk : chunkList) {
+            long time = bucketStart + chunk.getTimeOffset();
+            int latitude = chunk.getLatitude();
+            int longitude = chunk.getLongitude();
+            trail.add(latitude / SCALE, longitude / SCALE, time);
+            int[] deltas = chunk.getDeltas();
+            if (deltas == null) {
+                continue;
+            }
+            for (int i = 0; i + 1 < deltas.length; i += 2) {
+                latitude += deltas[i];
+                longitude += deltas[i + 1];
+                trail.add(latitude / SCALE, longitude / SCALE, time);
+            }
+        }
+    }
+
+    private static int toMicroDegree(double degree) {
+        return (int) Math.round(degree * SCALE);
+    }
+
+    private static String bucketId(Long orderId, long bucketStart) {
+        return orderId + "_" + bucketStart;
+    }
+}
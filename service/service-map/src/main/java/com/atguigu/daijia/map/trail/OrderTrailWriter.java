@@ -0,0 +1,360 @@
+package com.atguigu.daijia.map.trail;
+
+import com.atguigu.daijia.map.cache.OrderDistanceCache;
+import com.atguigu.daijia.map.config.TrailProperties;
+import com.atguigu.daijia.model.entity.map.OrderServiceLocation;
+import com.atguigu.daijia.model.form.map.OrderServiceLocationForm;
+import com.atguigu.daijia.model.vo.map.OrderTrailWriteStatsVo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 订单轨迹异步批量写入
+ * <p>
+ * 代驾中位置上报时，里程累加和最后位置已同步写入Redis，轨迹点只进入按订单分组的内存队列后立即返回，
+ * 由独立线程每隔一段时间（或待写入点数达到阈值时）把所有订单的待写入点合并为一次无序bulk写入MongoDB。
+ * 队列有容量上限，超过时丢弃新的轨迹点并计数。
+ * 同一订单的位置上报可能落在多个实例上，各实例写入（或最终丢弃）后在Redis中累加该订单的已写入点数，
+ * 结束代驾读取整条轨迹前先同步刷写本实例的队列，再等待已写入点数追上累加里程时记录的上报点数，保证读取到完整轨迹
+ */
+@Slf4j
+@Component
+public class OrderTrailWriter {
+
+    @Autowired
+    private OrderTrailStore orderTrailStore;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private TrailProperties trailProperties;
+
+    @Autowired
+    private OrderDistanceCache orderDistanceCache;
+
+    // 订单id -> 待写入的上报批次，队列的增删都在ConcurrentHashMap的原子操作中完成
+    private final Map<Long, Deque<PendingBatch>> pending = new ConcurrentHashMap<>();
+
+    // 待写入位置点数
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    // 是否已提交了提前刷写任务，避免达到阈值时重复提交
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-trail-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = trailProperties.getWriteFlushIntervalMs();
+        executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        // 停机前把剩余轨迹点写入MongoDB
+        flush();
+    }
+
+    /**
+     * 加入待写入队列，未开启异步写入时直接写入
+     *
+     * @param orderLocationServiceFormList 按上报顺序排列的位置点，可以包含多个订单
+     * @param createTime                   上报时间
+     */
+    public void add(List<OrderServiceLocationForm> orderLocationServiceFormList, Date createTime) {
+        if (CollectionUtils.isEmpty(orderLocationServiceFormList)) {
+            return;
+        }
+        Map<Long, List<OrderServiceLocationForm>> orderLocationMap = new LinkedHashMap<>();
+        for (OrderServiceLocationForm form : orderLocationServiceFormList) {
+            orderLocationMap.computeIfAbsent(form.getOrderId(), key -> new ArrayList<>()).add(form);
+        }
+        List<PendingBatch> batchList = new ArrayList<>(orderLocationMap.size());
+        for (Map.Entry<Long, List<OrderServiceLocationForm>> entry : orderLocationMap.entrySet()) {
+            batchList.add(new PendingBatch(new OrderTrailBatch(entry.getKey(), entry.getValue(), createTime.getTime())));
+        }
+
+        if (!trailProperties.getWriteBehindEnabled()) {
+            write(batchList);
+            return;
+        }
+
+        List<PendingBatch> droppedList = new ArrayList<>();
+        for (PendingBatch batch : batchList) {
+            int size = batch.size();
+            if (pendingCount.addAndGet(size) > trailProperties.getWriteMaxPending()) {
+                pendingCount.addAndGet(-size);
+                droppedCount.add(size);
+                droppedList.add(batch);
+                log.warn("轨迹待写入队列已满，丢弃位置点，订单：{}，点数：{}", batch.batch.orderId(), size);
+                continue;
+            }
+            enqueue(batch, false);
+        }
+        addWritten(droppedList);
+        if (pendingCount.get() >= trailProperties.getWriteFlushThreshold() && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * 等待订单的轨迹点全部写入MongoDB（结束代驾读取整条轨迹前调用）
+     * 先同步刷写本实例队列中该订单的点，其他实例队列中的点按各自的刷写周期写入，最多等待 write-await-ms
+     *
+     * @return 是否已全部写入，超时返回false
+     */
+    public boolean awaitWritten(Long orderId) {
+        flush(orderId);
+        long deadline = System.currentTimeMillis() + trailProperties.getWriteAwaitMs();
+        while (true) {
+            long unwritten = orderDistanceCache.getUnwrittenCount(orderId);
+            if (unwritten <= 0) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                log.warn("等待订单轨迹写入超时，订单：{}，未写入点数：{}", orderId, unwritten);
+                return false;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 同步写入本实例中订单所有待写入的轨迹点
+     */
+    public void flush(Long orderId) {
+        synchronized (this) {
+            Deque<PendingBatch> queue = pending.remove(orderId);
+            if (queue == null || queue.isEmpty()) {
+                return;
+            }
+            List<PendingBatch> batchList = new ArrayList<>(queue);
+            pendingCount.addAndGet(-count(batchList));
+            if (!write(batchList)) {
+                // 失败的批次已放回队列，这里直接再试一次，仍失败时由后台刷写继续重试
+                flushRequeued(orderId);
+            }
+        }
+    }
+
+    /**
+     * 获取轨迹写入统计
+     */
+    public OrderTrailWriteStatsVo getStats() {
+        long now = System.currentTimeMillis();
+        long oldest = now;
+        for (Deque<PendingBatch> queue : pending.values()) {
+            for (PendingBatch batch : queue) {
+                oldest = Math.min(oldest, batch.batch.createTime());
+            }
+        }
+        OrderTrailWriteStatsVo orderTrailWriteStatsVo = new OrderTrailWriteStatsVo();
+        orderTrailWriteStatsVo.setPendingCount(pendingCount.get());
+        orderTrailWriteStatsVo.setPendingOrderCount(pending.size());
+        orderTrailWriteStatsVo.setLagMillis(now - oldest);
+        orderTrailWriteStatsVo.setWrittenCount(writtenCount.sum());
+        orderTrailWriteStatsVo.setFlushCount(flushCount.sum());
+        orderTrailWriteStatsVo.setFailedCount(failedCount.sum());
+        orderTrailWriteStatsVo.setDroppedCount(droppedCount.sum());
+        return orderTrailWriteStatsVo;
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        int batchSize = trailProperties.getWriteBatchSize();
+        while (!pending.isEmpty()) {
+            synchronized (this) {
+                // 每次最多取出writeBatchSize批，刷写期间新到的点留给下一轮
+                List<PendingBatch> batchList = new ArrayList<>();
+                Iterator<Long> iterator = pending.keySet().iterator();
+                while (iterator.hasNext() && batchList.size() < batchSize) {
+                    Deque<PendingBatch> queue = pending.remove(iterator.next());
+                    if (queue != null) {
+                        batchList.addAll(queue);
+                    }
+                }
+                if (batchList.isEmpty()) {
+                    return;
+                }
+                pendingCount.addAndGet(-count(batchList));
+                if (!write(batchList)) {
+                    // 写入失败，等待下一个刷写周期再重试
+                    return;
+                }
+            }
+        }
+    }
+
+    private void flushRequeued(Long orderId) {
+        Deque<PendingBatch> queue = pending.remove(orderId);
+        if (queue == null || queue.isEmpty()) {
+            return;
+        }
+        List<PendingBatch> batchList = new ArrayList<>(queue);
+        pendingCount.addAndGet(-count(batchList));
+        write(batchList);
+    }
+
+    /**
+     * 写入MongoDB，失败时把未超过重试次数的批次放回队列
+     *
+     * @return 是否写入成功
+     */
+    private boolean write(List<PendingBatch> batchList) {
+        List<OrderTrailBatch> trailBatchList = new ArrayList<>(batchList.size());
+        for (PendingBatch batch : batchList) {
+            trailBatchList.add(batch.batch);
+        }
+        int size = count(batchList);
+        try {
+            orderTrailStore.appendAll(trailBatchList);
+            writtenCount.add(size);
+            flushCount.increment();
+            addWritten(batchList);
+        } catch (Exception e) {
+            failedCount.increment();
+            log.error("批量写入订单轨迹失败，批数：{}，点数：{}", batchList.size(), size, e);
+            if (!trailProperties.getWriteBehindEnabled()) {
+                throw e;
+            }
+            List<PendingBatch> droppedList = new ArrayList<>();
+            for (PendingBatch batch : batchList) {
+                if (++batch.retries > trailProperties.getWriteMaxRetries()) {
+                    droppedCount.add(batch.size());
+                    droppedList.add(batch);
+                    log.warn("订单轨迹重试写入失败，丢弃位置点，订单：{}，点数：{}", batch.batch.orderId(), batch.size());
+                    continue;
+                }
+                pendingCount.addAndGet(batch.size());
+                enqueue(batch, true);
+            }
+            addWritten(droppedList);
+            return false;
+        }
+        // 迁移期间仍按旧格式每个点写入一条文档，失败不影响分桶数据，也不重试
+        if (trailProperties.getLegacyWriteEnabled()) {
+            try {
+                writeLegacy(trailBatchList);
+            } catch (Exception e) {
+                log.error("按旧格式写入订单位置失败，批数：{}", trailBatchList.size(), e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在Redis中累加各订单已写入（或已丢弃）的点数，失败只记录日志，结束代驾时最多多等待 write-await-ms
+     */
+    private void addWritten(List<PendingBatch> batchList) {
+        if (batchList.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> writtenCountMap = new LinkedHashMap<>();
+        for (PendingBatch batch : batchList) {
+            writtenCountMap.merge(batch.batch.orderId(), batch.size(), Integer::sum);
+        }
+        try {
+            orderDistanceCache.addWritten(writtenCountMap);
+        } catch (Exception e) {
+            log.warn("记录订单轨迹已写入点数失败：{}", e.getMessage());
+        }
+    }
+
+    private void writeLegacy(List<OrderTrailBatch> trailBatchList) {
+        List<OrderServiceLocation> list = new ArrayList<>();
+        for (OrderTrailBatch batch : trailBatchList) {
+            Date createTime = new Date(batch.createTime());
+            for (OrderServiceLocationForm item : batch.locationList()) {
+                OrderServiceLocation orderServiceLocation = new OrderServiceLocation();
+                BeanUtils.copyProperties(item, orderServiceLocation);
+                orderServiceLocation.setId(ObjectId.get().toString());
+                orderServiceLocation.setCreateTime(createTime);
+                list.add(orderServiceLocation);
+            }
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OrderServiceLocation.class);
+        bulkOperations.insert(list);
+        bulkOperations.execute();
+    }
+
+    private void enqueue(PendingBatch batch, boolean first) {
+        pending.compute(batch.batch.orderId(), (key, queue) -> {
+            if (queue == null) {
+                queue = new ConcurrentLinkedDeque<>();
+            }
+            // 重试的批次放回队头，读取时按时间偏移排序，顺序不影响结果
+            if (first) {
+                queue.addFirst(batch);
+            } else {
+                queue.addLast(batch);
+            }
+            return queue;
+        });
+    }
+
+    private static int count(List<PendingBatch> batchList) {
+        int count = 0;
+        for (PendingBatch batch : batchList) {
+            count += batch.size();
+        }
+        return count;
+    }
+
+    private static class PendingBatch {
+
+        private final OrderTrailBatch batch;
+
+        // 已重试次数
+        private int retries;
+
+        private PendingBatch(OrderTrailBatch batch) {
+            this.batch = batch;
+        }
+
+        private int size() {
+            return batch.locationList().size();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+-- 失联司机清理时重新核对最后上报时间
+-- KEYS[1]：司机最后上报时间zset
+-- ARGV[1]：截止时间（毫秒），ARGV[2..]：候选司机
+-- 只删除最后上报时间仍不晚于截止时间的司机，返回删除的司机；期间重新上报过的司机保留
+
+local cutoffTime = tonumber(ARGV[1])
+local removed = {}
+for i = 2, #ARGV do
+    local lastSeen = redis.call('ZSCORE', KEYS[1], ARGV[i])
+    if lastSeen and tonumber(lastSeen) <= cutoffTime then
+        redis.call('ZREM', KEYS[1], ARGV[i])
+        removed[#removed + 1] = ARGV[i]
+    end
+end
+return removed
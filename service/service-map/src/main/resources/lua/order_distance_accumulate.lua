@@ -0,0 +1,49 @@
+-- 累加订单实际里程
+-- KEYS[1]：订单里程hash
+-- ARGV[1]：过期时间（秒），ARGV[2]：上报时间（毫秒），ARGV[3..]：按上报顺序排列的 纬度、经度
+-- 返回累加后的里程（米）
+-- 距离计算与 LocationUtil.getDistance 保持一致：每段按赤道半径计算后保留四位小数（公里）再转为米
+
+local EARTH_RADIUS = 6378.137
+
+local function rad(d)
+    return d * math.pi / 180.0
+end
+
+local function getDistance(lat1, lng1, lat2, lng2)
+    local radLat1 = rad(lat1)
+    local radLat2 = rad(lat2)
+    local a = radLat1 - radLat2
+    local b = rad(lng1) - rad(lng2)
+    local s = 2 * math.asin(math.sqrt(math.sin(a / 2) ^ 2 + math.cos(radLat1) * math.cos(radLat2) * math.sin(b / 2) ^ 2))
+    s = s * EARTH_RADIUS
+    s = math.floor(s * 10000 + 0.5) / 10000
+    return s * 1000
+end
+
+local key = KEYS[1]
+local state = redis.call('HMGET', key, 'distance', 'latitude', 'longitude', 'count')
+local distance = tonumber(state[1]) or 0
+local lastLatitude = state[2]
+local lastLongitude = state[3]
+local count = tonumber(state[4]) or 0
+
+if #ARGV < 4 then
+    return string.format('%.4f', distance)
+end
+
+for i = 3, #ARGV, 2 do
+    local latitude = ARGV[i]
+    local longitude = ARGV[i + 1]
+    if lastLatitude then
+        distance = distance + getDistance(tonumber(lastLatitude), tonumber(lastLongitude), tonumber(latitude), tonumber(longitude))
+    end
+    lastLatitude = latitude
+    lastLongitude = longitude
+    count = count + 1
+end
+
+local result = string.format('%.4f', distance)
+redis.call('HSET', key, 'distance', result, 'latitude', lastLatitude, 'longitude', lastLongitude, 'count', count, 'time', ARGV[2])
+redis.call('EXPIRE', key, ARGV[1])
+return result
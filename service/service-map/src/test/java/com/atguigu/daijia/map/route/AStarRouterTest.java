@@ -0,0 +1,89 @@
+package com.atguigu.daijia.map.route;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 路网加载与A*最短路径
+ * <p>
+ * 小路网：1-2 双向慢路，2->3 单行慢路；1-4 双向快路，4->3 单行快路；5 为孤立节点。
+ * 1 到 3 经过 4 路程更长但用时更短
+ */
+class AStarRouterTest {
+
+    private static final String GRAPH = """
+            # 节点：id 纬度 经度
+            n 1 39.900 116.400
+            n 2 39.900 116.410
+            n 3 39.910 116.410
+            n 4 39.910 116.400
+            n 5 39.950 116.500
+            # 边：起点 终点 长度(米) 限速(公里/小时) [单行]
+            e 1 2 1000 36
+            e 2 3 1000 36 1
+            e 1 4 1000 72
+            e 4 3 1500 72 1
+            """;
+
+    private RoadGraph graph;
+
+    private AStarRouter router;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        graph = RoadGraph.load(new BufferedReader(new StringReader(GRAPH)));
+        router = new AStarRouter(graph);
+    }
+
+    @Test
+    void loadGraph() {
+        assertEquals(5, graph.nodeCount());
+        // 两条双向道路各拆为两条有向边
+        assertEquals(6, graph.edgeCount());
+        assertEquals(0, graph.nearestNode(39.9001, 116.4001, 100));
+        assertEquals(-1, graph.nearestNode(40.5, 117.5, 1000));
+    }
+
+    @Test
+    void routeByTravelTime() {
+        RoutePath path = router.route(0, 2);
+        assertNotNull(path);
+        // 经过 4：1000米/20米每秒 + 1500米/20米每秒
+        assertArrayEquals(new int[]{0, 3, 2}, path.getNodes());
+        assertEquals(2500, path.getMeters(), 1e-6);
+        assertEquals(125, path.getSeconds(), 1e-6);
+    }
+
+    @Test
+    void routeAgainstOneway() {
+        // 3 只有驶入的单行边，不能驶出
+        assertNull(router.route(2, 0));
+        // 双向道路可以反向行驶：2 -> 1 -> 4
+        RoutePath path = router.route(1, 3);
+        assertNotNull(path);
+        assertArrayEquals(new int[]{1, 0, 3}, path.getNodes());
+        assertEquals(150, path.getSeconds(), 1e-6);
+    }
+
+    @Test
+    void routeToUnreachableNode() {
+        assertNull(router.route(0, 4));
+        assertNull(router.route(4, 0));
+    }
+
+    @Test
+    void rejectEdgeToUnknownNode() {
+        String graphText = "n 1 39.9 116.4\ne 1 9 100 36\n";
+        assertThrows(IllegalArgumentException.class, () -> RoadGraph.load(new BufferedReader(new StringReader(graphText))));
+    }
+}
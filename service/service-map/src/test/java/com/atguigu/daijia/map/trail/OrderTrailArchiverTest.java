@@ -0,0 +1,79 @@
+package com.atguigu.daijia.map.trail;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 轨迹归档的编码解码与重复归档合并
+ * <p>
+ * 原始轨迹按分桶写入，同一批的点时间相同
+ */
+class OrderTrailArchiverTest {
+
+    private static OrderTrail rawTrail() {
+        OrderTrail trail = new OrderTrail(0);
+        trail.add(39.900001, 116.400001, 1000);
+        trail.add(39.900102, 116.400203, 1000);
+        trail.add(39.900305, 116.400407, 1000);
+        trail.add(39.900509, 116.400611, 4000);
+        trail.add(39.900509, 116.400611, 4000);
+        trail.add(39.899900, 116.399800, 7000);
+        return trail;
+    }
+
+    private static void assertTrailEquals(OrderTrail expected, OrderTrail actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.latitude(i), actual.latitude(i), 1e-9);
+            assertEquals(expected.longitude(i), actual.longitude(i), 1e-9);
+            assertEquals(expected.time(i), actual.time(i));
+        }
+    }
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        OrderTrail raw = rawTrail();
+        assertTrailEquals(raw, OrderTrailArchiver.decode(OrderTrailArchiver.encode(raw)));
+        assertEquals(0, OrderTrailArchiver.decode(OrderTrailArchiver.encode(new OrderTrail(0))).size());
+    }
+
+    @Test
+    void archiveTwiceOverSameRawTrail() {
+        OrderTrail raw = rawTrail();
+        // 第一次归档写入后删除原始轨迹前失败，第二次归档与已有归档合并
+        OrderTrail first = OrderTrailArchiver.decode(OrderTrailArchiver.encode(raw));
+        OrderTrail second = OrderTrailArchiver.merge(first, raw);
+        assertTrailEquals(raw, second);
+        // 再次失败后重新执行，结果不变
+        OrderTrail third = OrderTrailArchiver.merge(OrderTrailArchiver.decode(OrderTrailArchiver.encode(second)), raw);
+        assertTrailEquals(raw, third);
+    }
+
+    @Test
+    void archiveAfterPartialRemove() {
+        OrderTrail raw = rawTrail();
+        OrderTrail archived = OrderTrailArchiver.decode(OrderTrailArchiver.encode(raw));
+        // 只剩后两个分桶
+        OrderTrail remaining = new OrderTrail(0);
+        for (int i = 3; i < raw.size(); i++) {
+            remaining.add(raw.latitude(i), raw.longitude(i), raw.time(i));
+        }
+        assertTrailEquals(raw, OrderTrailArchiver.merge(archived, remaining));
+    }
+
+    @Test
+    void mergeKeepsPointsNotArchived() {
+        OrderTrail archived = new OrderTrail(0);
+        archived.add(39.9, 116.4, 1000);
+        OrderTrail raw = new OrderTrail(0);
+        raw.add(39.92, 116.42, 500);
+        raw.add(39.9, 116.4, 1000);
+        raw.add(39.91, 116.41, 1000);
+        OrderTrail merged = OrderTrailArchiver.merge(archived, raw);
+        assertEquals(3, merged.size());
+        assertEquals(500, merged.time(0));
+        assertEquals(39.9, merged.latitude(1), 1e-9);
+        assertEquals(39.91, merged.latitude(2), 1e-9);
+    }
+}
@@ -0,0 +1,35 @@
+package com.atguigu.daijia.customer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 司机位置推送相关配置
+ * 对应配置前缀：customer.location-push
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "customer.location-push")
+public class LocationPushProperties {
+
+    /**
+     * 推送连接超时时间，单位：毫秒（超时后客户端重新订阅）
+     */
+    private Long timeoutMs = 30 * 60 * 1000L;
+
+    /**
+     * 心跳间隔，单位：秒（保持连接不被网关或代理断开）
+     */
+    private Long heartbeatSeconds = 15L;
+
+    /**
+     * 同一订单最多的推送连接数
+     */
+    private Integer maxConnectionsPerOrder = 3;
+
+    /**
+     * 推送线程数（写入连接可能阻塞，与处理Redis消息的线程分开）
+     */
+    private Integer pushThreads = 8;
+}
@@ -18,7 +18,9 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Slf4j
 @Tag(name = "订单API接口管理")
@@ -104,6 +106,22 @@ public class OrderController {
     public Result<OrderServiceLastLocationVo> getOrderServiceLastLocation(@PathVariable Long orderId) {
         return Result.ok(orderService.getOrderServiceLastLocation(orderId));
     }
+
+    /**
+     * 订阅司机位置推送（SSE）
+     * 司机赶往起始点和代驾服务中，司机位置更新时推送location事件，数据为经纬度JSON，
+     * 乘客端订阅后不再需要轮询获取司机位置；连接超时后重新订阅
+     *
+     * @param orderId 订单ID
+     * @return SSE连接
+     */
+    @Operation(summary = "订阅司机位置推送")
+    @GuiguLogin
+    @GetMapping(value = "/subscribeOrderLocation/{orderId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeOrderLocation(@PathVariable Long orderId) {
+        Long customerId = AuthContextHolder.getUserId();
+        return orderService.subscribeOrderLocation(orderId, customerId);
+    }
     @Operation(summary = "创建微信支付")
     @GuiguLogin
     @PostMapping("/createWxPayment")
@@ -0,0 +1,230 @@
+package com.atguigu.daijia.customer.push;
+
+import com.atguigu.daijia.common.constant.RedisConstant;
+import com.atguigu.daijia.common.execption.GuiguException;
+import com.atguigu.daijia.common.result.ResultCodeEnum;
+import com.atguigu.daijia.customer.config.LocationPushProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 司机位置推送（SSE）
+ * <p>
+ * 乘客查看订单时建立SSE连接，本服务订阅该订单的Redis位置频道，地图服务写入司机位置时发布，收到后推送给乘客，
+ * 乘客端不再需要轮询 getCacheOrderLocation / getOrderServiceLastLocation。
+ * 每个连接只保留最新的一个待推送位置：连接写入较慢时，新位置直接覆盖尚未推送的旧位置，
+ * 同一连接同时只有一个推送任务，慢连接不会积压消息，也不会影响其他连接
+ */
+@Slf4j
+@Component
+public class OrderLocationPushService {
+
+    private static final String EVENT_LOCATION = "location";
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final LocationPushProperties locationPushProperties;
+
+    // 订单id -> 订阅连接
+    private final Map<Long, OrderSubscription> subscriptions = new ConcurrentHashMap<>();
+
+    private final ExecutorService pushExecutor;
+
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    @Autowired
+    public OrderLocationPushService(LocationPushProperties locationPushProperties) {
+        this.locationPushProperties = locationPushProperties;
+        this.pushExecutor = Executors.newFixedThreadPool(locationPushProperties.getPushThreads());
+        long heartbeatSeconds = locationPushProperties.getHeartbeatSeconds();
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 订单的订阅：同一订单的所有连接共用一个Redis频道监听
+     */
+    private class OrderSubscription implements MessageListener {
+
+        final Long orderId;
+
+        final ChannelTopic topic;
+
+        final Set<Connection> connections = new CopyOnWriteArraySet<>();
+
+        OrderSubscription(Long orderId) {
+            this.orderId = orderId;
+            this.topic = new ChannelTopic(RedisConstant.ORDER_LOCATION_CHANNEL + orderId);
+        }
+
+        @Override
+        public void onMessage(Message message, byte[] pattern) {
+            String location = new String(message.getBody(), StandardCharsets.UTF_8);
+            for (Connection connection : connections) {
+                connection.offer(location);
+            }
+        }
+    }
+
+    /**
+     * 单个推送连接，位置和心跳都由推送线程写入，同一连接同时只有一个推送任务
+     */
+    private class Connection {
+
+        final OrderSubscription subscription;
+
+        final SseEmitter emitter;
+
+        // 待推送的最新位置
+        final AtomicReference<String> latest = new AtomicReference<>();
+
+        // 是否需要发送心跳
+        volatile boolean heartbeatPending;
+
+        // 是否已有推送任务在执行
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Connection(OrderSubscription subscription, SseEmitter emitter) {
+            this.subscription = subscription;
+            this.emitter = emitter;
+        }
+
+        void offer(String location) {
+            latest.set(location);
+            schedule();
+        }
+
+        void offerHeartbeat() {
+            heartbeatPending = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                pushExecutor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                String location = latest.getAndSet(null);
+                if (location == null && !heartbeatPending) {
+                    scheduled.set(false);
+                    // 释放标记后可能有新位置到达，抢到标记则继续推送
+                    if ((latest.get() == null && !heartbeatPending) || !scheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                heartbeatPending = false;
+                try {
+                    if (location != null) {
+                        emitter.send(SseEmitter.event().name(EVENT_LOCATION).data(location));
+                    } else {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                } catch (Exception e) {
+                    close();
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            removeConnection(this);
+            emitter.complete();
+        }
+    }
+
+    /**
+     * 订阅订单的司机位置
+     *
+     * @param initialLocation 当前位置（JSON），不为空时连接建立后立即推送
+     */
+    public SseEmitter subscribe(Long orderId, String initialLocation) {
+        SseEmitter emitter = new SseEmitter(locationPushProperties.getTimeoutMs());
+        Connection[] holder = new Connection[1];
+        subscriptions.compute(orderId, (key, subscription) -> {
+            if (subscription == null) {
+                subscription = new OrderSubscription(orderId);
+                redisMessageListenerContainer.addMessageListener(subscription, subscription.topic);
+            }
+            if (subscription.connections.size() >= locationPushProperties.getMaxConnectionsPerOrder()) {
+                throw new GuiguException(ResultCodeEnum.ILLEGAL_REQUEST);
+            }
+            holder[0] = new Connection(subscription, emitter);
+            subscription.connections.add(holder[0]);
+            return subscription;
+        });
+        Connection connection = holder[0];
+        emitter.onCompletion(() -> removeConnection(connection));
+        emitter.onTimeout(() -> removeConnection(connection));
+        emitter.onError(e -> removeConnection(connection));
+        if (initialLocation != null) {
+            connection.offer(initialLocation);
+        }
+        return emitter;
+    }
+
+    /**
+     * 当前推送连接数
+     */
+    public int connectionCount() {
+        int count = 0;
+        for (OrderSubscription subscription : subscriptions.values()) {
+            count += subscription.connections.size();
+        }
+        return count;
+    }
+
+    private void removeConnection(Connection connection) {
+        Long orderId = connection.subscription.orderId;
+        subscriptions.computeIfPresent(orderId, (key, subscription) -> {
+            subscription.connections.remove(connection);
+            if (subscription.connections.isEmpty()) {
+                // 订单已没有连接，取消频道订阅
+                redisMessageListenerContainer.removeMessageListener(subscription, subscription.topic);
+                return null;
+            }
+            return subscription;
+        });
+    }
+
+    private void heartbeat() {
+        for (OrderSubscription subscription : subscriptions.values()) {
+            for (Connection connection : subscription.connections) {
+                connection.offerHeartbeat();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        heartbeatExecutor.shutdownNow();
+        pushExecutor.shutdownNow();
+        for (OrderSubscription subscription : subscriptions.values()) {
+            for (Connection connection : subscription.connections) {
+                connection.emitter.complete();
+            }
+        }
+    }
+}
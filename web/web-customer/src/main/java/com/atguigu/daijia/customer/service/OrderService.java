@@ -10,6 +10,7 @@ import com.atguigu.daijia.model.vo.map.OrderServiceLastLocationVo;
 import com.atguigu.daijia.model.vo.order.CurrentOrderInfoVo;
 import com.atguigu.daijia.model.vo.order.OrderInfoVo;
 import com.atguigu.daijia.model.vo.payment.WxPrepayVo;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 public interface OrderService {
 
@@ -29,6 +30,8 @@ public interface OrderService {
 
     OrderServiceLastLocationVo getOrderServiceLastLocation(Long orderId);
 
+    SseEmitter subscribeOrderLocation(Long orderId, Long customerId);
+
     WxPrepayVo createWxPayment(CreateWxPaymentForm createWxPaymentForm);
 
     Boolean queryPayStatus(String orderNo);
@@ -1,9 +1,12 @@
 package com.atguigu.daijia.customer.service.impl;
 
+import com.alibaba.fastjson.JSON;
 import com.atguigu.daijia.common.execption.GuiguException;
 import com.atguigu.daijia.common.result.ResultCodeEnum;
+import com.atguigu.daijia.common.util.PolylineUtil;
 import com.atguigu.daijia.coupon.client.CouponFeignClient;
 import com.atguigu.daijia.customer.client.CustomerInfoFeignClient;
+import com.atguigu.daijia.customer.push.OrderLocationPushService;
 import com.atguigu.daijia.customer.service.OrderService;
 import com.atguigu.daijia.dispatch.client.NewOrderFeignClient;
 import com.atguigu.daijia.driver.client.DriverInfoFeignClient;
@@ -39,6 +42,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
 import java.util.Date;
@@ -150,6 +154,12 @@ public class OrderServiceImpl implements OrderService {
         // 调用费用规则服务计算订单费用，并获取结果
         FeeRuleResponseVo feeRuleResponseVo = feeRuleFeignClient.calculateOrderFee(calculateOrderFeeForm).getData();
 
+        // 路线坐标以编码字符串传输，返回给乘客端绘制前解码为腾讯地图格式
+        if (drivingLineVo.getPolyline() == null && drivingLineVo.getEncodedPolyline() != null) {
+            drivingLineVo.setPolyline(PolylineUtil.decodeTencent(drivingLineVo.getEncodedPolyline()));
+            drivingLineVo.setEncodedPolyline(null);
+        }
+
         // 创建预估订单实体，设置驾驶线路和费用规则信息
         ExpectOrderVo expectOrderVo = new ExpectOrderVo();
         expectOrderVo.setDrivingLineVo(drivingLineVo);
@@ -189,6 +199,37 @@ public class OrderServiceImpl implements OrderService {
         return locationFeignClient.getOrderServiceLastLocation(orderId).getData();
     }
 
+    @Autowired
+    private OrderLocationPushService orderLocationPushService;
+
+    /**
+     * 订阅订单司机位置推送
+     * 建立连接时先推送一次当前位置（司机赶往起始点时为缓存位置，代驾服务中为最后一个服务位置），之后由地图服务写入位置时推送
+     *
+     * @param orderId    订单ID
+     * @param customerId 乘客ID，只能订阅自己的订单
+     * @return SSE连接
+     */
+    @Override
+    public SseEmitter subscribeOrderLocation(Long orderId, Long customerId) {
+        OrderInfo orderInfo = orderInfoFeignClient.getOrderInfo(orderId).getData();
+        if (orderInfo.getCustomerId().longValue() != customerId.longValue()) {
+            throw new GuiguException(ResultCodeEnum.ILLEGAL_REQUEST);
+        }
+        // 初始位置只用于订阅后立即推送一次，获取失败（如刚开始服务还没有轨迹）时不推送，等待后续位置上报
+        Object location = null;
+        try {
+            if (orderInfo.getStatus().intValue() >= OrderStatus.START_SERVICE.getStatus().intValue()) {
+                location = this.getOrderServiceLastLocation(orderId);
+            } else {
+                location = this.getCacheOrderLocation(orderId);
+            }
+        } catch (Exception e) {
+            log.warn("获取订单初始位置失败，orderId：{}", orderId, e);
+        }
+        return orderLocationPushService.subscribe(orderId, location == null ? null : JSON.toJSONString(location));
+    }
+
     /**
      * 根据订单ID和用户ID获取订单信息并封装为指定VO对象
      *
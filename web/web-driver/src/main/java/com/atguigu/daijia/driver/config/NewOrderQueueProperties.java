@@ -0,0 +1,22 @@
+package com.atguigu.daijia.driver.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 司机新订单长轮询相关配置
+ * 对应配置前缀：new-order-queue
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "new-order-queue")
+public class NewOrderQueueProperties {
+
+    /**
+     * 每个实例同时等待新订单的请求数上限。
+     * 等待中的请求占用一个Tomcat线程等待派单服务返回，最长 NEW_ORDER_QUEUE_MAX_WAIT_MILLIS；
+     * 超过上限的请求不等待，立即返回当前队列，司机端下次轮询再取。需明显小于Tomcat最大线程数（默认200）；修改后重启生效
+     */
+    private Integer maxWaiters = 100;
+}
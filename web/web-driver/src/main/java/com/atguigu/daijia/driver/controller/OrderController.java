@@ -40,9 +40,10 @@ public class OrderController {
     @Operation(summary = "查询司机新订单数据")
     @GuiguLogin
     @GetMapping("/findNewOrderQueueData")
-    public Result<List<NewOrderDataVo>> findNewOrderQueueData() {
+    public Result<List<NewOrderDataVo>> findNewOrderQueueData(@Parameter(description = "没有新订单时最长等待时间（毫秒），不传则立即返回")
+                                                              @RequestParam(value = "waitMillis", required = false) Long waitMillis) {
         Long driverId = AuthContextHolder.getUserId();
-        return Result.ok(orderService.findNewOrderQueueData(driverId));
+        return Result.ok(orderService.findNewOrderQueueData(driverId, waitMillis));
     }
 
     @Operation(summary = "司机抢单")
@@ -19,6 +19,8 @@ public interface OrderService {
 
     List<NewOrderDataVo> findNewOrderQueueData(Long driverId);
 
+    List<NewOrderDataVo> findNewOrderQueueData(Long driverId, Long waitMillis);
+
     Boolean robNewOrder(Long driverId, Long orderId);
 
 
@@ -5,7 +5,9 @@ import com.atguigu.daijia.common.constant.SystemConstant;
 import com.atguigu.daijia.common.execption.GuiguException;
 import com.atguigu.daijia.common.result.ResultCodeEnum;
 import com.atguigu.daijia.common.util.LocationUtil;
+import com.atguigu.daijia.common.util.PolylineUtil;
 import com.atguigu.daijia.dispatch.client.NewOrderFeignClient;
+import com.atguigu.daijia.driver.config.NewOrderQueueProperties;
 import com.atguigu.daijia.driver.service.OrderService;
 import com.atguigu.daijia.map.client.LocationFeignClient;
 import com.atguigu.daijia.map.client.MapFeignClient;
@@ -31,6 +33,7 @@ import com.atguigu.daijia.order.client.OrderInfoFeignClient;
 import com.atguigu.daijia.rules.client.FeeRuleFeignClient;
 import com.atguigu.daijia.rules.client.ProfitsharingRuleFeignClient;
 import com.atguigu.daijia.rules.client.RewardRuleFeignClient;
+import jakarta.annotation.PostConstruct;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
@@ -41,6 +44,7 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 
 @Slf4j
@@ -63,6 +67,32 @@ public class OrderServiceImpl implements OrderService {
         return newOrderFeignClient.findNewOrderQueueData(driverId).getData();
     }
 
+    @Autowired
+    private NewOrderQueueProperties newOrderQueueProperties;
+
+    // 等待新订单的请求数上限，见 new-order-queue.max-waiters
+    private Semaphore waiterPermits;
+
+    @PostConstruct
+    public void init() {
+        waiterPermits = new Semaphore(Math.max(newOrderQueueProperties.getMaxWaiters(), 0));
+    }
+
+    /**
+     * 等待期间占用请求线程，同时等待的请求数达到上限时不等待，立即返回当前队列
+     */
+    @Override
+    public List<NewOrderDataVo> findNewOrderQueueData(Long driverId, Long waitMillis) {
+        if (waitMillis == null || waitMillis <= 0 || !waiterPermits.tryAcquire()) {
+            return this.findNewOrderQueueData(driverId);
+        }
+        try {
+            return newOrderFeignClient.findNewOrderQueueData(driverId, waitMillis).getData();
+        } finally {
+            waiterPermits.release();
+        }
+    }
+
     @Override
     public Boolean robNewOrder(Long driverId, Long orderId) {
         return orderInfoFeignClient.robNewOrder(driverId, orderId).getData();
@@ -80,7 +110,13 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public DrivingLineVo calculateDrivingLine(CalculateDrivingLineForm calculateDrivingLineForm) {
-        return mapFeignClient.calculateDrivingLine(calculateDrivingLineForm).getData();
+        DrivingLineVo drivingLineVo = mapFeignClient.calculateDrivingLine(calculateDrivingLineForm).getData();
+        // 路线坐标以编码字符串传输，返回给司机端绘制前解码为腾讯地图格式
+        if (drivingLineVo.getPolyline() == null && drivingLineVo.getEncodedPolyline() != null) {
+            drivingLineVo.setPolyline(PolylineUtil.decodeTencent(drivingLineVo.getEncodedPolyline()));
+            drivingLineVo.setEncodedPolyline(null);
+        }
+        return drivingLineVo;
     }
 
 
@@ -271,6 +307,13 @@ public class OrderServiceImpl implements OrderService {
 
         //8.结束代驾更新账单
         orderInfoFeignClient.endDrive(updateOrderBillForm);
+
+        //9.保存简化轨迹（地图服务后台生成），失败不影响结束代驾
+        try {
+            locationFeignClient.saveOrderServiceTrail(orderFeeForm.getOrderId());
+        } catch (Exception e) {
+            log.warn("保存订单简化轨迹失败，订单：{}，{}", orderFeeForm.getOrderId(), e.getMessage());
+        }
         return true;
     }
     @Override